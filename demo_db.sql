@@ -25,7 +25,8 @@ CREATE TABLE `message` (
   `userID` varchar(25) CHARACTER SET utf8 COLLATE utf8_general_ci NOT NULL,
   `content` varchar(5000) DEFAULT NULL,
   `time` datetime DEFAULT NULL,
-  PRIMARY KEY (`messageID`)
+  PRIMARY KEY (`messageID`),
+  KEY `state_time` (`state`,`time`,`messageID`)
 ) ENGINE=InnoDB AUTO_INCREMENT=25 DEFAULT CHARSET=utf8;
 
 -- ----------------------------
@@ -52,7 +53,8 @@ CREATE TABLE `news` (
   `title` varchar(100) CHARACTER SET utf8 COLLATE utf8_general_ci DEFAULT NULL,
   `content` varchar(5000) DEFAULT NULL,
   `time` datetime(6) DEFAULT NULL,
-  PRIMARY KEY (`newsID`)
+  PRIMARY KEY (`newsID`),
+  KEY `time` (`time`,`newsID`)
 ) ENGINE=InnoDB AUTO_INCREMENT=16 DEFAULT CHARSET=utf8;
 
 -- ----------------------------
@@ -76,7 +78,8 @@ CREATE TABLE `order` (
   `state` int(1) DEFAULT NULL,
   `total` int(5) DEFAULT NULL,
   PRIMARY KEY (`orderID`),
-  KEY `userID` (`userID`),
+  KEY `userID` (`userID`,`order_time`,`orderID`),
+  KEY `state_time` (`state`,`order_time`,`orderID`),
   KEY `gymID` (`venueID`)
 ) ENGINE=InnoDB AUTO_INCREMENT=31 DEFAULT CHARSET=utf8;
 
@@ -95,6 +98,19 @@ INSERT INTO `order` VALUES ('21', 'yonghuming', '16', '2020-01-02 17:52:21', '20
 INSERT INTO `order` VALUES ('29', 'yonghu', '16', '2020-01-02 18:16:08', '2020-01-24 11:00:00', '3', '2', '1500');
 INSERT INTO `order` VALUES ('30', 'yonghu', '17', '2020-01-02 18:16:21', '2020-01-25 11:00:00', '3', '2', '900');
 
+-- ----------------------------
+-- Table structure for picture_variant
+-- ----------------------------
+DROP TABLE IF EXISTS `picture_variant`;
+CREATE TABLE `picture_variant` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `picture` varchar(255) NOT NULL,
+  `width` int(5) NOT NULL,
+  `path` varchar(255) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `picture_width` (`picture`,`width`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
 -- ----------------------------
 -- Table structure for user
 -- ----------------------------
@@ -108,7 +124,8 @@ CREATE TABLE `user` (
   `isadmin` int(10) NOT NULL,
   `user_name` varchar(255) DEFAULT NULL,
   `picture` varchar(255) DEFAULT NULL,
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `userID` (`userID`)
 ) ENGINE=InnoDB AUTO_INCREMENT=28 DEFAULT CHARSET=utf8;
 
 -- ----------------------------
@@ -1,9 +1,11 @@
 package com.demo.controller.admin;
 
 import com.demo.entity.Message;
+import com.demo.entity.vo.IngestStats;
 import com.demo.entity.vo.MessageVo;
 import com.demo.service.MessageService;
 import com.demo.service.MessageVoService;
+import com.demo.utils.PageUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,6 +15,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @Controller
 public class AdminMessageController {
@@ -23,8 +26,7 @@ public class AdminMessageController {
 
     @GetMapping("/message_manage")
     public String message_manage(Model model){
-        Pageable message_pageable= PageRequest.of(0,10, Sort.by("time").descending());
-        model.addAttribute("total",messageService.findWaitState(message_pageable).getTotalPages());
+        model.addAttribute("total",PageUtil.totalPages(messageService.countWaitState(),10));
         return "admin/message_manage";
     }
 
@@ -64,4 +66,43 @@ public class AdminMessageController {
         return true;
     }
 
+    /**
+     * 批量通过留言
+     * @param messageIDs
+     * @return 每个messageID是否被通过
+     */
+    @PostMapping("/passMessages.do")
+    @ResponseBody
+    public Map<Integer,Boolean> passMessages(@RequestParam("messageIDs") List<Integer> messageIDs){
+        return messageService.confirmMessages(messageIDs);
+    }
+
+    /**
+     * 批量驳回留言
+     * @param messageIDs
+     * @return 每个messageID是否被驳回
+     */
+    @PostMapping("/rejectMessages.do")
+    @ResponseBody
+    public Map<Integer,Boolean> rejectMessages(@RequestParam("messageIDs") List<Integer> messageIDs){
+        return messageService.rejectMessages(messageIDs);
+    }
+
+    /**
+     * 批量删除待审核留言
+     * @param messageIDs
+     * @return 每个messageID是否被删除
+     */
+    @PostMapping("/delMessages.do")
+    @ResponseBody
+    public Map<Integer,Boolean> delMessages(@RequestParam("messageIDs") List<Integer> messageIDs){
+        return messageService.delMessages(messageIDs);
+    }
+
+    @GetMapping("/messageIngestStats.do")
+    @ResponseBody
+    public IngestStats messageIngestStats(){
+        return messageService.ingestStats();
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.demo.controller.admin;
 
 import com.demo.entity.News;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.service.NewsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -49,6 +50,12 @@ public class AdminNewsController {
         return news.getContent();
     }
 
+    @GetMapping("/newsListByCursor.do")
+    @ResponseBody
+    public KeysetPage<News> newsListByCursor(@RequestParam(value = "cursor",required = false)String cursor){
+        return newsService.findAfter(cursor,10);
+    }
+
     @PostMapping("/delNews.do")
     @ResponseBody
     public boolean delNews(int newsID){
@@ -1,9 +1,11 @@
 package com.demo.controller.admin;
 
-import com.demo.entity.Order;
+import com.demo.entity.vo.FanOutStats;
 import com.demo.entity.vo.OrderVo;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
+import com.demo.service.impl.CompositePageExecutor;
+import com.demo.utils.PageUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -15,6 +17,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Controller
@@ -23,18 +26,49 @@ public class AdminOrderController {
     private OrderService orderService;
     @Autowired
     private OrderVoService orderVoService;
+    @Autowired
+    private CompositePageExecutor pageExecutor;
 
     @GetMapping("/reservation_manage")
     public String reservation_manage(Model model){
-        List<Order> orders= orderService.findAuditOrder();
-        List<OrderVo> orderVos=orderVoService.returnVo(orders);
-        Pageable order_pageable= PageRequest.of(0,10, Sort.by("orderTime").descending());
-        model.addAttribute("order_list",orderVos);
-        model.addAttribute("total",orderService.findNoAuditOrder(order_pageable).getTotalPages());
+        model.addAttribute("audit_total",PageUtil.totalPages(orderService.countAuditOrder(),10));
+        model.addAttribute("total",PageUtil.totalPages(orderService.countNoAuditOrder(),10));
 
         return "admin/reservation_manage";
     }
 
+    @GetMapping("/pageFanOutStats.do")
+    @ResponseBody
+    public FanOutStats pageFanOutStats(){
+        return pageExecutor.stats();
+    }
+
+    /**
+     * 发布场馆[from, to]的抢订库存
+     * @param venueID
+     * @param from yyyy-MM-dd
+     * @param to yyyy-MM-dd
+     * @return 可以抢订的时段数
+     */
+    @PostMapping("/admin/publishFlashSlots.do")
+    @ResponseBody
+    public int publishFlashSlots(int venueID,String from,String to){
+        return orderService.publishFlashSlots(venueID,LocalDate.parse(from),LocalDate.parse(to));
+    }
+
+    @PostMapping("/admin/withdrawFlashSlots.do")
+    @ResponseBody
+    public boolean withdrawFlashSlots(int venueID){
+        orderService.withdrawFlashSlots(venueID);
+        return true;
+    }
+
+    @GetMapping("/admin/flashSlots.do")
+    @ResponseBody
+    public List<Integer> flashSlots(int venueID,String date){
+        return orderService.findFlashSlots(venueID,LocalDate.parse(date));
+    }
+
     /**
      * 管理员查看未审核订单
      * @param page
@@ -44,8 +78,19 @@ public class AdminOrderController {
     @ResponseBody
     public List<OrderVo> getNoAuditOrder(@RequestParam(value = "page",defaultValue = "1")int page){
         Pageable order_pageable= PageRequest.of(page-1,10, Sort.by("orderTime").descending());
-        List<Order> orders=orderService.findNoAuditOrder(order_pageable).getContent();
-        return orderVoService.returnVo(orders);
+        return orderVoService.findNoAuditOrderVo(order_pageable).getContent();
+    }
+
+    /**
+     * 管理员查看已审核订单
+     * @param page
+     * @return
+     */
+    @GetMapping("/admin/getAuditOrderList.do")
+    @ResponseBody
+    public List<OrderVo> getAuditOrder(@RequestParam(value = "page",defaultValue = "1")int page){
+        Pageable order_pageable= PageRequest.of(page-1,10, Sort.by("orderTime").descending().and(Sort.by("orderID").descending()));
+        return orderVoService.findAuditOrderVo(order_pageable).getContent();
     }
 
     @PostMapping("/passOrder.do")
@@ -61,4 +106,26 @@ public class AdminOrderController {
         orderService.rejectOrder(orderID);
         return true;
     }
+
+    /**
+     * 批量通过订单
+     * @param orderIDs
+     * @return 实际通过的orderID，不在其中的订单不存在或已被处理
+     */
+    @PostMapping("/passOrders.do")
+    @ResponseBody
+    public List<Integer> confirmOrders(@RequestParam("orderIDs") List<Integer> orderIDs) {
+        return orderService.confirmOrders(orderIDs);
+    }
+
+    /**
+     * 批量驳回订单
+     * @param orderIDs
+     * @return 实际驳回的orderID，不在其中的订单不存在或已被处理
+     */
+    @PostMapping("/rejectOrders.do")
+    @ResponseBody
+    public List<Integer> rejectOrders(@RequestParam("orderIDs") List<Integer> orderIDs) {
+        return orderService.rejectOrders(orderIDs);
+    }
 }
@@ -1,7 +1,11 @@
 package com.demo.controller.admin;
 
 import com.demo.entity.User;
+import com.demo.entity.vo.ImportReport;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.service.UserBulkService;
 import com.demo.service.UserService;
+import com.demo.utils.PageUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -13,23 +17,28 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.UUID;
 
 @Controller
 public class AdminUserController {
     @Autowired
     private UserService userService;
+    @Autowired
+    private UserBulkService userBulkService;
 
 
     @GetMapping("/user_manage")
     public String user_manage(Model model){
-        Pageable user_pageable= PageRequest.of(0,10, Sort.by("id").ascending());
-        Page<User> users=userService.findByUserID(user_pageable);
-        model.addAttribute("total",users.getTotalPages());
+        model.addAttribute("total",PageUtil.totalPages(userService.countUser(),10));
         return "admin/user_manage";
     }
 
@@ -47,6 +56,12 @@ public class AdminUserController {
     }
 
 
+    @GetMapping("/userListByCursor.do")
+    @ResponseBody
+    public KeysetPage<User> userListByCursor(@RequestParam(value = "cursor",required = false)String cursor){
+        return userService.findUserAfter(cursor,10);
+    }
+
     @GetMapping("/user_edit")
     public String user_edit(Model model,int id){
         User user=userService.findById(id);
@@ -87,6 +102,30 @@ public class AdminUserController {
         int count=userService.countUserID(userID);
         return count < 1;
     }
+    @PostMapping("/importUser.do")
+    @ResponseBody
+    public ImportReport importUser(@RequestParam("file") MultipartFile file, String importID) throws IOException {
+        if(importID==null||importID.isEmpty()){
+            importID=UUID.randomUUID().toString();
+        }
+        try(Reader reader=new InputStreamReader(file.getInputStream(),StandardCharsets.UTF_8)){
+            return userBulkService.importUsers(reader,importID);
+        }
+    }
+
+    @GetMapping("/importUserProgress.do")
+    @ResponseBody
+    public ImportReport importUserProgress(String importID){
+        return userBulkService.importProgress(importID);
+    }
+
+    @GetMapping("/exportUser.do")
+    public void exportUser(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader("Content-Disposition","attachment; filename=users.csv");
+        userBulkService.exportUsers(response.getWriter());
+    }
+
     @PostMapping("/delUser.do")
     @ResponseBody
     public boolean delUser(int id){
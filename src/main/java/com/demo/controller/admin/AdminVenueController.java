@@ -1,8 +1,12 @@
 package com.demo.controller.admin;
 
 import com.demo.entity.Venue;
+import com.demo.entity.vo.CacheStats;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.entity.vo.UploadGcStats;
+import com.demo.service.FileStorage;
+import com.demo.service.UploadGcService;
 import com.demo.service.VenueService;
-import com.demo.utils.FileUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -22,6 +26,10 @@ import java.util.Objects;
 public class AdminVenueController {
     @Autowired
     private VenueService venueService;
+    @Autowired
+    private FileStorage fileStorage;
+    @Autowired
+    private UploadGcService uploadGcService;
 
 
     @RequestMapping("/venue_manage")
@@ -51,6 +59,12 @@ public class AdminVenueController {
 
     }
 
+    @GetMapping("/venueListByCursor.do")
+    @ResponseBody
+    public KeysetPage<Venue> getVenueListByCursor(@RequestParam(value = "cursor",required = false)String cursor){
+        return venueService.findAfter(cursor,10);
+    }
+
     @PostMapping("/addVenue.do")
     @ResponseBody
     public void addVenue(String venueName, String address, String description,
@@ -65,7 +79,7 @@ public class AdminVenueController {
         venue.setClose_time(close_time);
 
         if(!Objects.equals(picture.getOriginalFilename(), "")){
-            venue.setPicture(FileUtil.saveVenueFile(picture));
+            venue.setPicture(fileStorage.saveVenueFile(picture));
         }else{
             venue.setPicture("");
         }
@@ -90,7 +104,7 @@ public class AdminVenueController {
         venue.setDescription(description);
         venue.setPrice(price);
         if(!Objects.equals(picture.getOriginalFilename(), "")){
-            venue.setPicture(FileUtil.saveVenueFile(picture));
+            venue.setPicture(fileStorage.saveVenueFile(picture));
         }
         venue.setOpen_time(open_time);
         venue.setClose_time(close_time);
@@ -105,6 +119,27 @@ public class AdminVenueController {
         return true;
     }
 
+    @GetMapping("/venueCacheStats.do")
+    @ResponseBody
+    public CacheStats venueCacheStats(){
+        return venueService.cacheStats();
+    }
+
+    @GetMapping("/uploadGcStats.do")
+    @ResponseBody
+    public UploadGcStats uploadGcStats(){
+        return uploadGcService.stats();
+    }
+
+    /**
+     * 立即回收一批没有引用的上传文件
+     */
+    @PostMapping("/collectUploads.do")
+    @ResponseBody
+    public UploadGcStats collectUploads(){
+        return uploadGcService.collect();
+    }
+
     @PostMapping("/checkVenueName.do")
     @ResponseBody
     public boolean checkVenueName(String venueName){
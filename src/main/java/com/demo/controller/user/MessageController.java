@@ -2,12 +2,13 @@ package com.demo.controller.user;
 
 import com.demo.entity.Message;
 import com.demo.entity.User;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.MessageVo;
 import com.demo.service.MessageService;
 import com.demo.service.MessageVoService;
+import com.demo.utils.PageUtil;
 import com.demo.exception.LoginException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -23,6 +24,8 @@ import java.util.List;
 
 @Controller
 public class MessageController {
+    private static final int PAGE_SIZE=5;
+
     @Autowired
     private MessageService messageService;
     @Autowired
@@ -30,22 +33,15 @@ public class MessageController {
 
     @GetMapping("/message_list")
     public String message_list(Model model,HttpServletRequest request)throws Exception{
-        Pageable message_pageable= PageRequest.of(0,5, Sort.by("time").descending());
-        Page<Message> messages=messageService.findPassState(message_pageable);
-        List<MessageVo> message_list=messageVoService.returnVo(messages.getContent());
-
-        model.addAttribute("total",messages.getTotalPages());
-
         Object user=request.getSession().getAttribute("user");
         if(user==null) {
             throw new LoginException("请登录！");
         }
         User loginUser=(User)user;
 
-            Pageable user_message_pageable = PageRequest.of(0,5, Sort.by("time").descending());
-            model.addAttribute("user_total",messageService.findByUser(loginUser.getUserID(),user_message_pageable).getTotalPages());
-
-
+        //列表内容由页面异步加载，这里只需要总页数；通过的留言数是内存计数器，只剩用户的留言数一次count查询，不需要并行
+        model.addAttribute("total",PageUtil.totalPages(messageService.countPassState(),PAGE_SIZE));
+        model.addAttribute("user_total",PageUtil.totalPages(messageService.countByUser(loginUser.getUserID()),PAGE_SIZE));
 
         return "message_list";
     }
@@ -56,10 +52,13 @@ public class MessageController {
     public List<MessageVo> message_list(@RequestParam(value = "page",defaultValue = "1")int page){
         System.out.println("success");
         Pageable message_pageable= PageRequest.of(page-1,5, Sort.by("time").descending());
-        Page<Message> messages=messageService.findPassState(message_pageable);
-        List<MessageVo> message_list=messageVoService.returnVo(messages.getContent());
+        return messageVoService.findPassStateSlice(message_pageable).getContent();
+    }
 
-        return message_list;
+    @GetMapping("/message/getMessageListByCursor")
+    @ResponseBody
+    public KeysetPage<MessageVo> message_list_by_cursor(@RequestParam(value = "cursor",required = false)String cursor){
+        return messageVoService.findPassStateAfter(cursor,5);
     }
 
     //User的留言不管是否通过都显示
@@ -75,8 +74,7 @@ public class MessageController {
         User loginUser=(User)user;
 
             Pageable message_pageable = PageRequest.of(page - 1, 5, Sort.by("time").descending());
-            List<Message> user_messages = messageService.findByUser(loginUser.getUserID(), message_pageable).getContent();
-            return messageVoService.returnVo(user_messages);
+            return messageVoService.findByUserSlice(loginUser.getUserID(), message_pageable).getContent();
 //        }
 //        return null;
     }
@@ -89,7 +87,7 @@ public class MessageController {
         message.setContent(content);
         message.setState(1);
         message.setTime(LocalDateTime.now());
-        messageService.create(message);
+        messageService.submit(message);
         response.sendRedirect("/message_list");
     }
 
@@ -1,11 +1,13 @@
 package com.demo.controller.user;
 
 import com.demo.entity.News;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.service.NewsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -13,8 +15,6 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
-import java.util.List;
-
 @Controller
 public class NewsController {
     @Autowired
@@ -29,18 +29,24 @@ public class NewsController {
 
     @GetMapping("/news/getNewsList")
     @ResponseBody
-    public Page<News> news_list(@RequestParam(value = "page",defaultValue = "1")int page){
+    public Slice<News> news_list(@RequestParam(value = "page",defaultValue = "1")int page){
         System.out.println("success");
         Pageable news_pageable= PageRequest.of(page-1,5, Sort.by("time").descending());
-        return newsService.findAll(news_pageable);
+        return newsService.findSlice(news_pageable);
+    }
+
+    @GetMapping("/news/getNewsListByCursor")
+    @ResponseBody
+    public KeysetPage<News> news_list_by_cursor(@RequestParam(value = "cursor",required = false)String cursor){
+        return newsService.findAfter(cursor,5);
     }
 
     @GetMapping("/news_list")
     public String news_list(Model model){
         Pageable news_pageable= PageRequest.of(0,5, Sort.by("time").descending());
-        List<News> news_list= newsService.findAll(news_pageable).getContent();
-        model.addAttribute("news_list",news_list);
-        model.addAttribute("total", newsService.findAll(news_pageable).getTotalPages());
+        Page<News> news=newsService.findAll(news_pageable);
+        model.addAttribute("news_list",news.getContent());
+        model.addAttribute("total", news.getTotalPages());
         return "news_list";
     }
 }
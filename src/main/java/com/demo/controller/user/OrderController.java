@@ -3,8 +3,11 @@ package com.demo.controller.user;
 import com.demo.entity.Order;
 import com.demo.entity.User;
 import com.demo.entity.Venue;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.OrderVo;
 import com.demo.entity.vo.VenueOrder;
+import com.demo.entity.vo.VenueSlot;
+import com.demo.service.AvailabilityService;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
 import com.demo.service.VenueService;
@@ -20,6 +23,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -32,6 +36,8 @@ public class OrderController {
     private OrderVoService orderVoService;
     @Autowired
     private VenueService venueService;
+    @Autowired
+    private AvailabilityService availabilityService;
 
     @GetMapping("/order_manage")
     public String order_manage(Model model,HttpServletRequest request){
@@ -69,8 +75,18 @@ public class OrderController {
             throw new LoginException("请登录！");
         }
         User loginUser=(User)user;
-        Page<Order> page1=orderService.findUserOrder(loginUser.getUserID(),order_pageable);
-        return orderVoService.returnVo(page1.getContent());
+        return orderVoService.findUserOrderVo(loginUser.getUserID(),order_pageable).getContent();
+    }
+
+    @GetMapping("/getOrderListByCursor.do")
+    @ResponseBody
+    public KeysetPage<OrderVo> order_list_by_cursor(@RequestParam(value = "cursor",required = false)String cursor, HttpServletRequest request){
+        Object user=request.getSession().getAttribute("user");
+        if(user==null) {
+            throw new LoginException("请登录！");
+        }
+        User loginUser=(User)user;
+        return orderVoService.findUserOrderAfter(loginUser.getUserID(),cursor,5);
     }
 
     @PostMapping("/addOrder.do")
@@ -143,4 +159,19 @@ public class OrderController {
         return venueOrder;
 
     }
+
+    /**
+     * 查看场馆某天的空闲时段，只读内存中的占用索引
+     * @param venueName
+     * @param date yyyy-MM-dd
+     * @return
+     */
+    @GetMapping("/order/getVenueSlot.do")
+    @ResponseBody
+    public VenueSlot getVenueSlot(String venueName,String date){
+        Venue venue=venueService.findByVenueName(venueName);
+        LocalDate day=LocalDate.parse(date);
+        return new VenueSlot(venue,availabilityService.findOccupiedHours(venue.getVenueID(),day),
+                availabilityService.findFreeHours(venue.getVenueID(),day));
+    }
 }
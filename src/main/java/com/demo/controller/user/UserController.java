@@ -1,8 +1,8 @@
 package com.demo.controller.user;
 
 import com.demo.entity.User;
+import com.demo.service.FileStorage;
 import com.demo.service.UserService;
-import com.demo.utils.FileUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -18,6 +18,8 @@ import java.util.Objects;
 public class UserController {
     @Autowired
     private UserService userService;
+    @Autowired
+    private FileStorage fileStorage;
 
     @GetMapping("/signup")
     public String signUp(){
@@ -62,7 +64,7 @@ public class UserController {
         user.setEmail(email);
         user.setPhone(phone);
         user.setPicture("");
-        userService.create(user);
+        userService.register(user);
         response.sendRedirect("login");
     }
 
@@ -91,7 +93,7 @@ public class UserController {
         user.setEmail(email);
         user.setPhone(phone);
         if(!Objects.equals(picture.getOriginalFilename(), "")){
-            user.setPicture(FileUtil.saveUserFile(picture));
+            user.setPicture(fileStorage.saveUserFile(picture));
         }
 
         userService.updateUser(user);
@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,8 +15,6 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
-import java.util.List;
-
 @Controller
 public class VenueController {
     @Autowired
@@ -37,18 +36,18 @@ public class VenueController {
      */
     @ResponseBody
     @GetMapping("/venuelist/getVenueList")
-    public Page<Venue> venue_list(@RequestParam(value = "page",defaultValue = "1")int page){
+    public Slice<Venue> venue_list(@RequestParam(value = "page",defaultValue = "1")int page){
         System.out.println("success");
         Pageable venue_pageable= PageRequest.of(page-1,5, Sort.by("venueID").ascending());
-        return venueService.findAll(venue_pageable);
+        return venueService.findSlice(venue_pageable);
     }
 
     @GetMapping("/venue_list")
     public String venue_list(Model model){
         Pageable venue_pageable= PageRequest.of(0,5, Sort.by("venueID").ascending());
-        List<Venue> venue_list=venueService.findAll(venue_pageable).getContent();
-        model.addAttribute("venue_list",venue_list);
-        model.addAttribute("total", venueService.findAll(venue_pageable).getTotalPages());
+        Page<Venue> venues=venueService.findAll(venue_pageable);
+        model.addAttribute("venue_list",venues.getContent());
+        model.addAttribute("total", venues.getTotalPages());
         return "venue_list";
     }
 
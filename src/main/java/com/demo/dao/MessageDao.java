@@ -1,24 +1,88 @@
 package com.demo.dao;
 
 import com.demo.entity.Message;
+import com.demo.entity.vo.MessageVo;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface MessageDao extends JpaRepository<Message,Integer> {
     Message findByMessageID(int messageID);
 
+    @Query("select m.state from Message m where m.messageID = ?1")
+    Integer findStateByMessageID(int messageID);
+
     Page<Message> findAllByUserID(String userID,Pageable pageable);
     
     Page<Message> findAllByState(int state,Pageable pageable);
 
+    @Query(value = "select new com.demo.entity.vo.MessageVo(m.messageID, m.userID, m.content, m.time, u.userName, u.picture, m.state) " +
+            "from Message m left join User u on u.userID = m.userID where m.state = ?1",
+            countQuery = "select count(m) from Message m where m.state = ?1")
+    Page<MessageVo> findVoByState(int state, Pageable pageable);
+
+    @Query(value = "select new com.demo.entity.vo.MessageVo(m.messageID, m.userID, m.content, m.time, u.userName, u.picture, m.state) " +
+            "from Message m left join User u on u.userID = m.userID where m.userID = ?1",
+            countQuery = "select count(m) from Message m where m.userID = ?1")
+    Page<MessageVo> findVoByUserID(String userID, Pageable pageable);
+
+    @Query("select new com.demo.entity.vo.MessageVo(m.messageID, m.userID, m.content, m.time, u.userName, u.picture, m.state) " +
+            "from Message m left join User u on u.userID = m.userID where m.state = ?1")
+    Slice<MessageVo> findVoSliceByState(int state, Pageable pageable);
+
+    @Query("select new com.demo.entity.vo.MessageVo(m.messageID, m.userID, m.content, m.time, u.userName, u.picture, m.state) " +
+            "from Message m left join User u on u.userID = m.userID where m.userID = ?1")
+    Slice<MessageVo> findVoSliceByUserID(String userID, Pageable pageable);
+
+    long countByState(int state);
+
+    @Query("select m.state, count(m) from Message m group by m.state")
+    List<Object[]> countGroupByState();
+
+    long countByUserID(String userID);
+
+    @Query("select new com.demo.entity.vo.MessageVo(m.messageID, m.userID, m.content, m.time, u.userName, u.picture, m.state) " +
+            "from Message m left join User u on u.userID = m.userID where m.state = ?1 " +
+            "order by m.time desc, m.messageID desc")
+    List<MessageVo> findVoByStateOrderByTime(int state, Pageable pageable);
+
+    /**
+     * MySQL里null比任何值都小，time倒序时time为null的留言排在最后，
+     * 所以游标之后除了time更早的，还有time为null的
+     */
+    @Query("select new com.demo.entity.vo.MessageVo(m.messageID, m.userID, m.content, m.time, u.userName, u.picture, m.state) " +
+            "from Message m left join User u on u.userID = m.userID where m.state = ?1 " +
+            "and (m.time < ?2 or (m.time = ?2 and m.messageID < ?3) or m.time is null) order by m.time desc, m.messageID desc")
+    List<MessageVo> findVoByStateAfter(int state, LocalDateTime time, int messageID, Pageable pageable);
+
+    /**
+     * 游标已经落在time为null的留言里，之后只剩time为null、messageID更小的
+     */
+    @Query("select new com.demo.entity.vo.MessageVo(m.messageID, m.userID, m.content, m.time, u.userName, u.picture, m.state) " +
+            "from Message m left join User u on u.userID = m.userID where m.state = ?1 " +
+            "and m.time is null and m.messageID < ?2 order by m.messageID desc")
+    List<MessageVo> findVoByStateAfterNullTime(int state, int messageID, Pageable pageable);
+
     @Transactional
     @Modifying
     @Query(value="update Message o set o.state=?1 where o.messageID=?2",nativeQuery =true)
     void updateState(int state, int messageID);
 
+    /**
+     * 只有当前状态是from时才修改
+     *
+     * @return 修改的行数，状态已被并发修改时为0
+     */
+    @Transactional
+    @Modifying
+    @Query(value="update message o set o.state=?1 where o.messageID=?2 and o.state=?3",nativeQuery =true)
+    int updateState(int state, int messageID, int from);
+
 }
@@ -1,8 +1,27 @@
 package com.demo.dao;
 
 import com.demo.entity.News;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface NewsDao extends JpaRepository<News,Integer> {
 
+    Slice<News> findAllBy(Pageable pageable);
+
+    List<News> findAllByOrderByTimeDescNewsIDDesc(Pageable pageable);
+
+    /**
+     * 和MessageDao.findVoByStateAfter一样，time为null的新闻倒序时排在最后，游标之后要包括它们
+     */
+    @Query("select n from News n where n.time < ?1 or (n.time = ?1 and n.newsID < ?2) or n.time is null " +
+            "order by n.time desc, n.newsID desc")
+    List<News> findAfter(LocalDateTime time, int newsID, Pageable pageable);
+
+    @Query("select n from News n where n.time is null and n.newsID < ?1 order by n.newsID desc")
+    List<News> findAfterNullTime(int newsID, Pageable pageable);
 }
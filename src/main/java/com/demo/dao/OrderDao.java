@@ -1,31 +1,82 @@
 package com.demo.dao;
 
 import com.demo.entity.Order;
+import com.demo.entity.vo.OrderVo;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderDao extends JpaRepository<Order,Integer> {
 
     Order findByOrderID(int orderID);
 
+    @Query("select o.state from Order o where o.orderID = ?1")
+    Integer findStateByOrderID(int orderID);
+
     Page<Order> findAllByState(int state,Pageable pageable);
 
     List<Order> findByVenueIDAndStartTimeIsBetween(int venueID, LocalDateTime startTime, LocalDateTime startTime2);
 
-    @Query(value = "select * from `order` o where o.state = ?1 or o.state = ?2 ", nativeQuery = true)
-    List<Order> findAudit(int state1,int state2);
+    List<Order> findByStartTimeGreaterThanEqualAndStateNot(LocalDateTime startTime, int state);
 
     Page<Order> findAllByUserID(String userID, Pageable pageable);
 
+    @Query("select o.state, count(o) from Order o group by o.state")
+    List<Object[]> countGroupByState();
+
+    @Query(value = "select new com.demo.entity.vo.OrderVo(o.orderID, o.userID, o.venueID, v.venueName, o.state, o.orderTime, o.startTime, o.hours, o.total) " +
+            "from Order o left join Venue v on v.venueID = o.venueID where o.userID = ?1",
+            countQuery = "select count(o) from Order o where o.userID = ?1")
+    Page<OrderVo> findVoByUserID(String userID, Pageable pageable);
+
+    @Query(value = "select new com.demo.entity.vo.OrderVo(o.orderID, o.userID, o.venueID, v.venueName, o.state, o.orderTime, o.startTime, o.hours, o.total) " +
+            "from Order o left join Venue v on v.venueID = o.venueID where o.state = ?1",
+            countQuery = "select count(o) from Order o where o.state = ?1")
+    Page<OrderVo> findVoByState(int state, Pageable pageable);
+
+    @Query("select new com.demo.entity.vo.OrderVo(o.orderID, o.userID, o.venueID, v.venueName, o.state, o.orderTime, o.startTime, o.hours, o.total) " +
+            "from Order o left join Venue v on v.venueID = o.venueID where o.state in ?1")
+    Slice<OrderVo> findVoSliceByStateIn(Collection<Integer> states, Pageable pageable);
+
+    @Query("select new com.demo.entity.vo.OrderVo(o.orderID, o.userID, o.venueID, v.venueName, o.state, o.orderTime, o.startTime, o.hours, o.total) " +
+            "from Order o left join Venue v on v.venueID = o.venueID where o.userID = ?1 " +
+            "order by o.orderTime desc, o.orderID desc")
+    List<OrderVo> findVoByUserIDOrderByOrderTime(String userID, Pageable pageable);
+
+    /**
+     * 和MessageDao.findVoByStateAfter一样，orderTime为null的订单倒序时排在最后，游标之后要包括它们
+     */
+    @Query("select new com.demo.entity.vo.OrderVo(o.orderID, o.userID, o.venueID, v.venueName, o.state, o.orderTime, o.startTime, o.hours, o.total) " +
+            "from Order o left join Venue v on v.venueID = o.venueID where o.userID = ?1 " +
+            "and (o.orderTime < ?2 or (o.orderTime = ?2 and o.orderID < ?3) or o.orderTime is null) " +
+            "order by o.orderTime desc, o.orderID desc")
+    List<OrderVo> findVoByUserIDAfter(String userID, LocalDateTime orderTime, int orderID, Pageable pageable);
+
+    @Query("select new com.demo.entity.vo.OrderVo(o.orderID, o.userID, o.venueID, v.venueName, o.state, o.orderTime, o.startTime, o.hours, o.total) " +
+            "from Order o left join Venue v on v.venueID = o.venueID where o.userID = ?1 " +
+            "and o.orderTime is null and o.orderID < ?2 order by o.orderID desc")
+    List<OrderVo> findVoByUserIDAfterNullTime(String userID, int orderID, Pageable pageable);
+
     @Transactional
     @Modifying
     @Query(value="update `order` o set o.state=?1 where o.orderID=?2",nativeQuery =true)
     void updateState(int state, int orderID);
+
+    /**
+     * 只有当前状态是from时才修改
+     *
+     * @return 修改的行数，状态已被并发修改时为0
+     */
+    @Transactional
+    @Modifying
+    @Query(value="update `order` o set o.state=?1 where o.orderID=?2 and o.state=?3",nativeQuery =true)
+    int updateState(int state, int orderID, int from);
 }
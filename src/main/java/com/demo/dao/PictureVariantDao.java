@@ -0,0 +1,17 @@
+package com.demo.dao;
+
+import com.demo.entity.PictureVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface PictureVariantDao extends JpaRepository<PictureVariant,Integer> {
+    List<PictureVariant> findByPictureIn(Collection<String> pictures);
+
+    List<PictureVariant> findByPathIn(Collection<String> paths);
+
+    @Transactional
+    void deleteByPicture(String picture);
+}
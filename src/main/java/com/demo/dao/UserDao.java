@@ -4,11 +4,28 @@ import com.demo.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface UserDao extends JpaRepository<User,Integer> {
     User findByUserIDAndPassword(String userID, String password);
     User findByUserID(String userID);
+    List<User> findByUserIDIn(Collection<String> userIDs);
+    @Query("select u.userID from User u where u.userID in ?1")
+    List<String> findUserIDIn(Collection<String> userIDs);
     Page<User> findAllByIsadmin(int isadmin, Pageable pageable);
+    List<User> findByIsadminAndIdGreaterThanOrderByIdAsc(int isadmin, int id, Pageable pageable);
     int countByUserID(String userID);
+    @Query("select u.userID from User u")
+    List<String> findAllUserID();
+    @Query("select u.isadmin, count(u) from User u group by u.isadmin")
+    List<Object[]> countGroupByIsadmin();
     User findById(int id);
+    int countByPicture(String picture);
+    @Query("select u.picture from User u where u.id=?1")
+    String findPictureById(int id);
+    @Query("select distinct u.picture from User u where u.picture in ?1")
+    List<String> findPictureIn(Collection<String> pictures);
 }
@@ -1,9 +1,12 @@
 package com.demo.dao;
 
 import com.demo.entity.Venue;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface VenueDao extends JpaRepository<Venue, Integer> {
@@ -11,10 +14,27 @@ public interface VenueDao extends JpaRepository<Venue, Integer> {
 
     Venue findByVenueName(String venueName);
 
+    List<Venue> findByVenueIDIn(Collection<Integer> venueIDs);
+
     @Override
     @Query(value = "select * from venue",nativeQuery = true)
     List<Venue> findAll();
 
+    Slice<Venue> findAllBy(Pageable pageable);
+
+    List<Venue> findByVenueIDGreaterThanOrderByVenueIDAsc(int venueID, Pageable pageable);
+
     int countByVenueName(String venueName);
 
+    int countByPicture(String picture);
+
+    @Query("select v.picture from Venue v where v.venueID=?1")
+    String findPictureByVenueID(int venueID);
+
+    @Query("select distinct v.picture from Venue v where v.picture in ?1")
+    List<String> findPictureIn(Collection<String> pictures);
+
+    @Query("select v.venueName from Venue v")
+    List<String> findAllVenueName();
+
 }
@@ -0,0 +1,24 @@
+package com.demo.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FanOutStats {
+    private long batches;
+
+    private long tasks;
+
+    private long callerRuns;
+
+    private long failures;
+
+    private long timeouts;
+
+    private int active;
+
+    private int queued;
+}
@@ -0,0 +1,20 @@
+package com.demo.entity.vo;
+
+import com.demo.entity.News;
+import com.demo.entity.Venue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HomeSnapshot {
+    List<Venue> venues;
+
+    List<News> news;
+
+    List<MessageVo> messages;
+}
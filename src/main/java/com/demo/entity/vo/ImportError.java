@@ -0,0 +1,16 @@
+package com.demo.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportError {
+    private int line;
+
+    private String userID;
+
+    private String reason;
+}
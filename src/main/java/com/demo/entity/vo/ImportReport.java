@@ -0,0 +1,30 @@
+package com.demo.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReport {
+    private String importID;
+
+    /**
+     * 已读取的数据行数，不含表头和空行
+     */
+    private int total;
+
+    private int imported;
+
+    private int failed;
+
+    private boolean finished;
+
+    /**
+     * 出错的行，只保留前面一部分，failed仍是准确的总数
+     */
+    private List<ImportError> errors;
+}
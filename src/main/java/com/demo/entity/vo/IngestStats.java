@@ -0,0 +1,32 @@
+package com.demo.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestStats {
+    private int queued;
+
+    private int capacity;
+
+    private long batches;
+
+    private long messages;
+
+    private long syncWrites;
+
+    private long failures;
+
+    private int lastBatchSize;
+
+    private long maxBatchSize;
+
+    private long lastFlushMicros;
+
+    private long maxFlushMicros;
+
+    private long avgFlushMicros;
+}
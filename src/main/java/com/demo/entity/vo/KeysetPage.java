@@ -0,0 +1,33 @@
+package com.demo.entity.vo;
+
+import com.demo.utils.Cursor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 键集分页的一页数据，next为下一页的游标，没有下一页时为null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPage<T> {
+    private List<T> content;
+
+    private String next;
+
+    /**
+     * rows需要多查一行，用来判断是否还有下一页
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, Cursor> key) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, size));
+        return new KeysetPage<>(content, key.apply(content.get(size - 1)).encode());
+    }
+}
@@ -0,0 +1,24 @@
+package com.demo.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+    /**
+     * 文件名，不含目录
+     */
+    private String name;
+
+    private long size;
+
+    private long lastModified;
+
+    /**
+     * 本地磁盘上的绝对路径，容器可以用sendfile直接发送；文件不在本地磁盘时为null
+     */
+    private String localPath;
+}
@@ -0,0 +1,32 @@
+package com.demo.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadGcStats {
+    private long scanned;
+
+    private long quarantined;
+
+    private long restored;
+
+    private long purged;
+
+    private long reclaimedBytes;
+
+    private long failures;
+
+    /**
+     * 已经完整扫描过的轮数
+     */
+    private long passes;
+
+    /**
+     * 下一批从这个url之后开始，为null时从头开始
+     */
+    private String cursor;
+}
@@ -0,0 +1,25 @@
+package com.demo.entity.vo;
+
+import com.demo.entity.Venue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VenueSlot {
+    Venue venue;
+
+    /**
+     * 当天已被预约的小时
+     */
+    List<Integer> occupied;
+
+    /**
+     * 当天空闲的小时
+     */
+    List<Integer> free;
+}
@@ -0,0 +1,14 @@
+package com.demo.exception;
+
+/**
+ * 下单失败并且确定订单没有写入，比如时段已被占用、排队的订单被取消
+ */
+public class OrderNotPlacedException extends RuntimeException {
+    public OrderNotPlacedException(String message) {
+        super(message);
+    }
+
+    public OrderNotPlacedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,58 @@
+package com.demo.service;
+
+import com.demo.entity.Order;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AvailabilityService {
+
+    /**
+     * 从数据库重建场馆时段占用索引
+     */
+    void rebuild();
+
+    /**
+     * 登记订单占用的时段，同一订单再次登记时覆盖原有时段
+     *
+     * @param order
+     */
+    void occupy(Order order);
+
+    /**
+     * 释放订单占用的时段
+     *
+     * @param orderID
+     */
+    void release(int orderID);
+
+    /**
+     * 查看场馆某天已被占用的小时
+     *
+     * @param venueID
+     * @param date
+     * @return
+     */
+    List<Integer> findOccupiedHours(int venueID, LocalDate date);
+
+    /**
+     * 查看场馆某天空闲的小时
+     *
+     * @param venueID
+     * @param date
+     * @return
+     */
+    List<Integer> findFreeHours(int venueID, LocalDate date);
+
+    /**
+     * 检查场馆[startTime, startTime+hours)内的每个小时是否都未被预约
+     *
+     * @param venueID
+     * @param startTime
+     * @param hours
+     * @param excludeOrderID 不参与检查的订单，修改订单时传入原订单，新订单传0
+     * @return
+     */
+    boolean isFree(int venueID, LocalDateTime startTime, int hours, int excludeOrderID);
+}
@@ -0,0 +1,139 @@
+package com.demo.service;
+
+import com.demo.entity.vo.StoredFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * 上传文件的存储。保存后返回的url形如file/venue/ab/cd/xxx.jpg，
+ * 写进Venue.picture和User.picture，读取和删除时再通过url找到文件。
+ * 调用方只通过url读写，不接触文件的实际位置，缩略图这类派生文件也通过saveVariant和delete读写。
+ * 回收没有引用的文件时先移到隔离区，隔离期内发现又被引用可以恢复，过了隔离期才真正删除。
+ */
+public interface FileStorage {
+    /**
+     * 保存场馆图片
+     *
+     * @param picture
+     * @return 文件的url，没有内容时返回空串
+     * @throws IOException
+     */
+    String saveVenueFile(MultipartFile picture) throws IOException;
+
+    /**
+     * 保存用户头像
+     *
+     * @param picture
+     * @return 文件的url，没有内容时返回空串
+     * @throws IOException
+     */
+    String saveUserFile(MultipartFile picture) throws IOException;
+
+    /**
+     * url对应文件的属性
+     *
+     * @param url
+     * @return 不是上传文件的url、文件不存在或是还没有写完的临时文件时返回null
+     * @throws IOException
+     */
+    StoredFile stat(String url) throws IOException;
+
+    /**
+     * 读取url对应的文件，调用方负责关闭
+     *
+     * @param url
+     * @return 不是上传文件的url或文件不存在时返回null
+     * @throws IOException
+     */
+    InputStream open(String url) throws IOException;
+
+    /**
+     * 把文件[start, end)区间的内容写到target，本地文件用FileChannel.transferTo，不经过堆内的缓冲区
+     *
+     * @param url
+     * @param start
+     * @param end
+     * @param target
+     * @throws IOException 文件不存在时抛出NoSuchFileException
+     */
+    void transferTo(String url, long start, long end, WritableByteChannel target) throws IOException;
+
+    /**
+     * 在原文件旁边保存一个派生文件，先写临时文件再改名，读取的一方不会看到写了一半的内容，同名文件被替换
+     *
+     * @param url 原文件的url
+     * @param name 派生文件的文件名，不含目录
+     * @param writer 写入内容
+     * @return 派生文件的url
+     * @throws IOException
+     */
+    String saveVariant(String url, String name, ContentWriter writer) throws IOException;
+
+    /**
+     * 删除url对应的文件，修改时间在minAgeMillis以内的不删除
+     *
+     * @param url
+     * @param minAgeMillis
+     * @return 是否删除
+     * @throws IOException
+     */
+    boolean delete(String url, long minAgeMillis) throws IOException;
+
+    /**
+     * 按url的字典序列出文件，不含临时文件和隔离区里的文件
+     *
+     * @param after 从这个url之后开始，为null时从头开始
+     * @param limit
+     * @return
+     * @throws IOException
+     */
+    List<String> list(String after, int limit) throws IOException;
+
+    /**
+     * 把文件移到隔离区，修改时间在minAgeMillis以内的不移动
+     *
+     * @param url
+     * @param minAgeMillis
+     * @return 文件的字节数，没有移动时返回-1
+     * @throws IOException
+     */
+    long quarantine(String url, long minAgeMillis) throws IOException;
+
+    /**
+     * 把隔离区里的文件移回原处，原处已经有文件时只删除隔离区里的
+     *
+     * @param url
+     * @return 隔离区里有这个文件时返回true
+     * @throws IOException
+     */
+    boolean restore(String url) throws IOException;
+
+    /**
+     * 隔离时间超过minAgeMillis的文件
+     *
+     * @param minAgeMillis
+     * @param limit
+     * @return 文件原来的url
+     * @throws IOException
+     */
+    List<String> listQuarantined(long minAgeMillis, int limit) throws IOException;
+
+    /**
+     * 删除隔离区里的文件
+     *
+     * @param url
+     * @return 释放的字节数，文件不存在时返回-1
+     * @throws IOException
+     */
+    long purge(String url) throws IOException;
+
+    @FunctionalInterface
+    interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
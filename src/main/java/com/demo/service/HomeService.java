@@ -0,0 +1,19 @@
+package com.demo.service;
+
+import com.demo.entity.vo.HomeSnapshot;
+
+public interface HomeService {
+    int HOME_SIZE=5;
+
+    /**
+     * 返回首页快照，首次调用时同步生成
+     *
+     * @return
+     */
+    HomeSnapshot getSnapshot();
+
+    /**
+     * 首页内容相关的数据修改后调用，后台异步重新生成快照
+     */
+    void refresh();
+}
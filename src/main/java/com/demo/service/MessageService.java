@@ -1,9 +1,13 @@
 package com.demo.service;
 
 import com.demo.entity.Message;
+import com.demo.entity.vo.IngestStats;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface MessageService {
 
     int STATE_NO_AUDIT=1;
@@ -19,6 +23,19 @@ public interface MessageService {
      */
      Page<Message> findByUser(String userID,Pageable pageable);
 
+    /**
+     * 审核通过的留言总数，读取内存计数，不查询数据库
+     * @return
+     */
+    long countPassState();
+
+    /**
+     * 用户的留言总数
+     * @param userID
+     * @return
+     */
+    long countByUser(String userID);
+
     /**
      * 添加留言
      *
@@ -27,6 +44,19 @@ public interface MessageService {
      */
     int create(Message message);
 
+    /**
+     * 异步添加留言，放进写入队列就返回，不等待写入数据库
+     *
+     * @param message
+     */
+    void submit(Message message);
+
+    /**
+     * 异步写入的队列长度、批大小和写入耗时
+     * @return
+     */
+    IngestStats ingestStats();
+
     /**
      * 删除留言
      *
@@ -40,8 +70,35 @@ public interface MessageService {
 
     void rejectMessage(int messageID);
 
+    /**
+     * 批量通过待审核留言，只有仍处于待审核状态的留言会被通过
+     * @param messageIDs
+     * @return 每个messageID是否被通过，false表示不存在或已被处理
+     */
+    Map<Integer,Boolean> confirmMessages(Collection<Integer> messageIDs);
+
+    /**
+     * 批量驳回待审核留言，只有仍处于待审核状态的留言会被驳回
+     * @param messageIDs
+     * @return 每个messageID是否被驳回，false表示不存在或已被处理
+     */
+    Map<Integer,Boolean> rejectMessages(Collection<Integer> messageIDs);
+
+    /**
+     * 批量删除待审核留言，已审核的留言不会被删除
+     * @param messageIDs
+     * @return 每个messageID是否被删除，false表示不存在或已被处理
+     */
+    Map<Integer,Boolean> delMessages(Collection<Integer> messageIDs);
+
     Page<Message> findWaitState(Pageable pageable);
 
+    /**
+     * 待审核留言总数，读取内存计数，不查询数据库
+     * @return
+     */
+    long countWaitState();
+
     Page<Message> findPassState(Pageable pageable);
 
 }
@@ -1,11 +1,53 @@
 package com.demo.service;
 
 import com.demo.entity.Message;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.MessageVo;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
 public interface MessageVoService  {
     MessageVo returnMessageVoByMessageID(int messageID);
     List<MessageVo> returnVo(List<Message> messages);
+
+    /**
+     * 分页查看审核通过的留言，直接投影为MessageVo
+     * @param pageable
+     * @return
+     */
+    Page<MessageVo> findPassStateVo(Pageable pageable);
+
+    /**
+     * 分页查看用户留言，直接投影为MessageVo
+     * @param userID
+     * @param pageable
+     * @return
+     */
+    Page<MessageVo> findByUserVo(String userID, Pageable pageable);
+
+    /**
+     * 分页查看审核通过的留言，不查询总数
+     * @param pageable
+     * @return
+     */
+    Slice<MessageVo> findPassStateSlice(Pageable pageable);
+
+    /**
+     * 分页查看用户留言，不查询总数
+     * @param userID
+     * @param pageable
+     * @return
+     */
+    Slice<MessageVo> findByUserSlice(String userID, Pageable pageable);
+
+    /**
+     * 审核通过的留言按(time, messageID)倒序键集分页，cursor为空时从第一页开始
+     * @param cursor
+     * @param size
+     * @return
+     */
+    KeysetPage<MessageVo> findPassStateAfter(String cursor, int size);
 }
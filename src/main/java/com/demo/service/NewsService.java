@@ -1,13 +1,29 @@
 package com.demo.service;
 
 import com.demo.entity.News;
+import com.demo.entity.vo.KeysetPage;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable
-        ;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 public interface NewsService {
     Page<News> findAll(Pageable pageable);
 
+    /**
+     * 分页查看新闻，不查询总数
+     * @param pageable
+     * @return
+     */
+    Slice<News> findSlice(Pageable pageable);
+
+    /**
+     * 按(time, newsID)倒序的键集分页，cursor为空时从第一页开始
+     * @param cursor
+     * @param size
+     * @return
+     */
+    KeysetPage<News> findAfter(String cursor, int size);
+
     News findById(int newsID);
 
     int create(News news);
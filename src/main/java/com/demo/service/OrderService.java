@@ -4,7 +4,9 @@ import com.demo.entity.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderService {
@@ -24,7 +26,19 @@ public interface OrderService {
 
     Page<Order> findNoAuditOrder(Pageable pageable);
 
-    List<Order> findAuditOrder();
+    /**
+     * 未审核订单总数，读取内存计数，不查询数据库
+     *
+     * @return
+     */
+    long countNoAuditOrder();
+
+    /**
+     * 已审核（待使用和已完成）订单总数，读取内存计数，不查询数据库
+     *
+     * @return
+     */
+    long countAuditOrder();
 
 
     List<Order> findDateOrder(int venueID, LocalDateTime startTime, LocalDateTime startTime2);
@@ -40,6 +54,29 @@ public interface OrderService {
      */
     void submit(String venueName, LocalDateTime startTime, int hours, String userID);
 
+    /**
+     * 把场馆[from, to]每天营业时间内的时段发布到抢订库存，之后这些时段的下单先在内存中抢占
+     * @param venueID
+     * @param from
+     * @param to
+     * @return 可以抢订的时段数
+     */
+    int publishFlashSlots(int venueID, LocalDate from, LocalDate to);
+
+    /**
+     * 撤回场馆的抢订库存
+     * @param venueID
+     */
+    void withdrawFlashSlots(int venueID);
+
+    /**
+     * 场馆某天抢订库存中剩余的小时
+     * @param venueID
+     * @param date
+     * @return
+     */
+    List<Integer> findFlashSlots(int venueID, LocalDate date);
+
     /**
      * 删除订单
      * @param orderID
@@ -63,4 +100,18 @@ public interface OrderService {
      * @param orderID
      */
     void rejectOrder(int orderID);
+
+    /**
+     * 批量通过未审核订单，只有仍处于未审核状态的订单会被通过
+     * @param orderIDs
+     * @return 实际通过的orderID
+     */
+    List<Integer> confirmOrders(Collection<Integer> orderIDs);
+
+    /**
+     * 批量驳回未审核订单，只有仍处于未审核状态的订单会被驳回，驳回的订单释放占用的时段
+     * @param orderIDs
+     * @return 实际驳回的orderID
+     */
+    List<Integer> rejectOrders(Collection<Integer> orderIDs);
 }
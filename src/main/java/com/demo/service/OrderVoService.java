@@ -2,11 +2,46 @@ package com.demo.service;
 
 
 import com.demo.entity.Order;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.OrderVo;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
 public interface OrderVoService {
     OrderVo returnOrderVoByOrderID(int orderID);
     List<OrderVo> returnVo(List<Order> list);
+
+    /**
+     * 分页查看用户订单，直接投影为OrderVo
+     * @param userID
+     * @param pageable
+     * @return
+     */
+    Page<OrderVo> findUserOrderVo(String userID, Pageable pageable);
+
+    /**
+     * 分页查看未审核订单，直接投影为OrderVo
+     * @param pageable
+     * @return
+     */
+    Page<OrderVo> findNoAuditOrderVo(Pageable pageable);
+
+    /**
+     * 分页查看已审核（待使用和已完成）订单，直接投影为OrderVo，不执行count查询
+     * @param pageable
+     * @return
+     */
+    Slice<OrderVo> findAuditOrderVo(Pageable pageable);
+
+    /**
+     * 用户订单按(orderTime, orderID)倒序键集分页，cursor为空时从第一页开始
+     * @param userID
+     * @param cursor
+     * @param size
+     * @return
+     */
+    KeysetPage<OrderVo> findUserOrderAfter(String userID, String cursor, int size);
 }
@@ -0,0 +1,17 @@
+package com.demo.service;
+
+import com.demo.entity.vo.UploadGcStats;
+
+public interface UploadGcService {
+    /**
+     * 立即回收一批，不等定时任务
+     * @return
+     */
+    UploadGcStats collect();
+
+    /**
+     * 扫描、隔离、恢复和删除的文件数以及释放的字节数
+     * @return
+     */
+    UploadGcStats stats();
+}
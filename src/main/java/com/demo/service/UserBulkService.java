@@ -0,0 +1,36 @@
+package com.demo.service;
+
+import com.demo.entity.vo.ImportReport;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+public interface UserBulkService {
+    /**
+     * 从CSV批量导入普通用户，列为userID,userName,password,email,phone，第一行可以是表头。
+     * 逐行读取，按块检查userID并批量插入，出错的行记入报告，不影响其他行
+     *
+     * @param reader
+     * @param importID 查询进度用的标识
+     * @return
+     * @throws IOException
+     */
+    ImportReport importUsers(Reader reader, String importID) throws IOException;
+
+    /**
+     * 查询导入进度，导入结束后还会保留一段时间
+     *
+     * @param importID
+     * @return 不存在时返回null
+     */
+    ImportReport importProgress(String importID);
+
+    /**
+     * 按id顺序分块导出普通用户到CSV，不导出密码，任何时候内存中只有一块
+     *
+     * @param writer
+     * @throws IOException
+     */
+    void exportUsers(Writer writer) throws IOException;
+}
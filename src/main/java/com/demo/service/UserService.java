@@ -1,6 +1,7 @@
 package com.demo.service;
 
 import com.demo.entity.User;
+import com.demo.entity.vo.KeysetPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -21,6 +22,22 @@ public interface UserService {
      */
     Page<User> findByUserID(Pageable pageable);
 
+    /**
+     * 管理员按id键集分页查看用户，cursor为空时从第一页开始
+     *
+     * @param cursor
+     * @param size
+     * @return
+     */
+    KeysetPage<User> findUserAfter(String cursor, int size);
+
+    /**
+     * 普通用户总数，读取内存计数，不查询数据库
+     *
+     * @return
+     */
+    long countUser();
+
     /**
      * 检查登录
      *
@@ -34,10 +51,18 @@ public interface UserService {
      * 创建用户
      *
      * @param user
-     * @return
+     * @return 新用户的id
      */
     int create(User user);
 
+    /**
+     * 用户注册，经注册流水线批量检查userID并插入，userID已存在时抛出异常
+     *
+     * @param user
+     * @return 新用户的id
+     */
+    int register(User user);
+
     /**
      * 根据id删除用户
      *
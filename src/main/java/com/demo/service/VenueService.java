@@ -1,8 +1,11 @@
 package com.demo.service;
 
 import com.demo.entity.Venue;
+import com.demo.entity.vo.CacheStats;
+import com.demo.entity.vo.KeysetPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
@@ -24,6 +27,22 @@ public interface VenueService {
     Page<Venue> findAll(Pageable pageable);
 
     List<Venue> findAll();
+
+    /**
+     * 分页查看场馆，不查询总数
+     * @param pageable
+     * @return
+     */
+    Slice<Venue> findSlice(Pageable pageable);
+
+    /**
+     * 按venueID键集分页查看场馆，cursor为空时从第一页开始
+     * @param cursor
+     * @param size
+     * @return
+     */
+    KeysetPage<Venue> findAfter(String cursor, int size);
+
     /**
      * 创建新的场馆
      *
@@ -47,4 +66,11 @@ public interface VenueService {
     void delById(int id);
 
     int countVenueName(String venueName);
+
+    /**
+     * 场馆缓存的命中情况
+     *
+     * @return
+     */
+    CacheStats cacheStats();
 }
@@ -0,0 +1,236 @@
+package com.demo.service.impl;
+
+import com.demo.dao.OrderDao;
+import com.demo.entity.Order;
+import com.demo.service.AvailabilityService;
+import com.demo.service.OrderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 场馆每天的占用情况用一个24位的位图表示，第h位为1表示h点到h+1点已被预约。
+ * 索引只覆盖昨天及以后的订单，更早的日期直接查询数据库。
+ * 每小时把horizon推进到昨天，丢弃之前的日期和已经结束的订单，索引不随运行时间增长。
+ */
+@Service
+public class AvailabilityServiceImpl implements AvailabilityService {
+    private static final int HOURS_PER_DAY = 24;
+
+    @Autowired
+    private OrderDao orderDao;
+
+    private final ConcurrentMap<Integer, ConcurrentMap<LocalDate, DaySlots>> venues = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Integer, Booking> bookings = new ConcurrentHashMap<>();
+
+    private volatile LocalDate horizon = LocalDate.MAX;
+
+    @PostConstruct
+    @Override
+    public void rebuild() {
+        LocalDate from = LocalDate.now().minusDays(1);
+        List<Order> orders = orderDao.findByStartTimeGreaterThanEqualAndStateNot(from.atStartOfDay(), OrderService.STATE_REJECT);
+        venues.clear();
+        bookings.clear();
+        for (Order order : orders) {
+            occupy(order);
+        }
+        horizon = from;
+    }
+
+    @Scheduled(initialDelay = 3600000, fixedDelay = 3600000)
+    public void evictPastDays() {
+        evictBefore(LocalDate.now().minusDays(1));
+    }
+
+    /**
+     * 先推进horizon，之后from以前的日期都查询数据库，再删除这些日期的位图和已经结束的订单。
+     * 跨过from的订单保留，释放时对已删除的日期减一不会留下记录
+     */
+    void evictBefore(LocalDate from) {
+        if (!from.isAfter(horizon)) {
+            return;
+        }
+        horizon = from;
+        LocalDateTime start = from.atStartOfDay();
+        for (Iterator<Map.Entry<Integer, ConcurrentMap<LocalDate, DaySlots>>> it = venues.entrySet().iterator(); it.hasNext(); ) {
+            ConcurrentMap<LocalDate, DaySlots> days = it.next().getValue();
+            days.keySet().removeIf(date -> date.isBefore(from));
+            if (days.isEmpty()) {
+                it.remove();
+            }
+        }
+        bookings.values().removeIf(booking -> !booking.startTime.plusHours(booking.hours).isAfter(start));
+    }
+
+    @Override
+    public void occupy(Order order) {
+        if (order.getState() == OrderService.STATE_REJECT || order.getStartTime() == null) {
+            release(order.getOrderID());
+            return;
+        }
+        Booking booking = new Booking(order.getVenueID(), order.getStartTime(), order.getHours());
+        bookings.compute(order.getOrderID(), (id, old) -> {
+            if (old != null) {
+                apply(old, -1);
+            }
+            apply(booking, 1);
+            return booking;
+        });
+    }
+
+    @Override
+    public void release(int orderID) {
+        bookings.computeIfPresent(orderID, (id, old) -> {
+            apply(old, -1);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Integer> findOccupiedHours(int venueID, LocalDate date) {
+        int mask = occupiedMask(venueID, date);
+        List<Integer> hours = new ArrayList<>();
+        for (int h = 0; h < HOURS_PER_DAY; h++) {
+            if ((mask & (1 << h)) != 0) {
+                hours.add(h);
+            }
+        }
+        return hours;
+    }
+
+    @Override
+    public List<Integer> findFreeHours(int venueID, LocalDate date) {
+        int mask = occupiedMask(venueID, date);
+        List<Integer> hours = new ArrayList<>();
+        for (int h = 0; h < HOURS_PER_DAY; h++) {
+            if ((mask & (1 << h)) == 0) {
+                hours.add(h);
+            }
+        }
+        return hours;
+    }
+
+    @Override
+    public boolean isFree(int venueID, LocalDateTime startTime, int hours, int excludeOrderID) {
+        Booking own = bookings.get(excludeOrderID);
+        for (int h = 0; h < hours; h++) {
+            LocalDateTime slot = startTime.plusHours(h);
+            LocalDate date = slot.toLocalDate();
+            int hour = slot.getHour();
+            if (date.isBefore(horizon)) {
+                if ((loadMask(venueID, date, excludeOrderID) & (1 << hour)) != 0) {
+                    return false;
+                }
+                continue;
+            }
+            int count = occupiedCount(venueID, date, hour);
+            if (own != null && own.venueID == venueID && own.covers(slot)) {
+                count--;
+            }
+            if (count > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int occupiedCount(int venueID, LocalDate date, int hour) {
+        ConcurrentMap<LocalDate, DaySlots> days = venues.get(venueID);
+        if (days == null) {
+            return 0;
+        }
+        DaySlots slots = days.get(date);
+        return slots == null ? 0 : slots.counts[hour];
+    }
+
+    private int occupiedMask(int venueID, LocalDate date) {
+        if (date.isBefore(horizon)) {
+            return loadMask(venueID, date, 0);
+        }
+        ConcurrentMap<LocalDate, DaySlots> days = venues.get(venueID);
+        if (days == null) {
+            return 0;
+        }
+        DaySlots slots = days.get(date);
+        return slots == null ? 0 : slots.mask;
+    }
+
+    private int loadMask(int venueID, LocalDate date, int excludeOrderID) {
+        LocalDateTime start = date.atStartOfDay();
+        int mask = 0;
+        for (Order order : orderDao.findByVenueIDAndStartTimeIsBetween(venueID, start.minusDays(1), start.plusDays(1))) {
+            if (order.getState() == OrderService.STATE_REJECT || order.getOrderID() == excludeOrderID) {
+                continue;
+            }
+            for (int h = 0; h < order.getHours(); h++) {
+                LocalDateTime slot = order.getStartTime().plusHours(h);
+                if (slot.toLocalDate().equals(date)) {
+                    mask |= 1 << slot.getHour();
+                }
+            }
+        }
+        return mask;
+    }
+
+    private void apply(Booking booking, int delta) {
+        ConcurrentMap<LocalDate, DaySlots> days = venues.computeIfAbsent(booking.venueID, id -> new ConcurrentHashMap<>());
+        for (int h = 0; h < booking.hours; h++) {
+            LocalDateTime slot = booking.startTime.plusHours(h);
+            days.compute(slot.toLocalDate(), (date, slots) -> {
+                if (slots == null) {
+                    slots = new DaySlots();
+                }
+                slots.add(slot.getHour(), delta);
+                return slots.mask == 0 ? null : slots;
+            });
+        }
+    }
+
+    /**
+     * 订单登记时的场馆与时段，用于之后释放
+     */
+    private static class Booking {
+        private final int venueID;
+        private final LocalDateTime startTime;
+        private final int hours;
+
+        Booking(int venueID, LocalDateTime startTime, int hours) {
+            this.venueID = venueID;
+            this.startTime = startTime;
+            this.hours = hours;
+        }
+
+        boolean covers(LocalDateTime slot) {
+            return !slot.isBefore(startTime) && slot.isBefore(startTime.plusHours(hours));
+        }
+    }
+
+    /**
+     * 同一时段可能有多个未审核的订单，按小时计数，计数大于0时置位
+     */
+    private static class DaySlots {
+        private final short[] counts = new short[HOURS_PER_DAY];
+        private volatile int mask;
+
+        void add(int hour, int delta) {
+            counts[hour] += delta;
+            if (counts[hour] > 0) {
+                mask |= 1 << hour;
+            } else {
+                mask &= ~(1 << hour);
+            }
+        }
+    }
+}
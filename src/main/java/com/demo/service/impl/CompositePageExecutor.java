@@ -0,0 +1,185 @@
+package com.demo.service.impl;
+
+import com.demo.entity.vo.FanOutStats;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 组合页面的并行加载：一个页面上互不依赖的查询放进同一个Batch并发执行，
+ * join时等待全部完成，页面耗时接近最慢的一个查询而不是所有查询之和。
+ * 线程池和队列都有上限，队列满时由调用线程自己执行，退化为串行而不是报错。
+ * 关闭之后提交的任务同样由调用线程执行；关闭时还在队列里的任务被取消，等待它们的join立即失败。
+ * Batch中的任务不能再开启新的Batch，否则可能占满线程池互相等待。
+ */
+@Component
+public class CompositePageExecutor {
+    private static final int THREADS = 8;
+    private static final int QUEUE_SIZE = 64;
+    static final long TIMEOUT_MILLIS = 3000;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private final RejectedExecutionHandler callerRunsPolicy = (task, pool) -> {
+        callerRuns.increment();
+        task.run();
+    };
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+        Thread thread = new Thread(r, "page-fan-out-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }, callerRunsPolicy);
+
+    {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public Batch batch() {
+        return batch(TIMEOUT_MILLIS);
+    }
+
+    public Batch batch(long timeoutMillis) {
+        batches.increment();
+        return new Batch(timeoutMillis);
+    }
+
+    public FanOutStats stats() {
+        return new FanOutStats(batches.sum(), tasks.sum(), callerRuns.sum(), failures.sum(), timeouts.sum(),
+                executor.getActiveCount(), executor.getQueue().size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Runnable task : executor.shutdownNow()) {
+            ((Future<?>) task).cancel(false);
+        }
+    }
+
+    public class Batch {
+        private final long timeoutMillis;
+        private final List<Future<?>> futures = new ArrayList<>();
+        private final BlockingQueue<Future<?>> completed = new LinkedBlockingQueue<>();
+        private final Map<String, Part<?>> attributes = new LinkedHashMap<>();
+
+        private Batch(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        /**
+         * 提交一个查询，join之后通过Part.get取结果
+         */
+        public <T> Part<T> fork(Callable<T> task) {
+            FutureTask<T> future = new FutureTask<T>(task) {
+                @Override
+                protected void done() {
+                    completed.add(this);
+                }
+            };
+            tasks.increment();
+            futures.add(future);
+            executor.execute(future);
+            return new Part<>(future);
+        }
+
+        /**
+         * 提交一个查询，结果以name为键放入join返回的Map，用于直接填充Model
+         */
+        public Batch attribute(String name, Callable<?> task) {
+            attributes.put(name, fork(task));
+            return this;
+        }
+
+        /**
+         * 等待所有查询完成，按完成顺序检查结果，
+         * 超时或任一查询失败时立即取消其余查询并抛出异常
+         */
+        public Map<String, Object> join() {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            try {
+                for (int i = 0; i < futures.size(); i++) {
+                    Future<?> future = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (future == null) {
+                        timeouts.increment();
+                        cancelAll();
+                        throw new RuntimeException("页面加载超时");
+                    }
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                cancelAll();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("页面加载被中断", e);
+            } catch (CancellationException e) {
+                cancelAll();
+                throw new RuntimeException("服务正在关闭", e);
+            } catch (ExecutionException e) {
+                failures.increment();
+                cancelAll();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            attributes.forEach((name, part) -> result.put(name, part.get()));
+            return result;
+        }
+
+        private void cancelAll() {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    public static class Part<T> {
+        private final Future<T> future;
+
+        private Part(Future<T> future) {
+            this.future = future;
+        }
+
+        /**
+         * 只能在join成功之后调用
+         */
+        public T get() {
+            if (!future.isDone()) {
+                throw new IllegalStateException("batch not joined");
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.utils.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 已存在的userID和venueName的布隆过滤器，注册和添加场馆时的重名检查先查这里，
+ * 一定不存在的直接返回，可能存在的再查数据库。
+ * 启动时从数据库加载，之后由各Service在新增和改名时加入。
+ * 布隆过滤器不能删除，删除和改名留下的旧名字只会让检查多查一次数据库，
+ * 定时重建时清掉，同时按当前数量重新分配大小。
+ * userID和venue_name的排序规则是utf8_general_ci，比较时不区分大小写和重音、忽略末尾空格，
+ * 加入和查询前都按同样的规则规范化，数据库认为相同的名字在这里也相同。
+ */
+@Component
+public class ExistenceFilter {
+    private static final Logger log = LoggerFactory.getLogger(ExistenceFilter.class);
+
+    static final double FPP = 0.01;
+    static final int MIN_EXPECTED = 1024;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    public enum Kind {
+        USER_ID, VENUE_NAME
+    }
+
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private VenueDao venueDao;
+
+    /**
+     * 还没有加载成功的类型为null，检查时都按可能存在处理
+     */
+    private final Map<Kind, BloomFilter> filters = new EnumMap<>(Kind.class);
+
+    /**
+     * 正在重建的过滤器，重建期间新加入的名字同时写进去
+     */
+    private final Map<Kind, BloomFilter> building = new EnumMap<>(Kind.class);
+
+    public boolean mightContain(Kind kind, String name) {
+        BloomFilter filter;
+        synchronized (this) {
+            filter = filters.get(kind);
+        }
+        return filter == null || name == null || filter.mightContain(normalize(name));
+    }
+
+    public void add(Kind kind, String name) {
+        if (name == null) {
+            return;
+        }
+        String key = normalize(name);
+        BloomFilter filter;
+        BloomFilter next;
+        synchronized (this) {
+            filter = filters.get(kind);
+            next = building.get(kind);
+        }
+        if (filter != null) {
+            filter.put(key);
+        }
+        if (next != null) {
+            next.put(key);
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        for (Kind kind : Kind.values()) {
+            rebuild(kind);
+        }
+    }
+
+    @Scheduled(initialDelay = 3600000, fixedDelay = 3600000)
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("rebuild existence filter failed", e);
+        }
+    }
+
+    /**
+     * 按数据库中的名字重建某一类过滤器。
+     * 先登记新过滤器再查询，查询开始后提交的新增会通过add写进新过滤器，不会漏掉。
+     */
+    public void rebuild(Kind kind) {
+        long count = kind == Kind.USER_ID ? userDao.count() : venueDao.count();
+        BloomFilter next = BloomFilter.create((int) Math.max(MIN_EXPECTED, Math.min(Integer.MAX_VALUE, count * 2)), FPP);
+        synchronized (this) {
+            building.put(kind, next);
+        }
+        try {
+            for (String name : load(kind)) {
+                if (name != null) {
+                    next.put(normalize(name));
+                }
+            }
+            synchronized (this) {
+                filters.put(kind, next);
+            }
+        } finally {
+            synchronized (this) {
+                building.remove(kind);
+            }
+        }
+    }
+
+    /**
+     * 按utf8_general_ci的比较规则规范化：去掉末尾空格和重音符号，统一大小写。
+     * 只会把数据库认为不同的名字当成相同，多查一次数据库，不会把相同的当成不同
+     */
+    static String normalize(String name) {
+        int end = name.length();
+        while (end > 0 && name.charAt(end - 1) == ' ') {
+            end--;
+        }
+        String folded = Normalizer.normalize(name.substring(0, end), Normalizer.Form.NFD);
+        folded = MARKS.matcher(folded).replaceAll("");
+        return folded.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    private List<String> load(Kind kind) {
+        return kind == Kind.USER_ID ? userDao.findAllUserID() : venueDao.findAllVenueName();
+    }
+}
@@ -0,0 +1,213 @@
+package com.demo.service.impl;
+
+import com.demo.entity.Order;
+import com.demo.service.OrderService;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 抢订库存：热门场馆在固定时间放出一批时段时，管理员先把场馆某几天的时段发布到内存，
+ * 下单时先在这里用CAS抢占时段，抢不到的直接返回，不加场馆锁也不访问数据库，只有抢到的继续下单。
+ * 每天一个24位的位图，published表示发布的小时，claimed表示已被抢占的小时，
+ * 跨多个小时的订单一次CAS占住当天所有小时，跨天时逐天抢占，后面的天失败就退回前面已占的。
+ * 订单被驳回或删除时退回它占用的已发布小时，修改时间时先抢占新时段，修改成功后退回原来的。库存只是普通下单流程前的一道过滤，
+ * 最终是否占用仍由场馆锁内的可用性检查决定。
+ */
+@Component
+public class FlashInventory {
+    private static final int HOURS_PER_DAY = 24;
+
+    private final ConcurrentMap<Integer, ConcurrentMap<LocalDate, Day>> venues = new ConcurrentHashMap<>();
+
+    /**
+     * 发布场馆某天的时段，覆盖之前的发布
+     *
+     * @param published 发布的小时，第h位为1表示h点到h+1点
+     * @param occupied  发布时已被预约的小时
+     * @return 可以抢订的时段数
+     */
+    public int publish(int venueID, LocalDate date, int published, int occupied) {
+        venues.computeIfAbsent(venueID, id -> new ConcurrentHashMap<>()).put(date, new Day(published, occupied & published));
+        return Integer.bitCount(published & ~occupied);
+    }
+
+    /**
+     * 撤回场馆的全部发布，之后的下单走普通流程
+     */
+    public void withdraw(int venueID) {
+        venues.remove(venueID);
+    }
+
+    /**
+     * 是否有场馆发布了库存
+     */
+    public boolean isPublished() {
+        return !venues.isEmpty();
+    }
+
+    public boolean isPublished(int venueID) {
+        ConcurrentMap<LocalDate, Day> days = venues.get(venueID);
+        return days != null && !days.isEmpty();
+    }
+
+    /**
+     * 场馆某天还可以抢订的小时，没有发布时返回空
+     */
+    public List<Integer> remainingHours(int venueID, LocalDate date) {
+        List<Integer> hours = new ArrayList<>();
+        Day day = day(venueID, date);
+        if (day == null) {
+            return hours;
+        }
+        int free = day.published & ~day.claimed.get();
+        for (int h = 0; h < HOURS_PER_DAY; h++) {
+            if ((free & (1 << h)) != 0) {
+                hours.add(h);
+            }
+        }
+        return hours;
+    }
+
+    /**
+     * 抢占[startTime, startTime+hours)内已发布的小时
+     *
+     * @return 抢到的时段，下单失败时调用release退回；订单没有落在已发布的日期上时返回null
+     * @throws RuntimeException 时段已被抢占，或者发布的日期中包含未开放的小时
+     */
+    public Claim claim(int venueID, LocalDateTime startTime, int hours) {
+        return claim(masks(venueID, startTime, hours), new LinkedHashMap<>());
+    }
+
+    /**
+     * 订单previous改到[startTime, startTime+hours)时抢占新时段，订单自己已经占用的小时不再抢占
+     *
+     * @return 同claim(venueID, startTime, hours)
+     */
+    public Claim claim(int venueID, LocalDateTime startTime, int hours, Order previous) {
+        return claim(masks(venueID, startTime, hours), held(previous));
+    }
+
+    /**
+     * 订单从previous改为current后，退回previous占用而current不再占用的已发布小时
+     */
+    public void release(Order previous, Order current) {
+        Map<Day, Integer> kept = held(current);
+        for (Map.Entry<Day, Integer> entry : held(previous).entrySet()) {
+            int mask = entry.getValue() & entry.getKey().published & ~kept.getOrDefault(entry.getKey(), 0);
+            entry.getKey().claimed.getAndUpdate(claimed -> claimed & ~mask);
+        }
+    }
+
+    private Claim claim(Map<Day, Integer> masks, Map<Day, Integer> own) {
+        if (masks.isEmpty()) {
+            return null;
+        }
+        for (Map.Entry<Day, Integer> entry : masks.entrySet()) {
+            if ((entry.getValue() & ~entry.getKey().published) != 0) {
+                throw new RuntimeException("该时段未开放预约");
+            }
+        }
+        Claim claim = new Claim();
+        for (Map.Entry<Day, Integer> entry : masks.entrySet()) {
+            int mask = entry.getValue() & ~own.getOrDefault(entry.getKey(), 0);
+            if (mask == 0) {
+                continue;
+            }
+            if (!entry.getKey().tryClaim(mask)) {
+                claim.release();
+                throw new RuntimeException("该时段已被预约");
+            }
+            claim.days.put(entry.getKey(), mask);
+        }
+        return claim;
+    }
+
+    /**
+     * 订单被驳回或删除后退回它占用的已发布小时
+     */
+    public void release(int venueID, LocalDateTime startTime, int hours) {
+        for (Map.Entry<Day, Integer> entry : masks(venueID, startTime, hours).entrySet()) {
+            int mask = entry.getValue() & entry.getKey().published;
+            entry.getKey().claimed.getAndUpdate(claimed -> claimed & ~mask);
+        }
+    }
+
+    /**
+     * [startTime, startTime+hours)落在已发布日期上的小时，按天分组
+     */
+    private Map<Day, Integer> masks(int venueID, LocalDateTime startTime, int hours) {
+        Map<Day, Integer> masks = new LinkedHashMap<>();
+        ConcurrentMap<LocalDate, Day> days = venues.get(venueID);
+        if (days == null) {
+            return masks;
+        }
+        for (int h = 0; h < hours; h++) {
+            LocalDateTime slot = startTime.plusHours(h);
+            Day day = days.get(slot.toLocalDate());
+            if (day != null) {
+                masks.merge(day, 1 << slot.getHour(), (a, b) -> a | b);
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * 订单占用的已发布小时，已驳回的订单不占用
+     */
+    private Map<Day, Integer> held(Order order) {
+        if (order == null || order.getState() == OrderService.STATE_REJECT || order.getStartTime() == null) {
+            return new LinkedHashMap<>();
+        }
+        return masks(order.getVenueID(), order.getStartTime(), order.getHours());
+    }
+
+    private Day day(int venueID, LocalDate date) {
+        ConcurrentMap<LocalDate, Day> days = venues.get(venueID);
+        return days == null ? null : days.get(date);
+    }
+
+    public static class Claim {
+        private final Map<Day, Integer> days = new LinkedHashMap<>();
+
+        /**
+         * 退回抢到的时段
+         */
+        public void release() {
+            for (Map.Entry<Day, Integer> entry : days.entrySet()) {
+                int mask = entry.getValue();
+                entry.getKey().claimed.getAndUpdate(claimed -> claimed & ~mask);
+            }
+            days.clear();
+        }
+    }
+
+    private static class Day {
+        private final int published;
+        private final AtomicInteger claimed;
+
+        Day(int published, int claimed) {
+            this.published = published;
+            this.claimed = new AtomicInteger(claimed);
+        }
+
+        boolean tryClaim(int mask) {
+            int current;
+            do {
+                current = claimed.get();
+                if ((current & mask) != 0) {
+                    return false;
+                }
+            } while (!claimed.compareAndSet(current, current | mask));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.demo.service.impl;
+
+import com.demo.dao.NewsDao;
+import com.demo.dao.VenueDao;
+import com.demo.entity.News;
+import com.demo.entity.Venue;
+import com.demo.entity.vo.HomeSnapshot;
+import com.demo.entity.vo.MessageVo;
+import com.demo.service.HomeService;
+import com.demo.service.MessageVoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 首页的场馆、新闻和留言只在管理员修改后才会变化，
+ * 预先生成快照，首页请求直接读取，不访问数据库。
+ * 生成快照时三个查询互不依赖，交给CompositePageExecutor并行执行。
+ */
+@Service
+public class HomeServiceImpl implements HomeService {
+    private static final Logger log = LoggerFactory.getLogger(HomeServiceImpl.class);
+
+    @Autowired
+    private VenueDao venueDao;
+    @Autowired
+    private NewsDao newsDao;
+    @Autowired
+    private MessageVoService messageVoService;
+    @Autowired
+    private CompositePageExecutor pageExecutor;
+    @Autowired
+    private Thumbnailer thumbnailer;
+
+    private volatile HomeSnapshot snapshot;
+
+    /**
+     * 已有一次重建在排队时，后续的refresh直接合并到这一次
+     */
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "home-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public HomeSnapshot getSnapshot() {
+        HomeSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = build();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public void refresh() {
+        if (pending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                pending.set(false);
+                try {
+                    snapshot = build();
+                } catch (RuntimeException e) {
+                    log.warn("rebuild home snapshot failed, keep the previous one", e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private HomeSnapshot build() {
+        CompositePageExecutor.Batch batch = pageExecutor.batch();
+        CompositePageExecutor.Part<List<Venue>> venues = batch.fork(() ->
+                venueDao.findAll(PageRequest.of(0, HOME_SIZE, Sort.by("venueID").ascending())).getContent());
+        CompositePageExecutor.Part<List<News>> news = batch.fork(() ->
+                newsDao.findAll(PageRequest.of(0, HOME_SIZE, Sort.by("time").descending())).getContent());
+        CompositePageExecutor.Part<List<MessageVo>> messages = batch.fork(() ->
+                messageVoService.findPassStateVo(PageRequest.of(0, HOME_SIZE, Sort.by("time").descending())).getContent());
+        batch.join();
+        List<String> pictures = new ArrayList<>(venues.get().size());
+        for (Venue venue : venues.get()) {
+            pictures.add(venue.getPicture());
+        }
+        thumbnailer.preload(pictures);
+        List<Venue> cards = new ArrayList<>(venues.get().size());
+        for (Venue venue : venues.get()) {
+            cards.add(thumbnailer.forCard(venue));
+        }
+        return new HomeSnapshot(Collections.unmodifiableList(cards),
+                Collections.unmodifiableList(new ArrayList<>(news.get())),
+                Collections.unmodifiableList(new ArrayList<>(messages.get())));
+    }
+}
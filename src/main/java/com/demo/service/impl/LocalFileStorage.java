@@ -0,0 +1,347 @@
+package com.demo.service.impl;
+
+import com.demo.entity.vo.StoredFile;
+import com.demo.service.FileStorage;
+import com.demo.utils.FileUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 保存在本地磁盘file.root目录下的上传文件，和classpath无关，打成jar包运行时也能写入。
+ * 文件按内容摘要分到两级子目录里，见FileUtil.savePicture。
+ * 改动之前上传的文件在classpath的static目录下，url没有分片目录，
+ * 根目录下找不到时再到那里找，只在static目录是磁盘上的目录时有效。
+ * 隔离区是根目录下的.quarantine，保持原来的相对路径，不在file目录下，不会被访问到。
+ * 旧目录里的文件不参与回收。
+ */
+@Component
+public class LocalFileStorage implements FileStorage {
+    static final String QUARANTINE = ".quarantine";
+
+    private final Path root;
+
+    /**
+     * 旧文件所在的目录，没有时为null
+     */
+    private final Path legacy;
+
+    @Autowired
+    public LocalFileStorage(@Value("${file.root:upload}") String root) {
+        this(Paths.get(root), classpathStatic());
+    }
+
+    LocalFileStorage(Path root, Path legacy) {
+        this.root = root.toAbsolutePath().normalize();
+        this.legacy = legacy;
+    }
+
+    @Override
+    public String saveVenueFile(MultipartFile picture) throws IOException {
+        return save("venue", picture);
+    }
+
+    @Override
+    public String saveUserFile(MultipartFile picture) throws IOException {
+        return save("user", picture);
+    }
+
+    /**
+     * url对应的本地文件，只在这个类和测试里使用，调用方通过FileStorage的方法读写
+     *
+     * @param url
+     * @return 不是上传文件的url时返回null，文件不一定存在
+     */
+    Path resolve(String url) {
+        if (!managed(url)) {
+            return null;
+        }
+        Path file = root.resolve(url);
+        if (legacy != null && !Files.exists(file)) {
+            Path old = legacy.resolve(url);
+            if (Files.exists(old)) {
+                return old;
+            }
+        }
+        return file;
+    }
+
+    @Override
+    public StoredFile stat(String url) throws IOException {
+        Path file = resolve(url);
+        // 以点开头的是还没有写完的临时文件
+        if (file == null || file.getFileName().toString().startsWith(".")) {
+            return null;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        return new StoredFile(file.getFileName().toString(), attributes.size(),
+                attributes.lastModifiedTime().toMillis(), file.toAbsolutePath().toString());
+    }
+
+    @Override
+    public InputStream open(String url) throws IOException {
+        Path file = resolve(url);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return Files.newInputStream(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void transferTo(String url, long start, long end, WritableByteChannel target) throws IOException {
+        Path file = resolve(url);
+        if (file == null) {
+            throw new NoSuchFileException(url);
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            while (position < end) {
+                long sent = in.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    @Override
+    public String saveVariant(String url, String name, ContentWriter writer) throws IOException {
+        Path file = resolve(url);
+        if (file == null || name.isEmpty() || name.startsWith(".") || name.contains("/") || name.contains("\\")) {
+            throw new IllegalArgumentException("invalid variant " + name + " of " + url);
+        }
+        Path target = file.resolveSibling(name);
+        Path temp = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                writer.write(out);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return url.substring(0, url.lastIndexOf('/') + 1) + name;
+    }
+
+    /**
+     * 和quarantine一样先改名再检查修改时间：检查和删除之间相同内容重新上传时会刷新修改时间，
+     * 改名后再看一次，刷新过的移回原处；改名之后到达的上传找不到文件，会重新写一份
+     */
+    @Override
+    public boolean delete(String url, long minAgeMillis) throws IOException {
+        Path file = resolve(url);
+        if (file == null || !Files.isRegularFile(file)) {
+            return false;
+        }
+        if (tooNew(file, minAgeMillis)) {
+            return false;
+        }
+        Path trash = file.resolveSibling("." + file.getFileName() + ".delete");
+        try {
+            move(file, trash);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (tooNew(trash, minAgeMillis)) {
+            try {
+                move(trash, file);
+            } catch (FileAlreadyExistsException e) {
+                // 改名后又上传了相同的内容
+                Files.deleteIfExists(trash);
+            }
+            return false;
+        }
+        return Files.deleteIfExists(trash);
+    }
+
+    @Override
+    public List<String> list(String after, int limit) throws IOException {
+        List<String> urls = new ArrayList<>(Math.min(limit, 1024));
+        Path dir = root.resolve("file");
+        if (limit > 0 && Files.isDirectory(dir)) {
+            list(dir, "file/", after, limit, urls);
+        }
+        return urls;
+    }
+
+    /**
+     * 按url的顺序遍历，整棵子树都在after之前的目录直接跳过，不需要每次从头列出所有文件
+     */
+    private void list(Path dir, String prefix, String after, int limit, List<String> urls) throws IOException {
+        TreeMap<String, Path> children = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                String name = child.getFileName().toString();
+                // 以点开头的是还没有写完的临时文件
+                if (!name.startsWith(".")) {
+                    children.put(Files.isDirectory(child) ? prefix + name + "/" : prefix + name, child);
+                }
+            }
+        }
+        for (String url : children.keySet()) {
+            if (urls.size() >= limit) {
+                return;
+            }
+            if (url.endsWith("/")) {
+                if (after == null || after.startsWith(url) || url.compareTo(after) > 0) {
+                    list(children.get(url), url, after, limit, urls);
+                }
+            } else if (after == null || url.compareTo(after) > 0) {
+                urls.add(url);
+            }
+        }
+    }
+
+    @Override
+    public long quarantine(String url, long minAgeMillis) throws IOException {
+        if (!managed(url)) {
+            return -1;
+        }
+        Path file = root.resolve(url);
+        if (!Files.isRegularFile(file) || tooNew(file, minAgeMillis)) {
+            return -1;
+        }
+        Path target = root.resolve(QUARANTINE).resolve(url);
+        Files.createDirectories(target.getParent());
+        long size = Files.size(file);
+        move(file, target);
+        // 检查和移动之间有相同内容重新上传时会刷新修改时间，移动的是同一个文件，修改时间跟着过来
+        if (tooNew(target, minAgeMillis)) {
+            move(target, file);
+            return -1;
+        }
+        // 修改时间记为隔离的时间
+        Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+        return size;
+    }
+
+    @Override
+    public boolean restore(String url) throws IOException {
+        if (!managed(url)) {
+            return false;
+        }
+        Path quarantined = root.resolve(QUARANTINE).resolve(url);
+        if (!Files.isRegularFile(quarantined)) {
+            return false;
+        }
+        Path file = root.resolve(url);
+        if (Files.exists(file)) {
+            Files.deleteIfExists(quarantined);
+        } else {
+            Files.createDirectories(file.getParent());
+            move(quarantined, file);
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> listQuarantined(long minAgeMillis, int limit) throws IOException {
+        List<String> urls = new ArrayList<>();
+        Path dir = root.resolve(QUARANTINE);
+        if (limit <= 0 || !Files.isDirectory(dir)) {
+            return urls;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (urls.size() >= limit) {
+                    break;
+                }
+                if (Files.isRegularFile(file) && !tooNew(file, minAgeMillis)) {
+                    urls.add(dir.relativize(file).toString().replace('\\', '/'));
+                }
+            }
+        }
+        return urls;
+    }
+
+    @Override
+    public long purge(String url) throws IOException {
+        if (!managed(url)) {
+            return -1;
+        }
+        Path quarantined = root.resolve(QUARANTINE).resolve(url);
+        if (!Files.isRegularFile(quarantined)) {
+            return -1;
+        }
+        long size = Files.size(quarantined);
+        return Files.deleteIfExists(quarantined) ? size : -1;
+    }
+
+    private static boolean managed(String url) {
+        return url != null && url.startsWith("file/") && !url.contains("..") && !url.contains("\\");
+    }
+
+    private static boolean tooNew(Path file, long minAgeMillis) throws IOException {
+        return System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() < minAgeMillis;
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to);
+        }
+    }
+
+    private String save(String category, MultipartFile picture) throws IOException {
+        if (picture.isEmpty()) {
+            return "";
+        }
+        String url = "file/" + category + "/";
+        return url + FileUtil.savePicture(root.resolve(url).toString(), picture);
+    }
+
+    private static Path classpathStatic() {
+        URL url = ClassUtils.getDefaultClassLoader().getResource("static");
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+}
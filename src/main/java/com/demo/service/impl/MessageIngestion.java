@@ -0,0 +1,271 @@
+package com.demo.service.impl;
+
+import com.demo.entity.Message;
+import com.demo.entity.vo.IngestStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.demo.service.impl.StatusCounters.Kind.MESSAGE;
+
+/**
+ * 留言异步写入：发表留言只放进有界队列就返回，由单独的线程成批取出，
+ * 一批留言用一次batchUpdate在同一个事务里插入，整批只提交一次。
+ * 不额外等待凑批，前一批提交期间到达的留言自然组成下一批。
+ * 新留言是待审核状态，公开的留言列表不展示，但用户自己的留言列表不论状态都展示，
+ * 发表后马上刷新时留言可能还在队列里。按用户记录还没写入的留言数，查询自己的留言前用awaitWritten等这些留言写完。
+ * 队列满时在调用线程里直接写入。关闭时先设置closed，之后的留言都直接写入，再写完队列里剩下的留言。
+ */
+@Component
+public class MessageIngestion {
+    private static final Logger log = LoggerFactory.getLogger(MessageIngestion.class);
+
+    static final int QUEUE_SIZE = 4096;
+    static final int MAX_BATCH = 256;
+    static final long POLL_MILLIS = 200;
+    static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
+    static final long READ_WAIT_MILLIS = 1000;
+
+    static final String INSERT_SQL = "insert into message (userID, content, time, state) values (?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private StatusCounters statusCounters;
+
+    private final BlockingQueue<Message> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder syncWrites = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0);
+    private volatile int lastBatchSize;
+    private volatile long lastFlushNanos;
+
+    /**
+     * 每个用户在队列里还没写入的留言数，没有时不在表里
+     */
+    private final ConcurrentMap<String, Integer> unwritten = new ConcurrentHashMap<>();
+
+    /**
+     * 检查closed和放入队列在读锁内，shutdown在写锁内设置closed，之后不会再有留言进入队列
+     */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    private volatile boolean closed;
+    private volatile Thread worker;
+
+    /**
+     * 提交留言，不等待写入
+     *
+     * @param message
+     */
+    public void submit(Message message) {
+        if (enqueue(message)) {
+            return;
+        }
+        syncWrites.increment();
+        insertOne(message);
+    }
+
+    private boolean enqueue(Message message) {
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            ensureWorker();
+            String userID = message.getUserID();
+            if (userID != null) {
+                unwritten.merge(userID, 1, Integer::sum);
+            }
+            if (queue.offer(message)) {
+                return true;
+            }
+            written(message);
+            return false;
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待用户已提交的留言写入，最多等READ_WAIT_MILLIS
+     *
+     * @param userID
+     */
+    public void awaitWritten(String userID) {
+        if (userID == null || !unwritten.containsKey(userID)) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READ_WAIT_MILLIS);
+        synchronized (unwritten) {
+            while (unwritten.containsKey(userID)) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return;
+                }
+                try {
+                    unwritten.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public IngestStats stats() {
+        long count = batches.sum();
+        return new IngestStats(queue.size(), QUEUE_SIZE, count, messages.sum(), syncWrites.sum(), failures.sum(),
+                lastBatchSize, maxBatchSize.get(), TimeUnit.NANOSECONDS.toMicros(lastFlushNanos),
+                TimeUnit.NANOSECONDS.toMicros(maxFlushNanos.get()),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(flushNanos.sum() / count));
+    }
+
+    /**
+     * 停止接收新留言，等写入线程写完队列后退出；超时仍没写完的在当前线程写入
+     */
+    @PreDestroy
+    public void shutdown() {
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        Thread thread = worker;
+        if (thread != null) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Message> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    private void ensureWorker() {
+        if (worker == null) {
+            synchronized (this) {
+                if (worker == null) {
+                    Thread thread = new Thread(this::drain, "message-ingest");
+                    thread.setDaemon(true);
+                    thread.start();
+                    worker = thread;
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        List<Message> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            Message first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                flush(batch);
+            } catch (RuntimeException | Error e) {
+                log.warn("message batch failed", e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 整批在一个事务里插入，失败时逐条重试，只丢弃真正写不进去的留言
+     */
+    void flush(List<Message> batch) {
+        long begin = System.nanoTime();
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (Message message : batch) {
+            args.add(args(message));
+        }
+        try {
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, args));
+            for (Message message : batch) {
+                statusCounters.increment(MESSAGE, message.getState());
+            }
+            messages.add(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("message batch insert failed, retrying one by one", e);
+            for (Message message : batch) {
+                insertOne(message);
+            }
+        }
+        for (Message message : batch) {
+            written(message);
+        }
+        synchronized (unwritten) {
+            unwritten.notifyAll();
+        }
+        long elapsed = System.nanoTime() - begin;
+        batches.increment();
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulate(elapsed);
+        maxBatchSize.accumulate(batch.size());
+        lastFlushNanos = elapsed;
+        lastBatchSize = batch.size();
+    }
+
+    private void insertOne(Message message) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, args(message));
+            statusCounters.increment(MESSAGE, message.getState());
+            messages.increment();
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.error("drop message from {}", message.getUserID(), e);
+        }
+    }
+
+    /**
+     * 队列里的留言已经写入或丢弃
+     */
+    private void written(Message message) {
+        String userID = message.getUserID();
+        if (userID != null) {
+            unwritten.computeIfPresent(userID, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static Object[] args(Message message) {
+        return new Object[]{message.getUserID(), message.getContent(),
+                message.getTime() == null ? null : Timestamp.valueOf(message.getTime()), message.getState()};
+    }
+}
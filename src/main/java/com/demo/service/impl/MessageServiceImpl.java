@@ -2,16 +2,41 @@ package com.demo.service.impl;
 
 import com.demo.dao.MessageDao;
 import com.demo.entity.Message;
+import com.demo.entity.vo.IngestStats;
+import com.demo.service.HomeService;
 import com.demo.service.MessageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.demo.service.impl.StatusCounters.Kind.MESSAGE;
 
 @Service
 public class MessageServiceImpl implements MessageService {
     @Autowired
     private MessageDao messageDao;
+    @Autowired
+    private HomeService homeService;
+    @Autowired
+    private StatusCounters statusCounters;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MessageIngestion messageIngestion;
+
+    static final String TRANSITION_SQL="update message set state=? where messageID=? and state=?";
+    static final String DELETE_SQL="delete from message where messageID=? and state=?";
 
     @Override
     public Message findById(int messageID) {
@@ -25,19 +50,61 @@ public class MessageServiceImpl implements MessageService {
         return page;
     }
 
+    @Override
+    public long countPassState() {
+        return statusCounters.get(MESSAGE,STATE_PASS);
+    }
+
+    /**
+     * 用户的留言总数和用户自己的留言列表一起展示，先等该用户已提交的留言写入，
+     * 否则刚发表的留言在列表里但不计入总数
+     */
+    @Override
+    public long countByUser(String userID) {
+        messageIngestion.awaitWritten(userID);
+        return messageDao.countByUserID(userID);
+    }
+
     @Override
     public int create(Message message) {
-        return messageDao.save(message).getMessageID();
+        int messageID=messageDao.save(message).getMessageID();
+        statusCounters.increment(MESSAGE,message.getState());
+        return messageID;
+    }
+
+    @Override
+    public void submit(Message message) {
+        messageIngestion.submit(message);
+    }
+
+    @Override
+    public IngestStats ingestStats() {
+        return messageIngestion.stats();
     }
 
     @Override
     public void delById(int messageID) {
+        Integer state=messageDao.findStateByMessageID(messageID);
         messageDao.deleteById(messageID);
+        if(state!=null) {
+            statusCounters.decrement(MESSAGE,state);
+        }
+        homeService.refresh();
     }
 
+    /**
+     * 传入的message可能是已被修改的托管实体，修改前的状态直接从数据库读
+     */
     @Override
     public void update(Message message) {
+        Integer state=messageDao.findStateByMessageID(message.getMessageID());
         messageDao.save(message);
+        if(state==null) {
+            statusCounters.increment(MESSAGE,message.getState());
+        } else {
+            statusCounters.move(MESSAGE,state,message.getState());
+        }
+        homeService.refresh();
     }
 
     @Override
@@ -46,7 +113,11 @@ public class MessageServiceImpl implements MessageService {
         if(message==null) {
             throw new RuntimeException("留言不存在");
         }
-        messageDao.updateState(STATE_PASS,message.getMessageID());
+        if(messageDao.updateState(STATE_PASS,message.getMessageID(),STATE_NO_AUDIT)==0) {
+            throw new RuntimeException("状态不为待审核");
+        }
+        statusCounters.move(MESSAGE,STATE_NO_AUDIT,STATE_PASS);
+        homeService.refresh();
     }
 
     @Override
@@ -55,7 +126,63 @@ public class MessageServiceImpl implements MessageService {
         if(message==null) {
             throw new RuntimeException("留言不存在");
         }
-        messageDao.updateState(STATE_REJECT,message.getMessageID());
+        if(messageDao.updateState(STATE_REJECT,message.getMessageID(),STATE_NO_AUDIT)==0) {
+            throw new RuntimeException("状态不为待审核");
+        }
+        statusCounters.move(MESSAGE,STATE_NO_AUDIT,STATE_REJECT);
+        homeService.refresh();
+    }
+
+    @Override
+    public Map<Integer,Boolean> confirmMessages(Collection<Integer> messageIDs) {
+        Map<Integer,Boolean> result=moderate(messageIDs,TRANSITION_SQL,STATE_PASS);
+        if(result.containsValue(true)) {
+            homeService.refresh();
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Integer,Boolean> rejectMessages(Collection<Integer> messageIDs) {
+        return moderate(messageIDs,TRANSITION_SQL,STATE_REJECT);
+    }
+
+    @Override
+    public Map<Integer,Boolean> delMessages(Collection<Integer> messageIDs) {
+        return moderate(messageIDs,DELETE_SQL,-1);
+    }
+
+    /**
+     * 每个留言一条带 state=待审核 条件的update或delete，整批在一个事务里一次发给数据库，
+     * 影响行数为1的就是实际处理的留言，不需要先读出当前状态。
+     * 只处理待审核留言，待审核留言不在首页展示，所以只有通过需要刷新首页
+     *
+     * @param to 目标状态，删除时为-1
+     */
+    private Map<Integer,Boolean> moderate(Collection<Integer> messageIDs,String sql,int to) {
+        Map<Integer,Boolean> result=new LinkedHashMap<>();
+        List<Object[]> args=new ArrayList<>(messageIDs.size());
+        for(int messageID:messageIDs) {
+            if(result.put(messageID,false)==null) {
+                args.add(to<0 ? new Object[]{messageID,STATE_NO_AUDIT} : new Object[]{to,messageID,STATE_NO_AUDIT});
+            }
+        }
+        if(args.isEmpty()) {
+            return result;
+        }
+        int[] counts=transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(sql,args));
+        int i=0;
+        for(Map.Entry<Integer,Boolean> entry:result.entrySet()) {
+            if(counts[i++]>0) {
+                entry.setValue(true);
+                if(to<0) {
+                    statusCounters.decrement(MESSAGE,STATE_NO_AUDIT);
+                } else {
+                    statusCounters.move(MESSAGE,STATE_NO_AUDIT,to);
+                }
+            }
+        }
+        return result;
     }
 
     @Override
@@ -63,6 +190,11 @@ public class MessageServiceImpl implements MessageService {
         return messageDao.findAllByState(STATE_NO_AUDIT,pageable);
     }
 
+    @Override
+    public long countWaitState() {
+        return statusCounters.get(MESSAGE,STATE_NO_AUDIT);
+    }
+
     @Override
     public Page<Message> findPassState(Pageable pageable) {
         return messageDao.findAllByState(STATE_PASS,pageable);
@@ -4,13 +4,24 @@ import com.demo.dao.MessageDao;
 import com.demo.dao.UserDao;
 import com.demo.entity.Message;
 import com.demo.entity.User;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.MessageVo;
+import com.demo.service.MessageService;
 import com.demo.service.MessageVoService;
+import com.demo.utils.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class MessageVoServiceImpl implements MessageVoService {
@@ -18,22 +29,117 @@ public class MessageVoServiceImpl implements MessageVoService {
     private MessageDao messageDao;
     @Autowired
     private UserDao userDao;
+    @Autowired
+    private Thumbnailer thumbnailer;
+    @Autowired
+    private MessageIngestion messageIngestion;
 
     @Override
     public MessageVo returnMessageVoByMessageID(int messageID) {
         Message message=messageDao.findByMessageID(messageID);
+        if(message==null) {
+            return null;
+        }
         User user=userDao.findByUserID(message.getUserID());
-        MessageVo messageVo=new MessageVo(message.getMessageID(),user.getUserID(),message.getContent(),message.getTime(),user.getUserName(),user.getPicture(),message.getState());
-
-        return messageVo;
+        return toVo(message,user);
     }
 
+    /**
+     * 直接使用已加载的message，留言用户通过一次IN查询批量取出
+     */
     @Override
     public List<MessageVo> returnVo(List<Message> messages) {
-        List<MessageVo> list=new ArrayList<>();
-        for(int i=0;i<messages.size();i++){
-            list.add(returnMessageVoByMessageID(messages.get(i).getMessageID()));
+        Set<String> userIDs=new HashSet<>();
+        for(Message message:messages) {
+            if(message!=null) {
+                userIDs.add(message.getUserID());
+            }
+        }
+
+        Map<String,User> users=new HashMap<>();
+        if(!userIDs.isEmpty()) {
+            for(User user:userDao.findByUserIDIn(userIDs)) {
+                users.put(user.getUserID(),user);
+            }
+        }
+
+        List<String> pictures=new ArrayList<>(users.size());
+        for(User user:users.values()) {
+            pictures.add(user.getPicture());
+        }
+        thumbnailer.preload(pictures);
+        List<MessageVo> list=new ArrayList<>(messages.size());
+        for(Message message:messages) {
+            list.add(message==null ? null : toVo(message,users.get(message.getUserID())));
         }
         return list;
     }
+
+    @Override
+    public Page<MessageVo> findPassStateVo(Pageable pageable) {
+        return withAvatars(messageDao.findVoByState(MessageService.STATE_PASS,pageable));
+    }
+
+    @Override
+    public Page<MessageVo> findByUserVo(String userID, Pageable pageable) {
+        messageIngestion.awaitWritten(userID);
+        return withAvatars(messageDao.findVoByUserID(userID,pageable));
+    }
+
+    @Override
+    public Slice<MessageVo> findPassStateSlice(Pageable pageable) {
+        return withAvatars(messageDao.findVoSliceByState(MessageService.STATE_PASS,pageable));
+    }
+
+    @Override
+    public Slice<MessageVo> findByUserSlice(String userID, Pageable pageable) {
+        messageIngestion.awaitWritten(userID);
+        return withAvatars(messageDao.findVoSliceByUserID(userID,pageable));
+    }
+
+    @Override
+    public KeysetPage<MessageVo> findPassStateAfter(String cursor, int size) {
+        Cursor after=Cursor.decode(cursor);
+        Pageable limit=PageRequest.of(0,size+1);
+        List<MessageVo> rows;
+        if(after==null) {
+            rows=messageDao.findVoByStateOrderByTime(MessageService.STATE_PASS,limit);
+        } else if(after.getTime()==null) {
+            rows=messageDao.findVoByStateAfterNullTime(MessageService.STATE_PASS,after.getId(),limit);
+        } else {
+            rows=messageDao.findVoByStateAfter(MessageService.STATE_PASS,after.getTime(),after.getId(),limit);
+        }
+        withAvatars(rows);
+        return KeysetPage.of(rows,size,vo -> new Cursor(vo.getTime(),vo.getMessageID()));
+    }
+
+    /**
+     * 用户已被删除时只保留留言本身的信息
+     */
+    private MessageVo toVo(Message message,User user) {
+        if(user==null) {
+            return new MessageVo(message.getMessageID(),message.getUserID(),message.getContent(),message.getTime(),null,null,message.getState());
+        }
+        return new MessageVo(message.getMessageID(),user.getUserID(),message.getContent(),message.getTime(),user.getUserName(),avatar(user.getPicture()),message.getState());
+    }
+
+    /**
+     * 头像换成缩略图，VO不受JPA管理，直接修改
+     */
+    private <S extends Iterable<MessageVo>> S withAvatars(S vos) {
+        List<String> pictures=new ArrayList<>();
+        for(MessageVo vo:vos) {
+            pictures.add(vo.getPicture());
+        }
+        thumbnailer.preload(pictures);
+        for(MessageVo vo:vos) {
+            vo.setPicture(avatar(vo.getPicture()));
+        }
+        return vos;
+    }
+
+    private String avatar(String picture) {
+        String small=thumbnailer.pick(picture,Thumbnailer.AVATAR);
+        return small==null ? picture : small;
+    }
 }
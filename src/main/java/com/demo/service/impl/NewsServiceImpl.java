@@ -2,22 +2,51 @@ package com.demo.service.impl;
 
 import com.demo.dao.NewsDao;
 import com.demo.entity.News;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.service.HomeService;
 import com.demo.service.NewsService;
+import com.demo.utils.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
 
 @Service
 public class NewsServiceImpl implements NewsService {
     @Autowired
     private NewsDao newsDao;
+    @Autowired
+    private HomeService homeService;
 
     @Override
     public Page<News> findAll(Pageable pageable) {
         return newsDao.findAll(pageable);
     }
 
+    @Override
+    public Slice<News> findSlice(Pageable pageable) {
+        return newsDao.findAllBy(pageable);
+    }
+
+    @Override
+    public KeysetPage<News> findAfter(String cursor, int size) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<News> rows;
+        if (after == null) {
+            rows = newsDao.findAllByOrderByTimeDescNewsIDDesc(limit);
+        } else if (after.getTime() == null) {
+            rows = newsDao.findAfterNullTime(after.getId(), limit);
+        } else {
+            rows = newsDao.findAfter(after.getTime(), after.getId(), limit);
+        }
+        return KeysetPage.of(rows, size, news -> new Cursor(news.getTime(), news.getNewsID()));
+    }
+
     @Override
     public News findById(int newsID) {
         return newsDao.getOne(newsID);
@@ -25,16 +54,20 @@ public class NewsServiceImpl implements NewsService {
 
     @Override
     public int create(News news) {
-        return newsDao.save(news).getNewsID();
+        int newsID=newsDao.save(news).getNewsID();
+        homeService.refresh();
+        return newsID;
     }
 
     @Override
     public void delById(int newsID) {
         newsDao.deleteById(newsID);
+        homeService.refresh();
     }
 
     @Override
     public void update(News news) {
         newsDao.save(news);
+        homeService.refresh();
     }
 }
@@ -0,0 +1,290 @@
+package com.demo.service.impl;
+
+import com.demo.entity.Order;
+import com.demo.exception.OrderNotPlacedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下单的组提交：开放预约时大量下单同时到达，每个订单单独提交都要刷一次日志。
+ * 开启后订单进入队列，由单独的线程在一个很短的窗口内收集到达的订单，
+ * 用一次批量insert在同一个事务里写入，整批只提交一次，每个调用方仍然各自得到新订单的id或异常。
+ * 批量写入失败时逐条重试，只让真正写不进去的订单失败。
+ * 调用方等待超时时用CAS把还在排队的订单标记为取消，写入线程跳过取消的订单；
+ * 写入线程已经取走的订单不能再取消，调用方继续等待写入结果，不会出现调用方以为失败而订单已经写入的情况。
+ * 默认关闭，由order.group-commit.enabled开启，窗口长度由order.group-commit.window-millis设置。
+ */
+@Component
+public class OrderGroupCommit {
+    private static final Logger log = LoggerFactory.getLogger(OrderGroupCommit.class);
+
+    static final int QUEUE_SIZE = 1024;
+    static final int MAX_BATCH = 128;
+    static final long OFFER_TIMEOUT_MILLIS = 1000;
+    static final long TIMEOUT_MILLIS = 5000;
+
+    static final String INSERT_SQL =
+            "insert into `order` (userID, venueID, order_time, start_time, hours, state, total) values (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${order.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${order.group-commit.window-millis:2}")
+    private long windowMillis;
+
+    private long timeoutMillis = TIMEOUT_MILLIS;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+
+    private volatile Thread worker;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交订单并等待写入
+     *
+     * @param order
+     * @return 新订单的id
+     */
+    public int commit(Order order) {
+        Pending pending = new Pending(order);
+        ensureWorker();
+        try {
+            if (!queue.offer(pending, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new OrderNotPlacedException("预约繁忙，请稍后再试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrderNotPlacedException("预约被中断", e);
+        }
+        try {
+            return await(pending);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 等待写入结果。超时或被中断时只有成功取消了才返回失败，写入线程已经取走的继续等到写入结束
+     */
+    private int await(Pending pending) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            try {
+                return pending.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pending.cancel()) {
+                    throw new OrderNotPlacedException("预约超时，请稍后再试");
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                if (pending.cancel()) {
+                    throw new OrderNotPlacedException("预约被中断", e);
+                }
+            }
+            while (true) {
+                try {
+                    return pending.future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (Pending pending : rest) {
+            pending.future.completeExceptionally(new OrderNotPlacedException("服务正在关闭"));
+        }
+    }
+
+    private void ensureWorker() {
+        if (worker == null) {
+            synchronized (this) {
+                if (worker == null) {
+                    Thread thread = new Thread(this::drain, "order-group-commit");
+                    thread.setDaemon(true);
+                    thread.start();
+                    worker = thread;
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                collect(batch);
+            } catch (InterruptedException e) {
+                for (Pending pending : batch) {
+                    pending.future.completeExceptionally(new OrderNotPlacedException("服务正在关闭"));
+                }
+                return;
+            }
+            try {
+                flush(batch);
+            } catch (RuntimeException | Error e) {
+                log.warn("order batch failed", e);
+                for (Pending pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 第一个订单到达后再等windowMillis，收集这段时间内到达的订单，批满时提前结束
+     */
+    private void collect(List<Pending> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        while (batch.size() < MAX_BATCH) {
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= MAX_BATCH || remaining <= 0) {
+                return;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    void flush(List<Pending> batch) {
+        // 取走时调用方已经取消的不再写入，之后调用方也不能再取消
+        batch.removeIf(pending -> !pending.claim());
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            orders.add(pending.order);
+        }
+        List<Integer> ids;
+        try {
+            ids = transactionTemplate.execute(status -> insert(orders));
+        } catch (RuntimeException e) {
+            log.warn("order batch insert failed, retrying one by one", e);
+            for (Pending pending : batch) {
+                try {
+                    List<Order> one = new ArrayList<>(1);
+                    one.add(pending.order);
+                    pending.future.complete(transactionTemplate.execute(status -> insert(one)).get(0));
+                } catch (RuntimeException single) {
+                    pending.future.completeExceptionally(single);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(ids.get(i));
+        }
+    }
+
+    /**
+     * 用一个PreparedStatement批量插入，按插入顺序返回自增id
+     */
+    private List<Integer> insert(List<Order> orders) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Order order : orders) {
+                    ps.setString(1, order.getUserID());
+                    ps.setInt(2, order.getVenueID());
+                    ps.setTimestamp(3, order.getOrderTime() == null ? null : Timestamp.valueOf(order.getOrderTime()));
+                    ps.setTimestamp(4, order.getStartTime() == null ? null : Timestamp.valueOf(order.getStartTime()));
+                    ps.setInt(5, order.getHours());
+                    ps.setInt(6, order.getState());
+                    ps.setInt(7, order.getTotal());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Integer> ids = new ArrayList<>(orders.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getInt(1));
+                    }
+                }
+                if (ids.size() != orders.size()) {
+                    throw new IncorrectResultSizeDataAccessException(orders.size(), ids.size());
+                }
+                return ids;
+            }
+        });
+    }
+
+    static class Pending {
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        final Order order;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        Pending(Order order) {
+            this.order = order;
+        }
+
+        /**
+         * 写入线程取走订单，已经取消的返回false
+         */
+        boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        /**
+         * 调用方放弃等待，写入线程已经取走的返回false
+         */
+        boolean cancel() {
+            return state.compareAndSet(QUEUED, CANCELLED);
+        }
+    }
+}
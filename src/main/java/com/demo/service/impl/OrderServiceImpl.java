@@ -5,24 +5,75 @@ import com.demo.dao.OrderDao;
 import com.demo.dao.VenueDao;
 import com.demo.entity.Venue;
 import com.demo.entity.Order;
+import com.demo.exception.OrderNotPlacedException;
+import com.demo.service.AvailabilityService;
 import com.demo.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.demo.service.impl.StatusCounters.Kind.ORDER;
 
 @Service
 public class OrderServiceImpl implements OrderService {
+    /**
+     * 同一场馆的下单、改单按场馆串行，不同场馆按场馆ID分散到不同的锁上
+     */
+    private static final int LOCK_STRIPES=64;
+
+    static final String TRANSITION_SQL="update `order` set state=? where orderID=? and state=?";
+
+    private final Lock[] venueLocks=new Lock[LOCK_STRIPES];
+
+    {
+        for(int i=0;i<LOCK_STRIPES;i++) {
+            venueLocks[i]=new ReentrantLock();
+        }
+    }
+
     @Autowired
     private OrderDao orderDao;
 
     @Autowired
     private VenueDao venueDao;
 
+    @Autowired
+    private VenueCache venueCache;
+
+    @Autowired
+    private AvailabilityService availabilityService;
+
+    @Autowired
+    private StatusCounters statusCounters;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderGroupCommit orderGroupCommit;
+
+    @Autowired
+    private FlashInventory flashInventory;
+
+    private final AtomicInteger placeholderIDs=new AtomicInteger();
+
     @Override
     public Order findById(int OrderID) {
         return orderDao.getOne(OrderID);
@@ -39,40 +90,157 @@ public class OrderServiceImpl implements OrderService {
     }
 
 
+    /**
+     * 新时段落在已发布的库存上时先抢占，时段不可用时退回；修改成功后退回原来时段中不再占用的小时
+     */
     @Override
     public void updateOrder(int orderID, String venueName, LocalDateTime startTime, int hours,String userID)  {
-        Venue venue =venueDao.findByVenueName(venueName);
+        Venue venue =venueCache.getByName(venueName,venueDao::findByVenueName);
         Order order=orderDao.findByOrderID(orderID);
-        order.setState(STATE_NO_AUDIT);
-        order.setHours(hours);
-        order.setVenueID(venue.getVenueID());
-        order.setOrderTime(LocalDateTime.now());
-        order.setStartTime(startTime);
-        order.setUserID(userID);
-        order.setTotal(hours* venue.getPrice());
+        Order previous=new Order(order.getOrderID(),order.getUserID(),order.getVenueID(),order.getState(),
+                order.getOrderTime(),order.getStartTime(),order.getHours(),order.getTotal());
+        Lock lock=venueLock(venue.getVenueID());
+        lock.lock();
+        try {
+            FlashInventory.Claim claim=flashInventory.claim(venue.getVenueID(),startTime,hours,previous);
+            if(!availabilityService.isFree(venue.getVenueID(),startTime,hours,orderID)) {
+                if(claim!=null) {
+                    claim.release();
+                }
+                throw new RuntimeException("该时段已被预约");
+            }
+            int oldState=order.getState();
+            order.setState(STATE_NO_AUDIT);
+            order.setHours(hours);
+            order.setVenueID(venue.getVenueID());
+            order.setOrderTime(LocalDateTime.now());
+            order.setStartTime(startTime);
+            order.setUserID(userID);
+            order.setTotal(hours* venue.getPrice());
 
-        orderDao.save(order);
+            orderDao.save(order);
+            statusCounters.move(ORDER,oldState,STATE_NO_AUDIT);
+            availabilityService.occupy(order);
+            flashInventory.release(previous,order);
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * 场馆发布了抢订库存时先在库存中抢占时段，抢不到的直接失败，抢到的再按普通流程下单。
+     * 只有确定订单没有写入时才退回，其他异常下订单可能已经写入，退回会让别人再次抢到同一时段
+     */
     @Override
     public void submit(String venueName, LocalDateTime startTime, int hours, String userID) {
 
-        Venue venue =venueDao.findByVenueName(venueName);
+        Venue venue =venueCache.getByName(venueName,venueDao::findByVenueName);
 
+        FlashInventory.Claim claim=flashInventory.claim(venue.getVenueID(),startTime,hours);
+        if(claim==null) {
+            place(venue,startTime,hours,userID);
+            return;
+        }
+        try {
+            place(venue,startTime,hours,userID);
+        } catch (OrderNotPlacedException e) {
+            claim.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 开启组提交时，先在场馆锁内检查时段并用临时的负数id登记占用，再在锁外等待写入，
+     * 同一场馆的下单不必排队等前一个提交完成，写入后换成真实id，写入失败时释放
+     */
+    private void place(Venue venue, LocalDateTime startTime, int hours, String userID) {
         Order order=new Order();
-        order.setState(STATE_NO_AUDIT);
-        order.setHours(hours);
-        order.setVenueID(venue.getVenueID());
-        order.setOrderTime(LocalDateTime.now());
-        order.setStartTime(startTime);
-        order.setUserID(userID);
-        order.setTotal(hours* venue.getPrice());
-        orderDao.save(order);
+        Lock lock=venueLock(venue.getVenueID());
+        lock.lock();
+        try {
+            if(!availabilityService.isFree(venue.getVenueID(),startTime,hours,0)) {
+                throw new OrderNotPlacedException("该时段已被预约");
+            }
+            order.setState(STATE_NO_AUDIT);
+            order.setHours(hours);
+            order.setVenueID(venue.getVenueID());
+            order.setOrderTime(LocalDateTime.now());
+            order.setStartTime(startTime);
+            order.setUserID(userID);
+            order.setTotal(hours* venue.getPrice());
+            if(!orderGroupCommit.isEnabled()) {
+                orderDao.save(order);
+                statusCounters.increment(ORDER,STATE_NO_AUDIT);
+                availabilityService.occupy(order);
+                return;
+            }
+            order.setOrderID(-placeholderIDs.incrementAndGet());
+            availabilityService.occupy(order);
+        } finally {
+            lock.unlock();
+        }
+
+        int placeholder=order.getOrderID();
+        try {
+            order.setOrderID(orderGroupCommit.commit(order));
+        } catch (RuntimeException e) {
+            availabilityService.release(placeholder);
+            throw e;
+        }
+        statusCounters.increment(ORDER,STATE_NO_AUDIT);
+        availabilityService.occupy(order);
+        availabilityService.release(placeholder);
+    }
+
+    @Override
+    public int publishFlashSlots(int venueID, LocalDate from, LocalDate to) {
+        Venue venue=venueCache.getByID(venueID,venueDao::findByVenueID);
+        if(venue==null) {
+            throw new RuntimeException("场馆不存在");
+        }
+        int open=hourOf(venue.getOpen_time(),0);
+        int close=hourOf(venue.getClose_time(),24);
+        if(close<=open) {
+            open=0;
+            close=24;
+        }
+        int published=(int) ((1L<<close)-(1L<<open));
+        int count=0;
+        for(LocalDate date=from;!date.isAfter(to);date=date.plusDays(1)) {
+            int occupied=0;
+            for(int hour:availabilityService.findOccupiedHours(venueID,date)) {
+                occupied|=1<<hour;
+            }
+            count+=flashInventory.publish(venueID,date,published,occupied);
+        }
+        return count;
+    }
+
+    @Override
+    public void withdrawFlashSlots(int venueID) {
+        flashInventory.withdraw(venueID);
+    }
+
+    @Override
+    public List<Integer> findFlashSlots(int venueID, LocalDate date) {
+        return flashInventory.remainingHours(venueID,date);
     }
 
     @Override
     public void delOrder(int orderID) {
+        Integer state=orderDao.findStateByOrderID(orderID);
+        Order order=null;
+        if(state!=null && state!=STATE_REJECT && flashInventory.isPublished()) {
+            order=orderDao.findByOrderID(orderID);
+        }
         orderDao.deleteById(orderID);
+        if(state!=null) {
+            statusCounters.decrement(ORDER,state);
+        }
+        availabilityService.release(orderID);
+        if(order!=null) {
+            releaseFlash(order);
+        }
     }
 
     @Override
@@ -81,7 +249,10 @@ public class OrderServiceImpl implements OrderService {
         if(order == null) {
             throw new RuntimeException("订单不存在");
         }
-        orderDao.updateState(STATE_WAIT,order.getOrderID());
+        if(orderDao.updateState(STATE_WAIT,order.getOrderID(),STATE_NO_AUDIT)==0) {
+            throw new RuntimeException("订单状态不是待审核");
+        }
+        statusCounters.move(ORDER,STATE_NO_AUDIT,STATE_WAIT);
     }
 
     @Override
@@ -90,7 +261,10 @@ public class OrderServiceImpl implements OrderService {
         if(order == null) {
             throw new RuntimeException("订单不存在");
         }
-        orderDao.updateState(STATE_FINISH,order.getOrderID());
+        if(orderDao.updateState(STATE_FINISH,order.getOrderID(),STATE_WAIT)==0) {
+            throw new RuntimeException("订单状态不是等待中");
+        }
+        statusCounters.move(ORDER,STATE_WAIT,STATE_FINISH);
     }
 
     @Override
@@ -99,7 +273,64 @@ public class OrderServiceImpl implements OrderService {
         if(order == null) {
             throw new RuntimeException("订单不存在");
         }
-        orderDao.updateState(STATE_REJECT,order.getOrderID());
+        if(orderDao.updateState(STATE_REJECT,order.getOrderID(),STATE_NO_AUDIT)==0) {
+            throw new RuntimeException("订单状态不是待审核");
+        }
+        statusCounters.move(ORDER,STATE_NO_AUDIT,STATE_REJECT);
+        availabilityService.release(order.getOrderID());
+        releaseFlash(order);
+    }
+
+    @Override
+    public List<Integer> confirmOrders(Collection<Integer> orderIDs) {
+        return transition(orderIDs,STATE_NO_AUDIT,STATE_WAIT);
+    }
+
+    @Override
+    public List<Integer> rejectOrders(Collection<Integer> orderIDs) {
+        List<Integer> moved=transition(orderIDs,STATE_NO_AUDIT,STATE_REJECT);
+        for(int orderID:moved) {
+            availabilityService.release(orderID);
+        }
+        if(!moved.isEmpty() && flashInventory.isPublished()) {
+            for(Order order:orderDao.findAllById(moved)) {
+                releaseFlash(order);
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * 订单不再占用时段时退回抢订库存，场馆没有发布时什么也不做
+     */
+    private void releaseFlash(Order order) {
+        if(order.getStartTime()!=null) {
+            flashInventory.release(order.getVenueID(),order.getStartTime(),order.getHours());
+        }
+    }
+
+    /**
+     * 每个订单一条 update ... where orderID=? and state=from，整批在一个事务里一次发给数据库。
+     * 不先读再写，影响行数为1的就是实际从from变为to的订单，其他的不存在或已被并发修改
+     */
+    private List<Integer> transition(Collection<Integer> orderIDs,int from,int to) {
+        List<Object[]> args=new ArrayList<>(orderIDs.size());
+        List<Integer> ids=new ArrayList<>(new LinkedHashSet<>(orderIDs));
+        for(int orderID:ids) {
+            args.add(new Object[]{to,orderID,from});
+        }
+        List<Integer> moved=new ArrayList<>();
+        if(args.isEmpty()) {
+            return moved;
+        }
+        int[] counts=transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(TRANSITION_SQL,args));
+        for(int i=0;i<ids.size();i++) {
+            if(counts[i]>0) {
+                moved.add(ids.get(i));
+                statusCounters.move(ORDER,from,to);
+            }
+        }
+        return moved;
     }
 
     @Override
@@ -108,7 +339,33 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public List<Order> findAuditOrder() {
-        return orderDao.findAudit(STATE_WAIT,STATE_FINISH);
+    public long countNoAuditOrder() {
+        return statusCounters.get(ORDER,STATE_NO_AUDIT);
+    }
+
+    @Override
+    public long countAuditOrder() {
+        return statusCounters.get(ORDER,STATE_WAIT)+statusCounters.get(ORDER,STATE_FINISH);
+    }
+
+    /**
+     * 场馆营业时间形如"9:00"，取小时，无法解析时返回fallback
+     */
+    private static int hourOf(String time,int fallback) {
+        if(time==null) {
+            return fallback;
+        }
+        String hour=time.trim();
+        int colon=hour.indexOf(':');
+        try {
+            int value=Integer.parseInt(colon<0 ? hour : hour.substring(0,colon));
+            return value>=0 && value<=24 ? value : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private Lock venueLock(int venueID) {
+        return venueLocks[Math.floorMod(venueID,LOCK_STRIPES)];
     }
 }
@@ -5,38 +5,99 @@ import com.demo.dao.OrderDao;
 import com.demo.dao.VenueDao;
 import com.demo.entity.Order;
 import com.demo.entity.Venue;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.OrderVo;
+import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
+import com.demo.utils.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class OrderVoServiceImpl implements OrderVoService {
+    private static final List<Integer> AUDIT_STATES=Arrays.asList(OrderService.STATE_WAIT,OrderService.STATE_FINISH);
+
     @Autowired
     private OrderDao orderDao;
     @Autowired
     private VenueDao venueDao;
+    @Autowired
+    private VenueCache venueCache;
 
 
     @Override
     public OrderVo returnOrderVoByOrderID(int orderID) {
         Order order=orderDao.findByOrderID(orderID);
-        Venue venue=venueDao.findByVenueID(order.getVenueID());
-        OrderVo orderVo=new OrderVo(order.getOrderID(),order.getUserID(),order.getVenueID(),venue.getVenueName(),
-                                    order.getState(),order.getOrderTime(),order.getStartTime(),order.getHours(),order.getTotal());
-
-        return orderVo;
+        Venue venue=venueCache.getByID(order.getVenueID(),venueDao::findByVenueID);
+        return toVo(order,venue);
     }
 
+    /**
+     * 直接使用已加载的order，缓存未命中的场馆通过一次IN查询批量取出
+     */
     @Override
     public List<OrderVo> returnVo(List<Order> list) {
-        List<OrderVo> list1=new ArrayList<>();
-        for(int i=0;i<list.size();i++) {
-            list1.add(returnOrderVoByOrderID(list.get(i).getOrderID()));
+        Set<Integer> venueIDs=new HashSet<>();
+        for(Order order:list) {
+            if(order!=null) {
+                venueIDs.add(order.getVenueID());
+            }
+        }
+
+        Map<Integer,Venue> venues=venueIDs.isEmpty() ? new HashMap<>() : venueCache.getAllByID(venueIDs,venueDao::findByVenueIDIn);
+
+        List<OrderVo> list1=new ArrayList<>(list.size());
+        for(Order order:list) {
+            list1.add(order==null ? null : toVo(order,venues.get(order.getVenueID())));
         }
         return list1;
     }
+
+    @Override
+    public Page<OrderVo> findUserOrderVo(String userID, Pageable pageable) {
+        return orderDao.findVoByUserID(userID,pageable);
+    }
+
+    @Override
+    public Page<OrderVo> findNoAuditOrderVo(Pageable pageable) {
+        return orderDao.findVoByState(OrderService.STATE_NO_AUDIT,pageable);
+    }
+
+    @Override
+    public Slice<OrderVo> findAuditOrderVo(Pageable pageable) {
+        return orderDao.findVoSliceByStateIn(AUDIT_STATES,pageable);
+    }
+
+    @Override
+    public KeysetPage<OrderVo> findUserOrderAfter(String userID, String cursor, int size) {
+        Cursor after=Cursor.decode(cursor);
+        Pageable limit=PageRequest.of(0,size+1);
+        List<OrderVo> rows;
+        if(after==null) {
+            rows=orderDao.findVoByUserIDOrderByOrderTime(userID,limit);
+        } else if(after.getTime()==null) {
+            rows=orderDao.findVoByUserIDAfterNullTime(userID,after.getId(),limit);
+        } else {
+            rows=orderDao.findVoByUserIDAfter(userID,after.getTime(),after.getId(),limit);
+        }
+        return KeysetPage.of(rows,size,vo -> new Cursor(vo.getOrderTime(),vo.getOrderID()));
+    }
+
+    private OrderVo toVo(Order order,Venue venue) {
+        String venueName=venue==null ? null : venue.getVenueName();
+        return new OrderVo(order.getOrderID(),order.getUserID(),order.getVenueID(),venueName,
+                           order.getState(),order.getOrderTime(),order.getStartTime(),order.getHours(),order.getTotal());
+    }
 }
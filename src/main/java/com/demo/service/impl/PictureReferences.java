@@ -0,0 +1,52 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.service.FileStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 图片文件的引用计数：同一内容的图片只存一份，可能同时被多个场馆和用户引用，
+ * 引用数就是picture列等于该url的场馆和用户数。场馆或用户换图、删除后检查旧图片，没有引用时移到隔离区，
+ * 和UploadGcServiceImpl回收的文件一样，隔离期过后再检查一次引用才删除，删除时一起删除缩略图，
+ * 检查引用和移动之间又被引用的图片在隔离期内会移回原处。
+ * 新上传的图片在保存到数据库之前也没有引用，修改时间在GRACE_MILLIS以内的文件不移动。
+ */
+@Component
+public class PictureReferences {
+    private static final Logger log = LoggerFactory.getLogger(PictureReferences.class);
+
+    static final long GRACE_MILLIS = 10 * 60 * 1000;
+
+    @Autowired
+    private VenueDao venueDao;
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private FileStorage fileStorage;
+
+    public long count(String picture) {
+        return venueDao.countByPicture(picture) + userDao.countByPicture(picture);
+    }
+
+    /**
+     * 一个引用已经去掉，图片没有其他引用时移到隔离区
+     *
+     * @param picture 原来的url
+     */
+    public void release(String picture) {
+        if (picture == null || picture.isEmpty() || count(picture) > 0) {
+            return;
+        }
+        try {
+            fileStorage.quarantine(picture, GRACE_MILLIS);
+        } catch (IOException e) {
+            log.warn("quarantine picture {} failed", picture, e);
+        }
+    }
+}
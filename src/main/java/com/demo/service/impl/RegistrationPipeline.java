@@ -0,0 +1,277 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.demo.service.impl.ExistenceFilter.Kind.USER_ID;
+import static com.demo.service.impl.StatusCounters.Kind.USER;
+
+/**
+ * 注册流水线：注册请求先进入有界队列，由单独的线程成批取出，
+ * 先用ExistenceFilter排除一定不存在的userID，剩下的一次查询检查是否已存在，再用一次saveAll在同一个事务里插入，
+ * 注册高峰时每个请求分摊到的查询和提交次数都远少于逐条注册。
+ * 不额外等待凑批，前一批提交期间到达的请求自然组成下一批，空闲时延迟和逐条注册相同。
+ * 同一批内userID重复时先到的成功，比较时和ExistenceFilter一样按userID列的排序规则归一化，只差大小写的也算重复；
+ * 批量插入失败时逐条重试，只让真正冲突的请求失败。
+ * 等待超时时用CAS取消还在排队的注册，写入线程跳过取消的；已经被写入线程取走的继续等待结果，
+ * 不会告诉用户注册超时而用户之后又被写入。
+ */
+@Component
+public class RegistrationPipeline {
+    private static final Logger log = LoggerFactory.getLogger(RegistrationPipeline.class);
+
+    static final int QUEUE_SIZE = 1024;
+    static final int MAX_BATCH = 64;
+    static final long OFFER_TIMEOUT_MILLIS = 1000;
+    static final long TIMEOUT_MILLIS = 5000;
+
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private StatusCounters statusCounters;
+    @Autowired
+    private ExistenceFilter existenceFilter;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+
+    private volatile Thread worker;
+
+    private long timeoutMillis = TIMEOUT_MILLIS;
+
+    /**
+     * 提交注册并等待结果
+     *
+     * @param user
+     * @return 新用户的id
+     */
+    public int register(User user) {
+        Pending pending = enqueue(user);
+        try {
+            return await(pending);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 等待注册结果。超时或被中断时只有成功取消了才返回失败，写入线程已经取走的继续等到写入结束
+     */
+    private int await(Pending pending) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            try {
+                return pending.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pending.cancel()) {
+                    throw new RuntimeException("注册超时，请稍后再试");
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                if (pending.cancel()) {
+                    throw new RuntimeException("注册被中断", e);
+                }
+            }
+            while (true) {
+                try {
+                    return pending.future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 提交注册，不等待结果
+     *
+     * @param user
+     * @return 完成时得到新用户的id，userID已存在时以异常结束
+     */
+    public CompletableFuture<Integer> submit(User user) {
+        return enqueue(user).future;
+    }
+
+    private Pending enqueue(User user) {
+        ensureWorker();
+        Pending pending = new Pending(user);
+        try {
+            if (!queue.offer(pending, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("注册繁忙，请稍后再试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("注册被中断", e);
+        }
+        return pending;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (Pending pending : rest) {
+            pending.future.completeExceptionally(new RuntimeException("服务正在关闭"));
+        }
+    }
+
+    private void ensureWorker() {
+        if (worker == null) {
+            synchronized (this) {
+                if (worker == null) {
+                    Thread thread = new Thread(this::drain, "registration-batch");
+                    thread.setDaemon(true);
+                    thread.start();
+                    worker = thread;
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                flush(batch);
+            } catch (RuntimeException | Error e) {
+                log.warn("registration batch failed", e);
+                for (Pending pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    void flush(List<Pending> queued) {
+        // 取走时已经取消的不再注册，之后调用方也不能再取消
+        List<Pending> batch = new ArrayList<>(queued.size());
+        for (Pending pending : queued) {
+            if (pending.claim()) {
+                batch.add(pending);
+            }
+        }
+        Set<String> userIDs = new HashSet<>();
+        for (Pending pending : batch) {
+            if (existenceFilter.mightContain(USER_ID, pending.user.getUserID())) {
+                userIDs.add(pending.user.getUserID());
+            }
+        }
+        Set<String> taken = new HashSet<>();
+        if (!userIDs.isEmpty()) {
+            for (User exist : userDao.findByUserIDIn(userIDs)) {
+                taken.add(ExistenceFilter.normalize(exist.getUserID()));
+            }
+        }
+
+        List<Pending> accepted = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            if (taken.add(ExistenceFilter.normalize(pending.user.getUserID()))) {
+                accepted.add(pending);
+            } else {
+                pending.future.completeExceptionally(new RuntimeException("用户名已存在"));
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        List<User> users = new ArrayList<>(accepted.size());
+        for (Pending pending : accepted) {
+            users.add(pending.user);
+        }
+        List<User> saved;
+        try {
+            saved = userDao.saveAll(users);
+        } catch (RuntimeException e) {
+            saveOneByOne(accepted);
+            return;
+        }
+        for (int i = 0; i < accepted.size(); i++) {
+            complete(accepted.get(i), saved.get(i));
+        }
+    }
+
+    private void saveOneByOne(List<Pending> accepted) {
+        for (Pending pending : accepted) {
+            try {
+                // 回滚的那次批量插入可能已经给对象填了id
+                pending.user.setId(0);
+                complete(pending, userDao.save(pending.user));
+            } catch (DataIntegrityViolationException e) {
+                pending.future.completeExceptionally(new RuntimeException("用户名已存在", e));
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void complete(Pending pending, User saved) {
+        statusCounters.increment(USER, saved.getIsadmin());
+        existenceFilter.add(USER_ID, saved.getUserID());
+        pending.future.complete(saved.getId());
+    }
+
+    static class Pending {
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        final User user;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        Pending(User user) {
+            this.user = user;
+        }
+
+        /**
+         * 写入线程取走注册，已经取消的返回false
+         */
+        boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        /**
+         * 调用方放弃等待，写入线程已经取走的返回false
+         */
+        boolean cancel() {
+            return state.compareAndSet(QUEUED, CANCELLED);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.demo.service.impl;
+
+import com.demo.dao.MessageDao;
+import com.demo.dao.OrderDao;
+import com.demo.dao.UserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 留言、订单按state，用户按isadmin的计数。
+ * 启动时从数据库统计一次，之后由各Service在状态变化时增减，
+ * 后台页面读取总数不再执行count查询。定时与数据库对账，修正漂移。
+ */
+@Component
+public class StatusCounters {
+    private static final Logger log = LoggerFactory.getLogger(StatusCounters.class);
+
+    public enum Kind {
+        MESSAGE, ORDER, USER
+    }
+
+    @Autowired
+    private MessageDao messageDao;
+    @Autowired
+    private OrderDao orderDao;
+    @Autowired
+    private UserDao userDao;
+
+    /**
+     * 启动时的第一次统计不算漂移，不打日志
+     */
+    private volatile boolean seeded;
+
+    private final Map<Kind, ConcurrentMap<Integer, LongAdder>> counters = new EnumMap<>(Kind.class);
+
+    {
+        for (Kind kind : Kind.values()) {
+            counters.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    public long get(Kind kind, int state) {
+        LongAdder adder = counters.get(kind).get(state);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    public void increment(Kind kind, int state) {
+        adder(kind, state).increment();
+    }
+
+    public void decrement(Kind kind, int state) {
+        adder(kind, state).decrement();
+    }
+
+    public void move(Kind kind, int from, int to) {
+        if (from != to) {
+            decrement(kind, from);
+            increment(kind, to);
+        }
+    }
+
+    @PostConstruct
+    public void reconcile() {
+        for (Kind kind : Kind.values()) {
+            reconcile(kind);
+        }
+        seeded = true;
+    }
+
+    @Scheduled(initialDelay = 300000, fixedDelay = 300000)
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.warn("reconcile status counters failed", e);
+        }
+    }
+
+    /**
+     * 用数据库的分组统计修正某一类计数。
+     * 统计期间发生的增减可能被算两次或漏掉，留给下一次对账修正。
+     */
+    public void reconcile(Kind kind) {
+        Map<Integer, Long> actual = new HashMap<>();
+        for (Object[] row : load(kind)) {
+            if (row[0] == null) {
+                continue;
+            }
+            actual.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+        }
+        ConcurrentMap<Integer, LongAdder> current = counters.get(kind);
+        for (Integer state : current.keySet()) {
+            actual.putIfAbsent(state, 0L);
+        }
+        actual.forEach((state, count) -> {
+            LongAdder adder = adder(kind, state);
+            long drift = count - adder.sum();
+            if (drift != 0) {
+                adder.add(drift);
+                if (seeded) {
+                    log.info("status counter {}[{}] corrected by {}", kind, state, drift);
+                }
+            }
+        });
+    }
+
+    private List<Object[]> load(Kind kind) {
+        switch (kind) {
+            case MESSAGE:
+                return messageDao.countGroupByState();
+            case ORDER:
+                return orderDao.countGroupByState();
+            default:
+                return userDao.countGroupByIsadmin();
+        }
+    }
+
+    private LongAdder adder(Kind kind, int state) {
+        return counters.get(kind).computeIfAbsent(state, k -> new LongAdder());
+    }
+}
@@ -0,0 +1,323 @@
+package com.demo.service.impl;
+
+import com.demo.dao.PictureVariantDao;
+import com.demo.entity.PictureVariant;
+import com.demo.entity.Venue;
+import com.demo.service.FileStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 上传图片的缩略图：原图保存后交给后台线程池，按WIDTHS生成几个缩小的版本，
+ * 与原图放在同一目录，文件名是原图名加原图扩展名和_w宽度，记录在picture_variant表里。
+ * 内容相同、扩展名不同的两张原图各有自己的版本，删除一张时不会删掉另一张还在用的文件。
+ * 列表页和留言头像通过pick取不小于显示宽度的最小版本，还没有生成或原图本身就够小时用原图。
+ * 列表页先用preload一次查出整页图片的版本，不再每张图片查一次。
+ * 已有的图片在第一次被pick时发现没有记录，补交生成，不需要单独迁移。
+ * 生成失败或队列已满时只记日志，页面继续用原图，之后再被pick时重新提交。
+ */
+@Component
+public class Thumbnailer {
+    private static final Logger log = LoggerFactory.getLogger(Thumbnailer.class);
+
+    static final int[] WIDTHS = {64, 160, 480};
+    public static final int AVATAR = 64;
+    public static final int CARD = 160;
+
+    static final int THREADS = 2;
+    static final int QUEUE_SIZE = 256;
+
+    private static final Pattern VARIANT = Pattern.compile("_w\\d+\\.[a-z0-9]+$");
+
+    @Autowired
+    private PictureVariantDao pictureVariantDao;
+    @Autowired
+    private FileStorage fileStorage;
+
+    /**
+     * 原图url到各宽度版本url，没有可用版本的原图对应空表
+     */
+    private final Map<String, NavigableMap<Integer, String>> variants = new ConcurrentHashMap<>();
+
+    /**
+     * 已经交给线程池还没有处理完的原图，避免重复提交
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor executor;
+
+    public Thumbnailer() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "thumbnail-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 原图保存后提交生成，不等待结果
+     *
+     * @param picture 原图url，不是上传文件时忽略
+     * @return 队列已满没有提交时返回false
+     */
+    public boolean submit(String picture) {
+        if (picture == null || !picture.startsWith("file/") || VARIANT.matcher(picture).find()) {
+            return true;
+        }
+        if (!pending.add(picture)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(picture);
+                } finally {
+                    pending.remove(picture);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(picture);
+            log.debug("thumbnail queue full, skip {}", picture);
+            return false;
+        }
+    }
+
+    /**
+     * 不小于width的最小版本
+     *
+     * @param picture 原图url
+     * @param width 显示宽度
+     * @return 没有合适的版本时返回原图url
+     */
+    public String pick(String picture, int width) {
+        if (picture == null || picture.isEmpty()) {
+            return picture;
+        }
+        NavigableMap<Integer, String> sizes = variants.get(picture);
+        if (sizes == null) {
+            sizes = cache(picture, pictureVariantDao.findByPictureIn(Collections.singleton(picture)));
+        }
+        Map.Entry<Integer, String> entry = sizes.ceilingEntry(width);
+        return entry == null ? picture : entry.getValue();
+    }
+
+    /**
+     * 一次查出还没有缓存的图片的版本，之后的pick不再查询
+     *
+     * @param pictures 一页里的原图url
+     */
+    public void preload(Collection<String> pictures) {
+        Set<String> missing = new HashSet<>();
+        for (String picture : pictures) {
+            if (picture != null && !picture.isEmpty() && !variants.containsKey(picture)) {
+                missing.add(picture);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<String, List<PictureVariant>> rows = new HashMap<>();
+        for (PictureVariant row : pictureVariantDao.findByPictureIn(missing)) {
+            rows.computeIfAbsent(row.getPicture(), picture -> new ArrayList<>()).add(row);
+        }
+        for (String picture : missing) {
+            cache(picture, rows.getOrDefault(picture, Collections.emptyList()));
+        }
+    }
+
+    /**
+     * 场馆卡片用的副本，不修改可能仍受JPA管理的venue
+     */
+    public Venue forCard(Venue venue) {
+        String picture = pick(venue.getPicture(), CARD);
+        if (picture == null || picture.equals(venue.getPicture())) {
+            return venue;
+        }
+        return new Venue(venue.getVenueID(), venue.getVenueName(), venue.getDescription(), venue.getPrice(),
+                picture, venue.getAddress(), venue.getOpen_time(), venue.getClose_time());
+    }
+
+    /**
+     * 原图已删除，删除它的各版本
+     *
+     * @param picture 原图url
+     */
+    public void forget(String picture) {
+        if (picture == null || picture.isEmpty()) {
+            return;
+        }
+        List<PictureVariant> own = pictureVariantDao.findByPictureIn(Collections.singleton(picture));
+        // 改名之前生成的版本可能和扩展名不同的另一张原图共用文件
+        Set<String> shared = new HashSet<>();
+        if (!own.isEmpty()) {
+            List<String> paths = new ArrayList<>(own.size());
+            for (PictureVariant variant : own) {
+                paths.add(variant.getPath());
+            }
+            for (PictureVariant other : pictureVariantDao.findByPathIn(paths)) {
+                if (!picture.equals(other.getPicture())) {
+                    shared.add(other.getPath());
+                }
+            }
+        }
+        for (PictureVariant variant : own) {
+            if (shared.contains(variant.getPath())) {
+                continue;
+            }
+            try {
+                fileStorage.delete(variant.getPath(), 0);
+            } catch (IOException e) {
+                log.warn("delete thumbnail {} failed", variant.getPath(), e);
+            }
+        }
+        pictureVariantDao.deleteByPicture(picture);
+        variants.remove(picture);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 缓存查到的版本，没有版本时补交生成，队列已满时不缓存，下次pick再提交
+     */
+    private NavigableMap<Integer, String> cache(String picture, List<PictureVariant> rows) {
+        NavigableMap<Integer, String> sizes = index(rows);
+        NavigableMap<Integer, String> exist = variants.putIfAbsent(picture, sizes);
+        if (exist != null) {
+            return exist;
+        }
+        if (sizes.isEmpty() && !submit(picture)) {
+            variants.remove(picture, sizes);
+        }
+        return sizes;
+    }
+
+    private void process(String picture) {
+        try {
+            // 其他实例可能已经生成过
+            List<PictureVariant> rows = pictureVariantDao.findByPictureIn(Collections.singleton(picture));
+            if (rows.isEmpty()) {
+                List<PictureVariant> generated = generate(picture);
+                if (!generated.isEmpty()) {
+                    rows = pictureVariantDao.saveAll(generated);
+                }
+            }
+            variants.put(picture, index(rows));
+        } catch (IOException | RuntimeException e) {
+            // 下次pick时重试
+            variants.computeIfPresent(picture, (key, sizes) -> sizes.isEmpty() ? null : sizes);
+            log.warn("generate thumbnails for {} failed", picture, e);
+        }
+    }
+
+    /**
+     * 通过fileStorage.saveVariant在原图旁边生成比原图窄的各个版本，jpg原图生成jpg，其他格式生成png以保留透明度
+     *
+     * @param picture 原图url
+     * @return 生成的版本，还没有保存；原图不存在、不是图片或比所有版本都窄时为空
+     * @throws IOException
+     */
+    List<PictureVariant> generate(String picture) throws IOException {
+        BufferedImage image;
+        try (InputStream in = fileStorage.open(picture)) {
+            if (in == null) {
+                return Collections.emptyList();
+            }
+            image = ImageIO.read(in);
+        }
+        if (image == null) {
+            return Collections.emptyList();
+        }
+        String name = picture.substring(picture.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String suffix = dot < 0 ? "" : name.substring(dot + 1);
+        boolean jpeg = suffix.equals("jpg") || suffix.equals("jpeg");
+        String format = jpeg ? "jpg" : "png";
+
+        List<PictureVariant> generated = new ArrayList<>(WIDTHS.length);
+        for (int width : WIDTHS) {
+            if (width >= image.getWidth()) {
+                break;
+            }
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+            String variantName = base + (suffix.isEmpty() ? "" : "_" + suffix) + "_w" + width + "." + format;
+            BufferedImage scaled = scale(image, width, height, jpeg);
+            String path = fileStorage.saveVariant(picture, variantName, out -> {
+                if (!ImageIO.write(scaled, format, out)) {
+                    throw new IOException("no writer for " + format);
+                }
+            });
+            generated.add(new PictureVariant(0, picture, width, path));
+        }
+        return generated;
+    }
+
+    /**
+     * 每次最多缩小一半，直接大比例缩小时双线性插值会丢掉大部分像素
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean opaque) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                if (opaque) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static NavigableMap<Integer, String> index(List<PictureVariant> rows) {
+        NavigableMap<Integer, String> sizes = new TreeMap<>();
+        for (PictureVariant row : rows) {
+            sizes.put(row.getWidth(), row.getPath());
+        }
+        return Collections.unmodifiableNavigableMap(sizes);
+    }
+}
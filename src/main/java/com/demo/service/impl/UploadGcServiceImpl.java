@@ -0,0 +1,176 @@
+package com.demo.service.impl;
+
+import com.demo.dao.PictureVariantDao;
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.entity.PictureVariant;
+import com.demo.entity.vo.UploadGcStats;
+import com.demo.service.FileStorage;
+import com.demo.service.UploadGcService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 回收没有被场馆、用户和缩略图引用的上传文件。
+ * 每次只按url顺序处理一批，记住处理到的位置，下次从那里继续，扫完一轮再从头开始。
+ * 没有引用的文件先移到隔离区，隔离期过后再检查一次引用，仍然没有引用才删除，又被引用的移回原处。
+ * 移动和删除文件之间按files-per-second限速，不和请求争抢磁盘。
+ * 刚上传还没有保存到数据库的文件也没有引用，修改时间在PictureReferences.GRACE_MILLIS以内的不处理。
+ */
+@Service
+public class UploadGcServiceImpl implements UploadGcService {
+    private static final Logger log = LoggerFactory.getLogger(UploadGcServiceImpl.class);
+
+    @Value("${file.gc.enabled:true}")
+    private boolean enabled;
+    @Value("${file.gc.batch-size:200}")
+    private int batchSize;
+    @Value("${file.gc.files-per-second:20}")
+    private int filesPerSecond;
+    @Value("${file.gc.quarantine-hours:24}")
+    private long quarantineHours;
+
+    @Autowired
+    private FileStorage fileStorage;
+    @Autowired
+    private VenueDao venueDao;
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private PictureVariantDao pictureVariantDao;
+    @Autowired
+    private Thumbnailer thumbnailer;
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder quarantined = new LongAdder();
+    private final LongAdder restored = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+    private final LongAdder reclaimedBytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+
+    private volatile String cursor;
+
+    @Scheduled(initialDelay = 600000, fixedDelay = 60000)
+    public void scheduledCollect() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            collect();
+        } catch (RuntimeException e) {
+            log.warn("collect orphaned uploads failed", e);
+        }
+    }
+
+    @Override
+    public synchronized UploadGcStats collect() {
+        try {
+            purgeQuarantined();
+            scan();
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("collect orphaned uploads failed", e);
+        }
+        return stats();
+    }
+
+    @Override
+    public UploadGcStats stats() {
+        return new UploadGcStats(scanned.sum(), quarantined.sum(), restored.sum(), purged.sum(), reclaimedBytes.sum(),
+                failures.sum(), passes.sum(), cursor);
+    }
+
+    /**
+     * 隔离期已过的文件，仍然没有引用的删除，删除原图时一起删除它的缩略图
+     */
+    private void purgeQuarantined() throws IOException {
+        List<String> urls = fileStorage.listQuarantined(TimeUnit.HOURS.toMillis(quarantineHours), batchSize);
+        if (urls.isEmpty()) {
+            return;
+        }
+        Set<String> referenced = referenced(urls);
+        for (String url : urls) {
+            throttle();
+            try {
+                if (referenced.contains(url)) {
+                    if (fileStorage.restore(url)) {
+                        restored.increment();
+                    }
+                    continue;
+                }
+                long bytes = fileStorage.purge(url);
+                if (bytes >= 0) {
+                    purged.increment();
+                    reclaimedBytes.add(bytes);
+                    thumbnailer.forget(url);
+                }
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                log.warn("purge {} failed", url, e);
+            }
+        }
+    }
+
+    /**
+     * 从上次的位置往后检查一批，没有引用的移到隔离区
+     */
+    private void scan() throws IOException {
+        List<String> urls = fileStorage.list(cursor, batchSize);
+        if (urls.size() < batchSize) {
+            cursor = null;
+            passes.increment();
+        } else {
+            cursor = urls.get(urls.size() - 1);
+        }
+        if (urls.isEmpty()) {
+            return;
+        }
+        Set<String> referenced = referenced(urls);
+        for (String url : urls) {
+            scanned.increment();
+            if (referenced.contains(url)) {
+                continue;
+            }
+            throttle();
+            try {
+                if (fileStorage.quarantine(url, PictureReferences.GRACE_MILLIS) >= 0) {
+                    quarantined.increment();
+                }
+            } catch (IOException e) {
+                failures.increment();
+                log.warn("quarantine {} failed", url, e);
+            }
+        }
+    }
+
+    /**
+     * urls中被场馆、用户图片或缩略图记录引用的
+     */
+    private Set<String> referenced(List<String> urls) {
+        Set<String> referenced = new HashSet<>(venueDao.findPictureIn(urls));
+        referenced.addAll(userDao.findPictureIn(urls));
+        for (PictureVariant variant : pictureVariantDao.findByPathIn(urls)) {
+            referenced.add(variant.getPath());
+        }
+        return referenced;
+    }
+
+    private void throttle() {
+        if (filesPerSecond > 0) {
+            LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1) / filesPerSecond);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.entity.vo.ImportError;
+import com.demo.entity.vo.ImportReport;
+import com.demo.service.UserBulkService;
+import com.demo.utils.CsvUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.demo.service.impl.ExistenceFilter.Kind.USER_ID;
+import static com.demo.service.impl.StatusCounters.Kind.USER;
+
+/**
+ * 用户批量导入导出直接用JdbcTemplate，不经过JPA，
+ * 导入几千行时持久化上下文里不会堆积实体，插入可以走JDBC批处理。
+ */
+@Service
+public class UserBulkServiceImpl implements UserBulkService {
+    static final int CHUNK_SIZE = 500;
+    static final int MAX_ERRORS = 1000;
+    static final int MAX_FIELD_LENGTH = 255;
+    private static final int MAX_REPORTS = 32;
+
+    static final String INSERT_SQL =
+            "insert into `user` (userID, user_name, password, email, phone, isadmin, picture) values (?, ?, ?, ?, ?, 0, '')";
+    static final String EXPORT_SQL =
+            "select id, userID, user_name, email, phone from `user` where isadmin = 0 and id > ? order by id limit ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private StatusCounters statusCounters;
+    @Autowired
+    private ExistenceFilter existenceFilter;
+
+    private final Map<String, ImportReport> reports = new LinkedHashMap<String, ImportReport>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImportReport> eldest) {
+            return size() > MAX_REPORTS;
+        }
+    };
+
+    @Override
+    public ImportReport importUsers(Reader reader, String importID) throws IOException {
+        ImportReport report = new ImportReport(importID, 0, 0, 0, false, new ArrayList<>());
+        synchronized (reports) {
+            reports.put(importID, report);
+        }
+        try {
+            BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+            Set<String> seen = new HashSet<>();
+            List<String[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            List<Integer> lines = new ArrayList<>(CHUNK_SIZE);
+            int lineNo = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (lineNo == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> cells;
+                try {
+                    cells = CsvUtil.parseLine(line);
+                } catch (IllegalArgumentException e) {
+                    synchronized (report) {
+                        report.setTotal(report.getTotal() + 1);
+                    }
+                    fail(report, lineNo, null, e.getMessage());
+                    continue;
+                }
+                if (lineNo == 1 && "userID".equalsIgnoreCase(cells.get(0).trim())) {
+                    continue;
+                }
+                synchronized (report) {
+                    report.setTotal(report.getTotal() + 1);
+                }
+                String[] row = toRow(cells);
+                String reason = validate(row);
+                if (reason == null && !seen.add(ExistenceFilter.normalize(row[0]))) {
+                    reason = "文件中userID重复";
+                }
+                if (reason != null) {
+                    fail(report, lineNo, row[0], reason);
+                    continue;
+                }
+                chunk.add(row);
+                lines.add(lineNo);
+                if (chunk.size() == CHUNK_SIZE) {
+                    flush(chunk, lines, report);
+                    chunk.clear();
+                    lines.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                flush(chunk, lines, report);
+            }
+        } finally {
+            synchronized (report) {
+                report.setFinished(true);
+            }
+        }
+        return snapshot(report);
+    }
+
+    @Override
+    public ImportReport importProgress(String importID) {
+        ImportReport report;
+        synchronized (reports) {
+            report = reports.get(importID);
+        }
+        return report == null ? null : snapshot(report);
+    }
+
+    @Override
+    public void exportUsers(Writer writer) throws IOException {
+        writer.write('\uFEFF');
+        CsvUtil.writeRow(writer, "userID", "userName", "email", "phone");
+        int[] after = {0};
+        int rows;
+        do {
+            int[] count = {0};
+            try {
+                jdbcTemplate.query(EXPORT_SQL, rs -> {
+                    after[0] = rs.getInt("id");
+                    count[0]++;
+                    try {
+                        CsvUtil.writeRow(writer, rs.getString("userID"), rs.getString("user_name"),
+                                rs.getString("email"), rs.getString("phone"));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, after[0], CHUNK_SIZE);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            rows = count[0];
+        } while (rows == CHUNK_SIZE);
+        writer.flush();
+    }
+
+    /**
+     * 一块数据先用过滤器排除一定不存在的userID，剩下的一次查询检查，
+     * 通过检查的在一个事务里批量插入；批量插入失败时逐行插入，只让冲突的行失败。
+     * userID列的排序规则不区分大小写，已存在的userID按ExistenceFilter.normalize后的键比较
+     */
+    private void flush(List<String[]> chunk, List<Integer> lines, ImportReport report) {
+        Set<String> candidates = new HashSet<>();
+        for (String[] row : chunk) {
+            if (existenceFilter.mightContain(USER_ID, row[0])) {
+                candidates.add(row[0]);
+            }
+        }
+        Set<String> existing = new HashSet<>();
+        if (!candidates.isEmpty()) {
+            for (String userID : userDao.findUserIDIn(candidates)) {
+                existing.add(ExistenceFilter.normalize(userID));
+            }
+        }
+
+        List<Object[]> args = new ArrayList<>(chunk.size());
+        List<Integer> argLines = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            String[] row = chunk.get(i);
+            if (existing.contains(ExistenceFilter.normalize(row[0]))) {
+                fail(report, lines.get(i), row[0], "用户名已存在");
+            } else {
+                args.add(row);
+                argLines.add(lines.get(i));
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, args));
+            for (Object[] row : args) {
+                succeed(report, (String) row[0]);
+            }
+        } catch (DataAccessException e) {
+            for (int i = 0; i < args.size(); i++) {
+                Object[] row = args.get(i);
+                try {
+                    jdbcTemplate.update(INSERT_SQL, row);
+                    succeed(report, (String) row[0]);
+                } catch (DuplicateKeyException duplicate) {
+                    fail(report, argLines.get(i), (String) row[0], "用户名已存在");
+                } catch (DataAccessException single) {
+                    fail(report, argLines.get(i), (String) row[0], single.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private static String[] toRow(List<String> cells) {
+        String[] row = new String[5];
+        for (int i = 0; i < row.length && i < cells.size(); i++) {
+            row[i] = cells.get(i).trim();
+        }
+        return row;
+    }
+
+    private static String validate(String[] row) {
+        if (row[0] == null || row[0].isEmpty()) {
+            return "userID不能为空";
+        }
+        if (row[2] == null || row[2].isEmpty()) {
+            return "密码不能为空";
+        }
+        for (String cell : row) {
+            if (cell != null && cell.length() > MAX_FIELD_LENGTH) {
+                return "字段长度超过" + MAX_FIELD_LENGTH;
+            }
+        }
+        return null;
+    }
+
+    private void succeed(ImportReport report, String userID) {
+        statusCounters.increment(USER, 0);
+        existenceFilter.add(USER_ID, userID);
+        synchronized (report) {
+            report.setImported(report.getImported() + 1);
+        }
+    }
+
+    private static void fail(ImportReport report, int line, String userID, String reason) {
+        synchronized (report) {
+            report.setFailed(report.getFailed() + 1);
+            if (report.getErrors().size() < MAX_ERRORS) {
+                report.getErrors().add(new ImportError(line, userID, reason));
+            }
+        }
+    }
+
+    private static ImportReport snapshot(ImportReport report) {
+        synchronized (report) {
+            return new ImportReport(report.getImportID(), report.getTotal(), report.getImported(), report.getFailed(),
+                    report.isFinished(), new ArrayList<>(report.getErrors()));
+        }
+    }
+}
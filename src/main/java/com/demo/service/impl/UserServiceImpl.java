@@ -2,16 +2,37 @@ package com.demo.service.impl;
 
 import com.demo.dao.UserDao;
 import com.demo.entity.User;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.service.HomeService;
 import com.demo.service.UserService;
+import com.demo.utils.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
+import static com.demo.service.impl.ExistenceFilter.Kind.USER_ID;
+import static com.demo.service.impl.StatusCounters.Kind.USER;
+
 @Service
 public class UserServiceImpl implements UserService {
     @Autowired
     private UserDao userDao;
+    @Autowired
+    private HomeService homeService;
+    @Autowired
+    private StatusCounters statusCounters;
+    @Autowired
+    private RegistrationPipeline registrationPipeline;
+    @Autowired
+    private ExistenceFilter existenceFilter;
+    @Autowired
+    private PictureReferences pictureReferences;
+    @Autowired
+    private Thumbnailer thumbnailer;
 
     @Override
     public User findByUserID(String userID) {
@@ -28,6 +49,18 @@ public class UserServiceImpl implements UserService {
         return userDao.findAllByIsadmin(0,pageable);
     }
 
+    @Override
+    public KeysetPage<User> findUserAfter(String cursor, int size) {
+        Cursor after=Cursor.decode(cursor);
+        List<User> rows=userDao.findByIsadminAndIdGreaterThanOrderByIdAsc(0,after==null ? 0 : after.getId(),PageRequest.of(0,size+1));
+        return KeysetPage.of(rows,size,user -> new Cursor(null,user.getId()));
+    }
+
+    @Override
+    public long countUser() {
+        return statusCounters.get(USER,0);
+    }
+
     @Override
     public User checkLogin(String userID, String password) {
         return userDao.findByUserIDAndPassword(userID,password);
@@ -35,23 +68,48 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public int create(User user) {
-        userDao.save(user);
-        return userDao.findAll().size();
+        User saved=userDao.save(user);
+        statusCounters.increment(USER,saved.getIsadmin());
+        existenceFilter.add(USER_ID,saved.getUserID());
+        return saved.getId();
+    }
+
+    @Override
+    public int register(User user) {
+        return registrationPipeline.register(user);
     }
 
     @Override
     public void delByID(int id) {
+        User user=userDao.findById(id);
         userDao.deleteById(id);
+        if(user!=null) {
+            statusCounters.decrement(USER,user.getIsadmin());
+            pictureReferences.release(user.getPicture());
+        }
+        homeService.refresh();
     }
 
 
     @Override
     public void updateUser(User user) {
+        String picture=userDao.findPictureById(user.getId());
         userDao.save(user);
+        if(picture!=null && !picture.equals(user.getPicture())) {
+            pictureReferences.release(picture);
+        }
+        if(user.getPicture()!=null && !user.getPicture().equals(picture)) {
+            thumbnailer.submit(user.getPicture());
+        }
+        existenceFilter.add(USER_ID,user.getUserID());
+        homeService.refresh();
     }
 
     @Override
     public int countUserID(String userID) {
+        if(!existenceFilter.mightContain(USER_ID,userID)){
+            return 0;
+        }
         return userDao.countByUserID(userID);
     }
 }
@@ -0,0 +1,153 @@
+package com.demo.service.impl;
+
+import com.demo.entity.Venue;
+import com.demo.entity.vo.CacheStats;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * 场馆缓存，同时按venueID和venueName索引，按最近使用淘汰。
+ * 缓存中保存的是副本，调用方拿到的对象可以随意修改。
+ * 场馆只会通过VenueService修改，修改后由VenueServiceImpl调用evict失效。
+ */
+@Component
+public class VenueCache {
+    private static final int MAX_SIZE = 1024;
+
+    private final Map<String, Integer> byName = new HashMap<>();
+
+    private final Map<Integer, Venue> byID = new LinkedHashMap<Integer, Venue>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Venue> eldest) {
+            if (size() > MAX_SIZE) {
+                byName.remove(eldest.getValue().getVenueName());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 每次失效加一，加载期间发生过失效的结果不放入缓存
+     */
+    private long generation;
+
+    public Venue getByID(int venueID, IntFunction<Venue> loader) {
+        long gen;
+        synchronized (this) {
+            Venue venue = byID.get(venueID);
+            if (venue != null) {
+                hits.increment();
+                return copy(venue);
+            }
+            gen = generation;
+        }
+        misses.increment();
+        Venue venue = loader.apply(venueID);
+        put(venue, gen);
+        return venue;
+    }
+
+    public Venue getByName(String venueName, Function<String, Venue> loader) {
+        if (venueName == null) {
+            return loader.apply(null);
+        }
+        long gen;
+        synchronized (this) {
+            Integer venueID = byName.get(venueName);
+            Venue venue = venueID == null ? null : byID.get(venueID);
+            if (venue != null) {
+                hits.increment();
+                return copy(venue);
+            }
+            gen = generation;
+        }
+        misses.increment();
+        Venue venue = loader.apply(venueName);
+        put(venue, gen);
+        return venue;
+    }
+
+    /**
+     * 批量按venueID取场馆，未命中的部分交给loader一次查询
+     */
+    public Map<Integer, Venue> getAllByID(Collection<Integer> venueIDs, Function<Collection<Integer>, List<Venue>> loader) {
+        Map<Integer, Venue> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long gen;
+        synchronized (this) {
+            for (Integer venueID : venueIDs) {
+                Venue venue = byID.get(venueID);
+                if (venue != null) {
+                    result.put(venueID, copy(venue));
+                } else {
+                    missing.add(venueID);
+                }
+            }
+            gen = generation;
+        }
+        hits.add(result.size());
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            for (Venue venue : loader.apply(missing)) {
+                result.put(venue.getVenueID(), venue);
+                put(venue, gen);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void evict(int venueID) {
+        generation++;
+        Venue venue = byID.remove(venueID);
+        if (venue != null) {
+            byName.remove(venue.getVenueName());
+        }
+    }
+
+    public synchronized void evictName(String venueName) {
+        generation++;
+        Integer venueID = byName.remove(venueName);
+        if (venueID != null) {
+            byID.remove(venueID);
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        byID.clear();
+        byName.clear();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), byID.size());
+    }
+
+    private synchronized void put(Venue venue, long gen) {
+        if (venue == null || gen != generation) {
+            return;
+        }
+        Venue old = byID.put(venue.getVenueID(), copy(venue));
+        if (old != null) {
+            byName.remove(old.getVenueName());
+        }
+        byName.put(venue.getVenueName(), venue.getVenueID());
+    }
+
+    private static Venue copy(Venue venue) {
+        return new Venue(venue.getVenueID(), venue.getVenueName(), venue.getDescription(), venue.getPrice(),
+                venue.getPicture(), venue.getAddress(), venue.getOpen_time(), venue.getClose_time());
+    }
+}
@@ -2,27 +2,46 @@ package com.demo.service.impl;
 
 import com.demo.dao.VenueDao;
 import com.demo.entity.Venue;
+import com.demo.entity.vo.CacheStats;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.service.HomeService;
 import com.demo.service.VenueService;
+import com.demo.utils.Cursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static com.demo.service.impl.ExistenceFilter.Kind.VENUE_NAME;
+
 @Service
 public class VenueServiceImpl implements VenueService {
     @Autowired
     private VenueDao venueDao;
+    @Autowired
+    private VenueCache venueCache;
+    @Autowired
+    private HomeService homeService;
+    @Autowired
+    private ExistenceFilter existenceFilter;
+    @Autowired
+    private PictureReferences pictureReferences;
+    @Autowired
+    private Thumbnailer thumbnailer;
 
     @Override
     public Venue findByVenueID(int id) {
-        return venueDao.getOne(id);
+        return venueCache.getByID(id,venueDao::findByVenueID);
     }
 
     @Override
     public Venue findByVenueName(String venueName) {
-        return venueDao.findByVenueName(venueName);
+        return venueCache.getByName(venueName,venueDao::findByVenueName);
     }
 
     @Override
@@ -30,6 +49,24 @@ public class VenueServiceImpl implements VenueService {
         return venueDao.findAll(pageable);
     }
 
+    @Override
+    public Slice<Venue> findSlice(Pageable pageable) {
+        Slice<Venue> venues=venueDao.findAllBy(pageable);
+        List<String> pictures=new ArrayList<>(venues.getNumberOfElements());
+        for(Venue venue:venues) {
+            pictures.add(venue.getPicture());
+        }
+        thumbnailer.preload(pictures);
+        return venues.map(thumbnailer::forCard);
+    }
+
+    @Override
+    public KeysetPage<Venue> findAfter(String cursor, int size) {
+        Cursor after=Cursor.decode(cursor);
+        List<Venue> rows=venueDao.findByVenueIDGreaterThanOrderByVenueIDAsc(after==null ? 0 : after.getId(),PageRequest.of(0,size+1));
+        return KeysetPage.of(rows,size,venue -> new Cursor(null,venue.getVenueID()));
+    }
+
     @Override
     public List<Venue> findAll() {
         return venueDao.findAll();
@@ -37,21 +74,49 @@ public class VenueServiceImpl implements VenueService {
 
     @Override
     public int create(Venue venue) {
-        return venueDao.save(venue).getVenueID();
+        int venueID=venueDao.save(venue).getVenueID();
+        thumbnailer.submit(venue.getPicture());
+        existenceFilter.add(VENUE_NAME,venue.getVenueName());
+        venueCache.evictName(venue.getVenueName());
+        homeService.refresh();
+        return venueID;
     }
 
     @Override
     public void update(Venue venue) {
+        String picture=venueDao.findPictureByVenueID(venue.getVenueID());
         venueDao.save(venue);
+        if(picture!=null && !picture.equals(venue.getPicture())) {
+            pictureReferences.release(picture);
+        }
+        if(venue.getPicture()!=null && !venue.getPicture().equals(picture)) {
+            thumbnailer.submit(venue.getPicture());
+        }
+        existenceFilter.add(VENUE_NAME,venue.getVenueName());
+        venueCache.evict(venue.getVenueID());
+        venueCache.evictName(venue.getVenueName());
+        homeService.refresh();
     }
 
     @Override
     public void delById(int id) {
+        String picture=venueDao.findPictureByVenueID(id);
         venueDao.deleteById(id);
+        pictureReferences.release(picture);
+        venueCache.evict(id);
+        homeService.refresh();
     }
 
     @Override
     public int countVenueName(String venueName) {
+        if(!existenceFilter.mightContain(VENUE_NAME,venueName)){
+            return 0;
+        }
         return venueDao.countByVenueName(venueName);
     }
+
+    @Override
+    public CacheStats cacheStats() {
+        return venueCache.stats();
+    }
 }
@@ -0,0 +1,91 @@
+package com.demo.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 字符串布隆过滤器。mightContain返回false时一定没有加入过，返回true时可能加入过。
+ * 只能添加不能删除，可以多线程同时添加和查询。
+ */
+public class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashes;
+
+    private BloomFilter(long bitSize, int hashes) {
+        this.bits = new AtomicLongArray((int) ((bitSize + 63) >>> 6));
+        this.bitSize = (long) bits.length() << 6;
+        this.hashes = hashes;
+    }
+
+    /**
+     * 按预计元素个数和期望误判率创建
+     *
+     * @param expected
+     * @param fpp
+     * @return
+     */
+    public static BloomFilter create(int expected, double fpp) {
+        if (expected < 1 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expected=" + expected + ", fpp=" + fpp);
+        }
+        long bitSize = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int hashes = Math.max(1, (int) Math.round((double) bitSize / expected * Math.log(2)));
+        return new BloomFilter(Math.min(bitSize, Integer.MAX_VALUE), hashes);
+    }
+
+    public void put(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitSize;
+            long mask = 1L << index;
+            int word = (int) (index >>> 6);
+            long old;
+            do {
+                old = bits.get(word);
+                if ((old & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, old, old | mask));
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long index = ((h1 + i * h2) & Integer.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    /**
+     * FNV-1a再做一次murmur3的fmix64，高低32位分别作为两个哈希
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
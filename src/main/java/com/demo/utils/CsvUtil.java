@@ -0,0 +1,77 @@
+package com.demo.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RFC 4180格式的CSV读写，只支持单行记录，字段中不能有换行
+ */
+public class CsvUtil {
+
+    /**
+     * 解析一行，双引号包围的字段中可以有逗号，两个双引号表示一个双引号
+     *
+     * @param line
+     * @return
+     */
+    public static List<String> parseLine(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    cell.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("引号不匹配");
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+
+    public static void writeRow(Writer writer, String... cells) throws IOException {
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(cells[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * 含逗号、引号或换行的字段加双引号。
+     * 以=、+、-、@开头的字段前加单引号，防止在表格软件中被当作公式执行。
+     */
+    public static String escape(String cell) {
+        if (cell == null || cell.isEmpty()) {
+            return "";
+        }
+        char first = cell.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@') {
+            cell = "'" + cell;
+        }
+        if (cell.indexOf(',') >= 0 || cell.indexOf('"') >= 0 || cell.indexOf('\n') >= 0 || cell.indexOf('\r') >= 0) {
+            return '"' + cell.replace("\"", "\"\"") + '"';
+        }
+        return cell;
+    }
+}
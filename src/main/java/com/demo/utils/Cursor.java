@@ -0,0 +1,59 @@
+package com.demo.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 键集分页的游标，记录上一页最后一行的排序键(time, id)，
+ * 只按主键排序的列表time为null。对外只暴露编码后的字符串。
+ */
+public class Cursor {
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime time;
+
+    private final int id;
+
+    public Cursor(LocalDateTime time, int id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = (time == null ? "" : time.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，为空时返回null表示从第一页开始
+     *
+     * @param cursor
+     * @return
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.lastIndexOf(SEPARATOR);
+            if (index < 0) {
+                throw new IllegalArgumentException("非法的分页游标");
+            }
+            String time = raw.substring(0, index);
+            return new Cursor(time.isEmpty() ? null : LocalDateTime.parse(time), Integer.parseInt(raw.substring(index + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("非法的分页游标", e);
+        }
+    }
+}
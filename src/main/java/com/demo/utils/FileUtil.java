@@ -1,57 +1,125 @@
 package com.demo.utils;
 
-import org.springframework.util.ClassUtils;
-import org.springframework.util.ResourceUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.security.MessageDigest;
-import java.util.UUID;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
 
+/**
+ * 上传图片按内容寻址保存：文件名是内容的SHA-256加上扩展名，内容相同的上传只保留一个文件。
+ * 写入时边写边算摘要，先写到临时文件，算完后改名为摘要文件名，文件已存在时删除临时文件。
+ * 文件按摘要的前两个字节分到两级子目录里，单个目录的文件数不会随上传量一直增长。
+ * 一个文件可能被多个场馆和用户引用，删除前要确认已经没有引用。
+ */
 public class FileUtil {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_SUFFIX_LENGTH = 10;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
     /**
-     * 保存上传的文件
+     * 保存到filePath目录下的分片子目录，内容相同的文件已存在时不再保留新的副本。
+     * 多个线程同时保存相同内容时各自写自己的临时文件，最后的改名是原子的，读到的总是完整的文件。
      *
+     * @param filePath
      * @param picture
-     * @return 文件下载的url
-     * @throws Exception
+     * @return 相对filePath的路径，形如ab/cd/abcd....jpg
+     * @throws IOException
      */
-    public static String saveVenueFile(MultipartFile picture) throws Exception {
-
-        if (picture.isEmpty()) {
-            return "";
+    public static String savePicture(String filePath, MultipartFile picture) throws IOException {
+        Path dir = Files.createDirectories(Paths.get(filePath));
+        Path temp = Files.createTempFile(dir, ".upload-", ".tmp");
+        try {
+            String hex = digestHex(picture, temp);
+            String filename = hex.substring(0, 2) + "/" + hex.substring(2, 4) + "/" + hex + suffixOf(picture.getOriginalFilename());
+            Path target = dir.resolve(filename);
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target)) {
+                // 重新上传时刷新修改时间，删除没有引用的文件时据此跳过刚上传的
+                try {
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                    return filename;
+                } catch (NoSuchFileException e) {
+                    // 刚被删除或移到隔离区，重新写入
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                try {
+                    Files.move(temp, target);
+                } catch (FileAlreadyExistsException ignored) {
+                    // 另一个相同内容的上传先完成了
+                }
+            }
+            return filename;
+        } finally {
+            Files.deleteIfExists(temp);
         }
-        String fileDirPath = ClassUtils.getDefaultClassLoader().getResource("static").getPath() + "/file/venue";
-        return "file/venue/" + savePicture(fileDirPath, picture);
     }
 
-    public static String saveUserFile(MultipartFile picture) throws Exception{
-        if (picture.isEmpty()) {
-            return "";
+    /**
+     * 把上传内容通过channel写入temp，同时计算SHA-256
+     */
+    private static String digestHex(MultipartFile picture, Path temp) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        String fileDirPath = ClassUtils.getDefaultClassLoader().getResource("static").getPath() + "/file/user";
-        return "file/user/" + savePicture(fileDirPath, picture);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (ReadableByteChannel in = Channels.newChannel(picture.getInputStream());
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.rewind();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
     }
 
-    public static String savePicture(String filePath, MultipartFile picture) throws Exception{
-        File fileDir = new File(filePath);
-        System.out.println(fileDir.mkdirs());
-
-        String filename = picture.getOriginalFilename();
-
-        System.out.println(fileDir.getAbsolutePath());
-        String suffixName = filename.substring(filename.lastIndexOf("."));
-        filename = UUID.randomUUID() + suffixName;
-        File newFile = new File(fileDir.getAbsolutePath() + File.separator + filename);
-        System.out.println(newFile.getAbsolutePath());
-        // 上传图片到 -》 “绝对路径”
-        picture.transferTo(newFile);
-        return filename;
+    /**
+     * 小写的扩展名，含点；没有扩展名或扩展名不是字母数字时返回空串
+     */
+    static String suffixOf(String filename) {
+        if (filename == null) {
+            return "";
+        }
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0 || filename.length() - dot - 1 > MAX_SUFFIX_LENGTH) {
+            return "";
+        }
+        String suffix = filename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (suffix.isEmpty() || !suffix.chars().allMatch(c -> (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9'))) {
+            return "";
+        }
+        return "." + suffix;
     }
 
 }
@@ -0,0 +1,15 @@
+package com.demo.utils;
+
+public class PageUtil {
+
+    /**
+     * 由总数计算总页数，与Page.getTotalPages一致
+     *
+     * @param total
+     * @param size
+     * @return
+     */
+    public static int totalPages(long total, int size) {
+        return (int) Math.ceil((double) total / size);
+    }
+}
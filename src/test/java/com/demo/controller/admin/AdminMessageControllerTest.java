@@ -1,6 +1,7 @@
 package com.demo.controller.admin;
 
 import com.demo.entity.Message;
+import com.demo.entity.vo.IngestStats;
 import com.demo.entity.User;
 import com.demo.entity.vo.MessageVo;
 import com.demo.service.MessageService;
@@ -21,12 +22,17 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.demo.service.MessageService.STATE_PASS;
 import static com.demo.service.MessageService.STATE_REJECT;
 import static com.demo.service.OrderService.STATE_NO_AUDIT;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 import static org.mockito.internal.verification.VerificationModeFactory.times;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -77,13 +83,14 @@ class AdminMessageControllerTest {
         Page<Message> messagePage = new PageImpl<>(messages,message_pageable,3);
 
         //given
-        when(messageService.findWaitState(message_pageable)).thenReturn(messagePage);
+        when(messageService.countWaitState()).thenReturn(messagePage.getTotalElements());
         //when&then
         mockMvc.perform(get("/message_manage"))
                 .andExpect(status().isOk())
                 .andExpect(view().name("admin/message_manage"))
                 .andExpect(model().attribute("total",messagePage.getTotalPages()));
-        verify(messageService, times(1)).findWaitState(message_pageable);
+        verify(messageService, times(1)).countWaitState();
+        verify(messageService, never()).findWaitState(any());
     }
 
     @Test
@@ -164,4 +171,50 @@ class AdminMessageControllerTest {
         verify(messageService, times(1)).delById(messageID);
 
     }
+
+    @Test
+    void messageIngestStats() throws Exception {
+        when(messageService.ingestStats()).thenReturn(new IngestStats(5, 4096, 10, 120, 0, 1, 8, 64, 900, 3000, 1200));
+
+        mockMvc.perform(get("/messageIngestStats.do"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queued").value(5))
+                .andExpect(jsonPath("$.lastBatchSize").value(8))
+                .andExpect(jsonPath("$.maxFlushMicros").value(3000));
+    }
+
+    @Test
+    void passMessages() throws Exception {
+        Map<Integer, Boolean> result = new LinkedHashMap<>();
+        result.put(1, true);
+        result.put(2, false);
+        when(messageService.confirmMessages(Arrays.asList(1, 2))).thenReturn(result);
+
+        mockMvc.perform(post("/passMessages.do")
+                        .param("messageIDs", "1", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"1\":true,\"2\":false}"));
+    }
+
+    @Test
+    void rejectMessages() throws Exception {
+        when(messageService.rejectMessages(Collections.singletonList(3))).thenReturn(Collections.singletonMap(3, true));
+
+        mockMvc.perform(post("/rejectMessages.do")
+                        .param("messageIDs", "3"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"3\":true}"));
+    }
+
+    @Test
+    void delMessages() throws Exception {
+        when(messageService.delMessages(Arrays.asList(4, 5))).thenReturn(Collections.singletonMap(4, false));
+
+        mockMvc.perform(post("/delMessages.do")
+                        .param("messageIDs", "4,5"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"4\":false}"));
+
+        verify(messageService, never()).delById(anyInt());
+    }
 }
@@ -7,6 +7,7 @@ import com.demo.entity.vo.OrderVo;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
 import com.demo.service.VenueService;
+import com.demo.service.impl.CompositePageExecutor;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,18 +15,24 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -34,6 +41,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(AdminOrderController.class)
+@Import(CompositePageExecutor.class)
 class AdminOrderControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -61,24 +69,44 @@ class AdminOrderControllerTest {
 
     @Test
     public void reservation_manage() throws Exception {
-        List<Order> orders = new ArrayList<>();
-        orders.add(order);
-        List<OrderVo> orderVos = new ArrayList<>();
-        orderVos.add(orderVo);
-        Pageable order_pageable = PageRequest.of(0, 10, Sort.by("orderTime").descending());
-        when(orderService.findAuditOrder()).thenReturn(orders);
-        when(orderVoService.returnVo(orders)).thenReturn(orderVos);
-        when(orderService.findNoAuditOrder(order_pageable)).thenReturn(new PageImpl<>(orders));
+        when(orderService.countAuditOrder()).thenReturn(11L);
+        when(orderService.countNoAuditOrder()).thenReturn(1L);
 
         mockMvc.perform(get("/reservation_manage"))
                 .andExpect(status().isOk())
                 .andExpect(view().name("admin/reservation_manage"))
-                .andExpect(model().attribute("order_list", orderVos))
+                .andExpect(model().attributeDoesNotExist("order_list"))
+                .andExpect(model().attribute("audit_total", 2))
                 .andExpect(model().attribute("total", 1));
 
-        verify(orderService, times(1)).findAuditOrder();
-        verify(orderVoService, times(1)).returnVo(anyList());
-        verify(orderService, times(1)).findNoAuditOrder(order_pageable);
+        verify(orderService, times(1)).countAuditOrder();
+        verify(orderService, times(1)).countNoAuditOrder();
+        verify(orderService, never()).findNoAuditOrder(any());
+        verifyNoInteractions(orderVoService);
+    }
+
+    @Test
+    public void getAuditOrder() throws Exception {
+        List<OrderVo> orderVos = new ArrayList<>();
+        orderVos.add(orderVo);
+        when(orderVoService.findAuditOrderVo(any(Pageable.class))).thenReturn(new SliceImpl<>(orderVos));
+
+        mockMvc.perform(get("/admin/getAuditOrderList.do").param("page", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", Matchers.is(1)))
+                .andExpect(jsonPath("$[0].orderID", Matchers.is(orderVo.getOrderID())));
+
+        verify(orderVoService, times(1)).findAuditOrderVo(argThat(pageable ->
+                pageable.getPageNumber() == 1 && pageable.getPageSize() == 10
+                        && pageable.getSort().getOrderFor("orderTime").isDescending()));
+    }
+
+    @Test
+    public void pageFanOutStats() throws Exception {
+        mockMvc.perform(get("/pageFanOutStats.do"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.batches").isNumber())
+                .andExpect(jsonPath("$.timeouts").isNumber());
     }
 
     @Test
@@ -88,19 +116,16 @@ class AdminOrderControllerTest {
         List<OrderVo> orderVos = new ArrayList<>();
         orderVos.add(orderVo);
 
-        when(orderService.findNoAuditOrder(any(Pageable.class)))
-                .thenReturn(new PageImpl<>(orders));
-
-        when(orderVoService.returnVo(anyList()))
-                .thenReturn(orderVos);
+        when(orderVoService.findNoAuditOrderVo(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(orderVos));
 
         mockMvc.perform(get("/admin/getOrderList.do").param("page", "1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()", Matchers.is(1)))
                 .andExpect(jsonPath("$[0].orderID", Matchers.is(orderVo.getOrderID())));
 
-        verify(orderService, times(1)).findNoAuditOrder(any(Pageable.class));
-        verify(orderVoService, times(1)).returnVo(anyList());
+        verify(orderVoService, times(1)).findNoAuditOrderVo(any(Pageable.class));
+        verify(orderVoService, never()).returnVo(anyList());
 
     }
 
@@ -127,4 +152,60 @@ class AdminOrderControllerTest {
                 .andExpect(content().string("true"));
         verify(orderService, times(1)).rejectOrder(orderId);
     }
+
+    @Test
+    public void publishFlashSlots() throws Exception {
+        when(orderService.publishFlashSlots(1, LocalDate.of(2030, 1, 1), LocalDate.of(2030, 1, 2))).thenReturn(22);
+
+        mockMvc.perform(post("/admin/publishFlashSlots.do")
+                        .param("venueID", "1")
+                        .param("from", "2030-01-01")
+                        .param("to", "2030-01-02"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("22"));
+    }
+
+    @Test
+    public void flashSlots() throws Exception {
+        when(orderService.findFlashSlots(1, LocalDate.of(2030, 1, 1))).thenReturn(Arrays.asList(9, 11));
+
+        mockMvc.perform(get("/admin/flashSlots.do")
+                        .param("venueID", "1")
+                        .param("date", "2030-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[9,11]"));
+    }
+
+    @Test
+    public void withdrawFlashSlots() throws Exception {
+        mockMvc.perform(post("/admin/withdrawFlashSlots.do")
+                        .param("venueID", "1"))
+                .andExpect(status().isOk());
+
+        verify(orderService).withdrawFlashSlots(1);
+    }
+
+    @Test
+    public void confirmOrders() throws Exception {
+        when(orderService.confirmOrders(Arrays.asList(1, 2, 3))).thenReturn(Arrays.asList(1, 3));
+
+        mockMvc.perform(post("/passOrders.do")
+                        .param("orderIDs", "1", "2", "3"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[1,3]"));
+
+        verify(orderService, never()).confirmOrder(anyInt());
+    }
+
+    @Test
+    public void rejectOrders() throws Exception {
+        when(orderService.rejectOrders(Arrays.asList(4, 5))).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(post("/rejectOrders.do")
+                        .param("orderIDs", "4,5"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+
+        verify(orderService, times(1)).rejectOrders(Arrays.asList(4, 5));
+    }
 }
\ No newline at end of file
@@ -1,6 +1,11 @@
 package com.demo.controller.admin;
 
 import com.demo.entity.Venue;
+import com.demo.entity.vo.CacheStats;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.entity.vo.UploadGcStats;
+import com.demo.service.FileStorage;
+import com.demo.service.UploadGcService;
 import com.demo.service.VenueService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -30,6 +35,10 @@ class AdminVenueControllerTest {
     private MockMvc mockMvc;
     @MockBean
     private VenueService venueService;
+    @MockBean
+    private FileStorage fileStorage;
+    @MockBean
+    private UploadGcService uploadGcService;
 
     Venue venue;
     @BeforeEach
@@ -116,12 +125,28 @@ class AdminVenueControllerTest {
         verify(venueService).findAll(any());
     }
 
+    @Test
+    public void getVenueListByCursor() throws Exception{
+        List<Venue> venues = new ArrayList<>();
+        venues.add(venue);
+        when(venueService.findAfter("next", 10)).thenReturn(new KeysetPage<>(venues, null));
+
+        mockMvc.perform(get("/venueListByCursor.do").param("cursor", "next"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].venueID").value(venue.getVenueID()))
+                .andExpect(jsonPath("$.next").doesNotExist());
+
+        verify(venueService).findAfter("next", 10);
+    }
+
     @Test
     void addVenue_with_picture() throws Exception {
         // given
         MockMultipartFile picture = new MockMultipartFile("picture", "test.jpg", "image/jpeg", "test image".getBytes());
 
         when(venueService.create(any(Venue.class))).thenReturn(venue.getVenueID());
+        when(fileStorage.saveVenueFile(any())).thenReturn("file/venue/ab/cd/abcd.jpg");
 
         // when & then
         mockMvc.perform(multipart("/addVenue.do")
@@ -135,7 +160,7 @@ class AdminVenueControllerTest {
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("venue_manage"));
 
-        verify(venueService, times(1)).create(any(Venue.class));
+        verify(venueService, times(1)).create(argThat(created -> "file/venue/ab/cd/abcd.jpg".equals(created.getPicture())));
     }
 
     @Test
@@ -244,5 +269,44 @@ class AdminVenueControllerTest {
 
 
     }
-}
 
+    @Test
+    public void testVenueCacheStats() throws Exception {
+        //given
+        when(venueService.cacheStats()).thenReturn(new CacheStats(9, 1, 1));
+
+        //when&then
+        mockMvc.perform(get("/venueCacheStats.do"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits").value(9))
+                .andExpect(jsonPath("$.misses").value(1))
+                .andExpect(jsonPath("$.size").value(1));
+
+        verify(venueService, times(1)).cacheStats();
+    }
+
+    @Test
+    void uploadGcStats() throws Exception {
+        when(uploadGcService.stats()).thenReturn(new UploadGcStats(100, 3, 1, 2, 4096, 0, 1, "file/venue/ab/cd/x.jpg"));
+
+        mockMvc.perform(get("/uploadGcStats.do"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.scanned").value(100))
+                .andExpect(jsonPath("$.purged").value(2))
+                .andExpect(jsonPath("$.reclaimedBytes").value(4096))
+                .andExpect(jsonPath("$.cursor").value("file/venue/ab/cd/x.jpg"));
+
+        verify(uploadGcService, times(1)).stats();
+    }
+
+    @Test
+    void collectUploads() throws Exception {
+        when(uploadGcService.collect()).thenReturn(new UploadGcStats(10, 1, 0, 0, 0, 0, 1, null));
+
+        mockMvc.perform(post("/collectUploads.do"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quarantined").value(1));
+
+        verify(uploadGcService, times(1)).collect();
+    }
+}
@@ -0,0 +1,117 @@
+package com.demo.controller.user;
+
+import com.demo.service.impl.TempFileStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FileControllerTest {
+    private TempFileStorage storage;
+
+    private MockMvc mockMvc;
+
+    private final byte[] data = "0123456789".getBytes();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = new TempFileStorage();
+        Path root = storage.getDir();
+        Files.createDirectories(root.resolve("file/venue"));
+        Files.write(root.resolve("file/venue/abc.png"), data);
+        Files.write(root.resolve("file/venue/.upload-1.tmp"), data);
+        FileController fileController = new FileController();
+        ReflectionTestUtils.setField(fileController, "fileStorage", storage);
+        mockMvc = MockMvcBuilders.standaloneSetup(fileController).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storage.close();
+    }
+
+    //Function: 返回上传的文件
+    //Scenario: 从存储的根目录读取，带长期缓存、ETag和Last-Modified
+    @Test
+    void file() throws Exception {
+        mockMvc.perform(get("/file/venue/abc.png"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, FileController.CACHE_CONTROL))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc.png\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"));
+    }
+
+    //Function: 返回上传的文件
+    //Scenario: ETag或修改时间匹配时返回304
+    @Test
+    void file_not_modified() throws Exception {
+        MvcResult first = mockMvc.perform(get("/file/venue/abc.png")).andReturn();
+        String lastModified = first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.IF_NONE_MATCH, "\"abc.png\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+    }
+
+    //Function: 返回上传的文件
+    //Scenario: Range请求返回部分内容，超出文件时返回416
+    @Test
+    void file_range() throws Exception {
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes("2345".getBytes()))
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"));
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.RANGE, "bytes=-3"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes("789".getBytes()));
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.RANGE, "bytes=2-5")
+                .header(HttpHeaders.IF_RANGE, "\"other\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/file/venue/abc.png").header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    //Function: 返回上传的文件
+    //Scenario: 文件不存在或是临时文件时返回404
+    @Test
+    void file_not_found() throws Exception {
+        mockMvc.perform(get("/file/venue/none.png")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/file/venue/.upload-1.tmp")).andExpect(status().isNotFound());
+    }
+
+    //Function: 解析Range
+    //Scenario: 单个区间、后缀区间、开放区间和格式错误
+    @Test
+    void parseRange() {
+        assertArrayEquals(new long[]{0, 10}, FileController.parseRange("bytes=0-", 10));
+        assertArrayEquals(new long[]{8, 10}, FileController.parseRange("bytes=8-100", 10));
+        assertArrayEquals(new long[]{0, 10}, FileController.parseRange("bytes=-20", 10));
+        assertArrayEquals(new long[0], FileController.parseRange("bytes=5-2", 10));
+        assertArrayEquals(new long[0], FileController.parseRange("items=0-1", 10));
+        assertNull(FileController.parseRange("bytes=10-12", 10));
+    }
+}
@@ -20,6 +20,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.web.util.NestedServletException;
 
@@ -83,34 +85,25 @@ class MessageControllerTest {
 
     @Test
     void message_list() throws Exception{
-
-        //message
-        Pageable message_pageable = PageRequest.of(0, 5, Sort.by("time").descending());
-        Page<Message> messagesPage = new PageImpl<>(messages, message_pageable, messages.size());
-        List<MessageVo> messageVos =  new ArrayList<>();
-        for(int i=0;i<3;i++){
-            messageVos.add(messageVoArray[i]);
-        }
         //user
         Map<String, Object> sessionAttrs = new HashMap<>();
         sessionAttrs.put("user", user1);
-        Pageable user_message_pageable = PageRequest.of(0,5,Sort.by("time").descending());
 
         //given
-
-        when(messageService.findPassState(any())).thenReturn(messagesPage);
-        when(messageVoService.returnVo(any())).thenReturn(messageVos);
-        when(messageService.findByUser(any(),any())).thenReturn(new PageImpl<>(messages,user_message_pageable,messages.size()));
+        when(messageService.countPassState()).thenReturn(11L);
+        when(messageService.countByUser(user1.getUserID())).thenReturn(5L);
 
         //when&then
         mockMvc.perform(get("/message_list").sessionAttrs(sessionAttrs))
                 .andExpect(status().isOk())
                 .andExpect(view().name("message_list"))
-                .andExpect(model().attribute("total", messagesPage.getTotalPages()))
-                .andExpect(model().attribute("user_total", messageService.findByUser(user1.getUserID(), user_message_pageable).getTotalPages()));
+                .andExpect(model().attribute("total", 3))
+                .andExpect(model().attribute("user_total", 1));
 
-        verify(messageService).findPassState(any(Pageable.class));
-        verify(messageVoService).returnVo(any());
+        //页面只需要总页数，不查询留言内容
+        verify(messageService).countPassState();
+        verify(messageService).countByUser(user1.getUserID());
+        verifyNoInteractions(messageVoService);
     }
 
     @Test
@@ -118,18 +111,17 @@ class MessageControllerTest {
 
         //message
         Pageable message_pageable = PageRequest.of(0, 5, Sort.by("time").descending());
-        Page<Message> messagesPage = new PageImpl<>(messages, message_pageable, messages.size());
         List<MessageVo> messageVos =  new ArrayList<>();
         for(int i=0;i<3;i++){
             messageVos.add(messageVoArray[i]);
         }
+        Page<MessageVo> messagesPage = new PageImpl<>(messageVos, message_pageable, messageVos.size());
         //user
         Map<String, Object> sessionAttrs = new HashMap<>();
         sessionAttrs.put("user", null);
         Pageable user_message_pageable = PageRequest.of(0,5,Sort.by("time").descending());
 
-        when(messageService.findPassState(any())).thenReturn(messagesPage);
-        when(messageVoService.returnVo(any())).thenReturn(messageVos);
+        when(messageVoService.findPassStateVo(any())).thenReturn(messagesPage);
         when(messageService.findByUser(any(),any())).thenReturn(new PageImpl<>(messages,user_message_pageable,messages.size()));
 
         NestedServletException thrown =
@@ -145,13 +137,12 @@ class MessageControllerTest {
         int page = 1;
         Pageable message_pageable = PageRequest.of(page-1, 5, Sort.by("time").descending());
         List<MessageVo> messageVos =  new ArrayList<>();
-        Page<Message> messages_pass_page = new PageImpl<>(messages_pass, message_pageable, messages_pass.size());
         for(int i=0;i<2;i++){
             messageVos.add(messageVoArray[i]);
         }
+        Slice<MessageVo> messages_pass_page = new SliceImpl<>(messageVos, message_pageable, false);
         //given
-        when(messageService.findPassState(any())).thenReturn(messages_pass_page);
-        when(messageVoService.returnVo(any())).thenReturn(messageVos);
+        when(messageVoService.findPassStateSlice(any())).thenReturn(messages_pass_page);
 
         //when&then
         mockMvc.perform(get("/message/getMessageList").param("page", "1"))
@@ -161,24 +152,24 @@ class MessageControllerTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$[0].messageID").value(1));
 
-        verify(messageService, times(1)).findPassState(message_pageable);
-        verify(messageVoService, times(1)).returnVo(messages_pass_page.getContent());
+        verify(messageVoService, times(1)).findPassStateSlice(message_pageable);
+        verify(messageVoService, never()).findPassStateVo(any());
+        verify(messageVoService, never()).returnVo(any());
 
     }
 
     @Test
     void user_message_list() throws Exception {
-        Page<Message> page = new PageImpl<>(messages);
         List<MessageVo> messageVos =  new ArrayList<>();
         for(int i=0;i<3;i++){
             messageVos.add(messageVoArray[i]);
         }
+        Slice<MessageVo> page = new SliceImpl<>(messageVos);
         Map<String, Object> sessionAttrs = new HashMap<>();
         sessionAttrs.put("user", user1);
 
         //given
-        when(messageService.findByUser(any(),any())).thenReturn(page);
-        when(messageVoService.returnVo(any())).thenReturn(messageVos);
+        when(messageVoService.findByUserSlice(any(),any())).thenReturn(page);
 
         //when&then
         mockMvc.perform(get("/message/findUserList")
@@ -192,8 +183,8 @@ class MessageControllerTest {
                 .andExpect(jsonPath("$[1].messageID").value(2))
                 .andExpect(jsonPath("$[1].userID").value("user1"));
 
-        verify(messageService).findByUser(eq(user1.getUserID()), any(Pageable.class));
-        verify(messageVoService).returnVo(any());
+        verify(messageVoService).findByUserSlice(eq(user1.getUserID()), any(Pageable.class));
+        verify(messageVoService, never()).returnVo(any());
     }
 
     @Test
@@ -211,8 +202,6 @@ class MessageControllerTest {
         String userID = "user1";
         String content = "send content";
 
-        when(messageService.create(any(Message.class))).thenReturn(1);
-
         //when
         mockMvc.perform(post("/sendMessage")
                         .param("userID", userID)
@@ -221,7 +210,9 @@ class MessageControllerTest {
                 .andExpect(redirectedUrl("/message_list"));
 
         //then
-        verify(messageService, times(1)).create(any(Message.class));
+        verify(messageService, times(1)).submit(argThat(message ->
+                userID.equals(message.getUserID()) && content.equals(message.getContent()) && message.getState() == 1));
+        verify(messageService, never()).create(any(Message.class));
     }
 
     @Test
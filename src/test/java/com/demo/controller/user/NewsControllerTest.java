@@ -24,6 +24,7 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.ModelAndViewAssert.assertModelAttributeAvailable;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
@@ -63,11 +64,13 @@ class NewsControllerTest {
         List<News> news1 = new ArrayList<>();
         news1.add(news);
         Pageable news_pageable = PageRequest.of(0, 5, Sort.by("time").descending());
-        when(newsService.findAll(any())).thenReturn(new PageImpl<>(news1, news_pageable, 1));
+        when(newsService.findSlice(any())).thenReturn(new SliceImpl<>(news1, news_pageable, false));
 
         ResultActions perform = mockMvc.perform(get("/news/getNewsList"));
-        perform.andExpect(status().isOk());
-        verify(newsService).findAll(any());
+        perform.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].newsID").value(id));
+        verify(newsService).findSlice(any());
+        verify(newsService, never()).findAll(any());
     }
 
     @Test
@@ -84,12 +87,12 @@ class NewsControllerTest {
 
         ResultActions perform = mockMvc.perform(get("/news_list"));
         perform.andExpect(status().isOk());
-        verify(newsService, times(2)).findAll(any());
+        verify(newsService, times(1)).findAll(any());
 
         MvcResult mvcResult = mockMvc.perform(get("/news_list")).andReturn();
         ModelAndView mv = mvcResult.getModelAndView();
         assertAll("", () -> assertModelAttributeAvailable(mv, "news_list"),
                 () -> assertModelAttributeAvailable(mv, "total"));
-        verify(newsService, times(4)).findAll(any());
+        verify(newsService, times(2)).findAll(any());
     }
 }
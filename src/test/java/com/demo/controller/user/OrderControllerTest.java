@@ -5,6 +5,7 @@ import com.demo.entity.User;
 import com.demo.entity.Venue;
 import com.demo.entity.vo.OrderVo;
 import com.demo.entity.vo.VenueOrder;
+import com.demo.service.AvailabilityService;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
 import com.demo.service.VenueService;
@@ -23,6 +24,7 @@ import org.springframework.web.util.NestedServletException;
 
 import javax.servlet.http.HttpSession;
 import javax.websocket.SessionException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -45,6 +47,8 @@ class OrderControllerTest {
     private OrderVoService orderVoService;
     @MockBean
     private VenueService venueService;
+    @MockBean
+    private AvailabilityService availabilityService;
 
     User user;
 
@@ -121,15 +125,12 @@ class OrderControllerTest {
         Map<String, Object> sessionAttrs = new HashMap<>();
         sessionAttrs.put("user", user);
 
-        Page<Order> page1 = new PageImpl<>(Collections.singletonList(order));
-        when(orderService.findUserOrder(any(), any())).thenReturn(page1);
-
         List<OrderVo> orderVos = new ArrayList<>();
         OrderVo orderVo = new OrderVo(order.getOrderID(), order.getUserID(), order.getVenueID(), venue.getVenueName(),
                 order.getState(), order.getOrderTime(), order.getStartTime(), order.getHours(), order.getTotal());
         orderVos.add(orderVo);
 
-        when(orderVoService.returnVo(any())).thenReturn(orderVos);
+        when(orderVoService.findUserOrderVo(any(), any())).thenReturn(new PageImpl<>(orderVos));
 
         int page = 1;
         Pageable pageable = PageRequest.of(page - 1, 5, Sort.by("orderTime").descending());
@@ -143,8 +144,8 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$[0].orderID", Matchers.is(order.getOrderID())));
 
 
-        verify(orderService).findUserOrder(user.getUserID(), pageable);
-        verify(orderVoService).returnVo(page1.getContent());
+        verify(orderVoService).findUserOrderVo(user.getUserID(), pageable);
+        verify(orderVoService, never()).returnVo(any());
     }
 
     @Test
@@ -319,4 +320,25 @@ class OrderControllerTest {
         verify(venueService).findByVenueName("venue");
         verify(orderService).findDateOrder(venue.getVenueID(),ldt,ldt2);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetVenueSlot() throws Exception {
+        // given
+        LocalDate day = LocalDate.of(2023, 4, 14);
+        when(venueService.findByVenueName("venue")).thenReturn(venue);
+        when(availabilityService.findOccupiedHours(venue.getVenueID(), day)).thenReturn(Arrays.asList(9, 10));
+        when(availabilityService.findFreeHours(venue.getVenueID(), day)).thenReturn(Arrays.asList(8, 11));
+
+        // when and then
+        mockMvc.perform(get("/order/getVenueSlot.do")
+                        .param("venueName", "venue")
+                        .param("date", "2023-04-14"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.venue.venueID", Matchers.is(1)))
+                .andExpect(jsonPath("$.occupied", Matchers.contains(9, 10)))
+                .andExpect(jsonPath("$.free", Matchers.contains(8, 11)));
+
+        verify(availabilityService).findOccupiedHours(venue.getVenueID(), day);
+        verify(orderService, never()).findDateOrder(anyInt(), any(), any());
+    }
+}
@@ -66,7 +66,7 @@ class VenueControllerTest {
         List<Venue> venueList = Arrays.asList(venue1, venue2);
         Pageable pageable = PageRequest.of(page - 1, 5, Sort.by("venueID").ascending());
 
-        when(venueService.findAll(any())).thenReturn(new PageImpl<>(venueList, pageable, 2));
+        when(venueService.findSlice(any())).thenReturn(new SliceImpl<>(venueList, pageable, false));
 
         mockMvc.perform(get("/venuelist/getVenueList").param("page", String.valueOf(page)))
                 .andExpect(status().isOk())
@@ -76,7 +76,8 @@ class VenueControllerTest {
                 .andExpect(jsonPath("$.content[1].venueID", is(2)))
                 .andExpect(jsonPath("$.content[1].venueName", is("venue")));
 
-        verify(venueService, times(1)).findAll(pageable);
+        verify(venueService, times(1)).findSlice(pageable);
+        verify(venueService, never()).findAll(any(Pageable.class));
     }
 
     @Test
@@ -94,6 +95,6 @@ class VenueControllerTest {
                 .andExpect(model().attribute("venue_list", hasSize(2)))
                 .andExpect(model().attribute("total", venueService.findAll(venuePageable).getTotalPages()));
 
-        verify(venueService, times(3)).findAll(venuePageable);
+        verify(venueService, times(2)).findAll(venuePageable);
     }
 }
@@ -0,0 +1,135 @@
+package com.demo.service.impl;
+
+import com.demo.dao.OrderDao;
+import com.demo.entity.Order;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.demo.service.OrderService.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityServiceImplTest {
+
+    @Mock
+    private OrderDao orderDao;
+
+    @InjectMocks
+    private AvailabilityServiceImpl availabilityService;
+
+    LocalDate day = LocalDate.now().plusDays(2);
+
+    @BeforeEach
+    void setUp() {
+        when(orderDao.findByStartTimeGreaterThanEqualAndStateNot(any(), eq(STATE_REJECT))).thenReturn(Arrays.asList(
+                new Order(1, "user", 1, STATE_NO_AUDIT, LocalDateTime.now(), day.atTime(9, 0), 2, 200),
+                new Order(2, "user", 1, STATE_WAIT, LocalDateTime.now(), day.atTime(14, 0), 1, 100),
+                new Order(3, "user", 2, STATE_WAIT, LocalDateTime.now(), day.atTime(9, 0), 1, 100)));
+        availabilityService.rebuild();
+    }
+
+    //Function: 查看场馆某天已占用的时段
+    //Scenario: 启动时从数据库重建，之后不再访问数据库
+    @Test
+    void findOccupiedHours_after_rebuild() {
+        assertEquals(Arrays.asList(9, 10, 14), availabilityService.findOccupiedHours(1, day));
+        assertEquals(Collections.singletonList(9), availabilityService.findOccupiedHours(2, day));
+        assertTrue(availabilityService.findOccupiedHours(3, day).isEmpty());
+        verify(orderDao, times(1)).findByStartTimeGreaterThanEqualAndStateNot(any(), anyInt());
+        verifyNoMoreInteractions(orderDao);
+    }
+
+    //Function: 查看场馆某天空闲的时段
+    //Scenario: 空闲时段与占用时段互补
+    @Test
+    void findFreeHours() {
+        List<Integer> free = availabilityService.findFreeHours(1, day);
+        assertEquals(21, free.size());
+        assertFalse(free.contains(9));
+        assertFalse(free.contains(10));
+        assertTrue(free.contains(11));
+    }
+
+    //Function: 登记订单占用
+    //Scenario: 新订单、修改订单时间、跨天订单
+    @Test
+    void occupy() {
+        availabilityService.occupy(new Order(4, "user", 1, STATE_NO_AUDIT, LocalDateTime.now(), day.atTime(18, 0), 1, 100));
+        assertEquals(Arrays.asList(9, 10, 14, 18), availabilityService.findOccupiedHours(1, day));
+
+        availabilityService.occupy(new Order(4, "user", 1, STATE_NO_AUDIT, LocalDateTime.now(), day.atTime(23, 0), 2, 200));
+        assertEquals(Arrays.asList(9, 10, 14, 23), availabilityService.findOccupiedHours(1, day));
+        assertEquals(Collections.singletonList(0), availabilityService.findOccupiedHours(1, day.plusDays(1)));
+    }
+
+    //Function: 释放订单占用
+    //Scenario: 同一时段有多个订单时，只释放其中一个仍为占用
+    @Test
+    void release_overlap() {
+        availabilityService.occupy(new Order(5, "user", 1, STATE_NO_AUDIT, LocalDateTime.now(), day.atTime(10, 0), 1, 100));
+        availabilityService.release(1);
+        assertEquals(Arrays.asList(10, 14), availabilityService.findOccupiedHours(1, day));
+
+        availabilityService.release(5);
+        availabilityService.release(2);
+        assertTrue(availabilityService.findOccupiedHours(1, day).isEmpty());
+    }
+
+    //Function: 登记订单占用
+    //Scenario: 已拒绝的订单不占用时段
+    @Test
+    void occupy_rejected() {
+        availabilityService.occupy(new Order(1, "user", 1, STATE_REJECT, LocalDateTime.now(), day.atTime(9, 0), 2, 200));
+        assertEquals(Collections.singletonList(14), availabilityService.findOccupiedHours(1, day));
+    }
+
+    //Function: 查看场馆某天已占用的时段
+    //Scenario: 日期早于索引范围时查询数据库
+    @Test
+    void findOccupiedHours_before_horizon() {
+        LocalDate past = LocalDate.now().minusDays(10);
+        when(orderDao.findByVenueIDAndStartTimeIsBetween(eq(1), any(), any())).thenReturn(Arrays.asList(
+                new Order(6, "user", 1, STATE_FINISH, LocalDateTime.now(), past.atTime(8, 0), 1, 100),
+                new Order(7, "user", 1, STATE_REJECT, LocalDateTime.now(), past.atTime(12, 0), 1, 100)));
+
+        assertEquals(Collections.singletonList(8), availabilityService.findOccupiedHours(1, past));
+    }
+
+    //Function: 丢弃过去的日期
+    //Scenario: horizon之前的位图和已结束的订单被删除，之后查询数据库；跨过horizon的订单保留并能释放
+    @Test
+    void evictBefore() {
+        availabilityService.occupy(new Order(4, "user", 1, STATE_NO_AUDIT, LocalDateTime.now(), day.atTime(23, 0), 2, 200));
+        when(orderDao.findByVenueIDAndStartTimeIsBetween(eq(1), any(), any())).thenReturn(Collections.emptyList());
+
+        availabilityService.evictBefore(day.plusDays(1));
+
+        Map<?, ?> venues = (Map<?, ?>) ReflectionTestUtils.getField(availabilityService, "venues");
+        Map<?, ?> bookings = (Map<?, ?>) ReflectionTestUtils.getField(availabilityService, "bookings");
+        assertEquals(Collections.singleton(1), venues.keySet());
+        assertEquals(Collections.singleton(4), bookings.keySet());
+        assertTrue(availabilityService.findOccupiedHours(1, day).isEmpty());
+        assertEquals(Collections.singletonList(0), availabilityService.findOccupiedHours(1, day.plusDays(1)));
+        verify(orderDao, times(1)).findByVenueIDAndStartTimeIsBetween(eq(1), any(), any());
+
+        availabilityService.release(4);
+        assertTrue(((Map<?, ?>) venues.get(1)).isEmpty());
+        assertTrue(bookings.isEmpty());
+    }
+}
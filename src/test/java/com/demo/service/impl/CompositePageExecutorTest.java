@@ -0,0 +1,163 @@
+package com.demo.service.impl;
+
+import com.demo.entity.vo.FanOutStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompositePageExecutorTest {
+
+    private final CompositePageExecutor pageExecutor = new CompositePageExecutor();
+
+    @AfterEach
+    void tearDown() {
+        pageExecutor.shutdown();
+    }
+
+    //Function: 并行执行页面查询
+    //Scenario: 所有查询成功，结果按名称返回
+    @Test
+    void join_ok() {
+        CompositePageExecutor.Batch batch = pageExecutor.batch();
+        CompositePageExecutor.Part<String> part = batch.fork(() -> "part");
+        Map<String, Object> result = batch.attribute("total", () -> 3)
+                .attribute("name", () -> "venue")
+                .join();
+
+        assertEquals(3, result.get("total"));
+        assertEquals("venue", result.get("name"));
+        assertEquals(2, result.size());
+        assertEquals("part", part.get());
+    }
+
+    //Function: 并行执行页面查询
+    //Scenario: 三个查询同时阻塞，只有并发执行才能全部完成
+    @Test
+    void join_concurrent() {
+        CountDownLatch latch = new CountDownLatch(3);
+        CompositePageExecutor.Batch batch = pageExecutor.batch();
+        for (int i = 0; i < 3; i++) {
+            batch.fork(() -> {
+                latch.countDown();
+                return latch.await(2, TimeUnit.SECONDS);
+            });
+        }
+        batch.join();
+
+        assertEquals(0, latch.getCount());
+    }
+
+    //Function: 并行执行页面查询
+    //Scenario: 查询失败时抛出原异常，并取消其余查询
+    @Test
+    void join_failed() {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        CompositePageExecutor.Batch batch = pageExecutor.batch();
+        batch.fork(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return null;
+        });
+        batch.fork(() -> {
+            started.await();
+            throw new IllegalArgumentException("bad query");
+        });
+
+        IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, batch::join);
+        assertEquals("bad query", thrown.getMessage());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!interrupted.get() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertTrue(interrupted.get());
+        assertEquals(1, pageExecutor.stats().getFailures());
+    }
+
+    //Function: 并行执行页面查询
+    //Scenario: 超过单次请求的时限时抛出异常并计数
+    @Test
+    void join_timeout() {
+        CompositePageExecutor.Batch batch = pageExecutor.batch(50);
+        batch.fork(() -> {
+            Thread.sleep(5000);
+            return null;
+        });
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, batch::join);
+        assertEquals("页面加载超时", thrown.getMessage());
+        assertEquals(1, pageExecutor.stats().getTimeouts());
+    }
+
+    //Function: 并行执行页面查询
+    //Scenario: 线程池和队列都满时由调用线程执行，不拒绝请求
+    @Test
+    void join_caller_runs() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CompositePageExecutor.Batch blockers = pageExecutor.batch();
+        for (int i = 0; i < 8 + 64; i++) {
+            blockers.fork(() -> release.await(5, TimeUnit.SECONDS));
+        }
+
+        Thread caller = Thread.currentThread();
+        CompositePageExecutor.Batch batch = pageExecutor.batch();
+        CompositePageExecutor.Part<Boolean> part = batch.fork(() -> Thread.currentThread() == caller);
+        batch.join();
+        release.countDown();
+        blockers.join();
+
+        assertTrue(part.get());
+        FanOutStats stats = pageExecutor.stats();
+        assertEquals(1, stats.getCallerRuns());
+        assertEquals(2, stats.getBatches());
+        assertEquals(8 + 64 + 1, stats.getTasks());
+    }
+
+    //Function: 并行执行页面查询
+    //Scenario: 关闭后提交的查询由调用线程执行，不等到超时
+    @Test
+    void join_after_shutdown() {
+        pageExecutor.shutdown();
+        Thread caller = Thread.currentThread();
+        CompositePageExecutor.Batch batch = pageExecutor.batch();
+        CompositePageExecutor.Part<Boolean> part = batch.fork(() -> Thread.currentThread() == caller);
+
+        long begin = System.nanoTime();
+        batch.join();
+
+        assertTrue(part.get());
+        assertTrue(System.nanoTime() - begin < TimeUnit.MILLISECONDS.toNanos(CompositePageExecutor.TIMEOUT_MILLIS));
+        assertEquals(1, pageExecutor.stats().getCallerRuns());
+    }
+
+    //Function: 并行执行页面查询
+    //Scenario: 关闭时还在队列里的查询被取消，join立即失败
+    @Test
+    void join_queued_at_shutdown() {
+        CountDownLatch release = new CountDownLatch(1);
+        CompositePageExecutor.Batch blockers = pageExecutor.batch();
+        for (int i = 0; i < 8; i++) {
+            blockers.fork(() -> release.await(5, TimeUnit.SECONDS));
+        }
+        CompositePageExecutor.Batch batch = pageExecutor.batch();
+        batch.fork(() -> "queued");
+
+        pageExecutor.shutdown();
+        long begin = System.nanoTime();
+        RuntimeException thrown = assertThrows(RuntimeException.class, batch::join);
+
+        assertEquals("服务正在关闭", thrown.getMessage());
+        assertTrue(System.nanoTime() - begin < TimeUnit.MILLISECONDS.toNanos(CompositePageExecutor.TIMEOUT_MILLIS));
+        release.countDown();
+    }
+}
@@ -0,0 +1,119 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.demo.service.impl.ExistenceFilter.Kind.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExistenceFilterTest {
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private VenueDao venueDao;
+
+    @InjectMocks
+    private ExistenceFilter existenceFilter;
+
+    //Function: 检查是否可能存在
+    //Scenario: 加载前都按可能存在处理
+    @Test
+    void not_loaded() {
+        assertTrue(existenceFilter.mightContain(USER_ID, "anyone"));
+        assertTrue(existenceFilter.mightContain(VENUE_NAME, "anywhere"));
+    }
+
+    //Function: 从数据库加载
+    //Scenario: 已有的名字可能存在，没有的一定不存在，null交给数据库判断
+    @Test
+    void rebuild_load() {
+        when(userDao.count()).thenReturn(2L);
+        when(userDao.findAllUserID()).thenReturn(Arrays.asList("test", "admin"));
+        when(venueDao.count()).thenReturn(1L);
+        when(venueDao.findAllVenueName()).thenReturn(Arrays.asList("场馆1", null));
+
+        existenceFilter.rebuild();
+
+        assertTrue(existenceFilter.mightContain(USER_ID, "test"));
+        assertTrue(existenceFilter.mightContain(USER_ID, "admin"));
+        assertFalse(existenceFilter.mightContain(USER_ID, "newUser"));
+        assertTrue(existenceFilter.mightContain(VENUE_NAME, "场馆1"));
+        assertFalse(existenceFilter.mightContain(VENUE_NAME, "test"));
+        assertTrue(existenceFilter.mightContain(USER_ID, null));
+    }
+
+    //Function: 加入名字
+    //Scenario: 加入后可能存在，只影响对应类型
+    @Test
+    void add() {
+        when(userDao.findAllUserID()).thenReturn(Collections.emptyList());
+        when(venueDao.findAllVenueName()).thenReturn(Collections.emptyList());
+        existenceFilter.rebuild();
+
+        existenceFilter.add(USER_ID, "newUser");
+
+        assertTrue(existenceFilter.mightContain(USER_ID, "newUser"));
+        assertFalse(existenceFilter.mightContain(VENUE_NAME, "newUser"));
+    }
+
+    //Function: 重建
+    //Scenario: 重建期间加入的名字不会丢失，删掉的名字重建后不再存在
+    @Test
+    void rebuild_concurrent_add() {
+        when(userDao.findAllUserID()).thenReturn(Arrays.asList("test", "deleted"));
+        existenceFilter.rebuild(USER_ID);
+
+        when(userDao.findAllUserID()).thenAnswer(invocation -> {
+            existenceFilter.add(USER_ID, "during");
+            return Collections.singletonList("test");
+        });
+        existenceFilter.rebuild(USER_ID);
+
+        assertTrue(existenceFilter.mightContain(USER_ID, "test"));
+        assertTrue(existenceFilter.mightContain(USER_ID, "during"));
+        assertFalse(existenceFilter.mightContain(USER_ID, "deleted"));
+    }
+
+    //Function: 定时重建
+    //Scenario: 数据库异常时保留旧的过滤器
+    @Test
+    void scheduled_rebuild_failed() {
+        when(userDao.findAllUserID()).thenReturn(Collections.singletonList("test"));
+        when(venueDao.findAllVenueName()).thenReturn(Collections.emptyList());
+        existenceFilter.rebuild();
+
+        when(userDao.findAllUserID()).thenThrow(new RuntimeException("db down"));
+        existenceFilter.scheduledRebuild();
+
+        assertTrue(existenceFilter.mightContain(USER_ID, "test"));
+        assertFalse(existenceFilter.mightContain(USER_ID, "other"));
+    }
+
+    //Function: 检查是否可能存在
+    //Scenario: 和数据库的排序规则一致，大小写、重音和末尾空格不同的名字也可能存在
+    @Test
+    void mightContain_collation() {
+        when(userDao.findAllUserID()).thenReturn(Collections.singletonList("Alice"));
+        when(venueDao.findAllVenueName()).thenReturn(Collections.singletonList("Café "));
+        existenceFilter.rebuild();
+        existenceFilter.add(USER_ID, "BOB");
+
+        assertTrue(existenceFilter.mightContain(USER_ID, "alice"));
+        assertTrue(existenceFilter.mightContain(USER_ID, "ALICE  "));
+        assertTrue(existenceFilter.mightContain(USER_ID, "bob"));
+        assertTrue(existenceFilter.mightContain(VENUE_NAME, "cafe"));
+        assertFalse(existenceFilter.mightContain(USER_ID, " alice"));
+    }
+}
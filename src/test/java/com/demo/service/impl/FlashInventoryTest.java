@@ -0,0 +1,176 @@
+package com.demo.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlashInventoryTest {
+
+    static final int VENUE = 7;
+    static final LocalDate DAY = LocalDate.of(2030, 1, 1);
+
+    /**
+     * 9点到18点
+     */
+    static final int OPEN_HOURS = (1 << 18) - (1 << 9);
+
+    FlashInventory flashInventory;
+
+    @BeforeEach
+    void setUp() {
+        flashInventory = new FlashInventory();
+    }
+
+    //Function: 发布库存
+    //Scenario: 发布时已被预约的小时不计入可抢订的时段
+    @Test
+    void publish() {
+        int count = flashInventory.publish(VENUE, DAY, OPEN_HOURS, 1 << 10);
+
+        assertEquals(8, count);
+        assertTrue(flashInventory.isPublished(VENUE));
+        assertFalse(flashInventory.remainingHours(VENUE, DAY).contains(10));
+        assertEquals(Arrays.asList(9, 11, 12, 13, 14, 15, 16, 17), flashInventory.remainingHours(VENUE, DAY));
+    }
+
+    //Function: 抢占时段
+    //Scenario: 没有发布的场馆或日期返回null，走普通流程
+    @Test
+    void claim_not_published() {
+        assertNull(flashInventory.claim(VENUE, DAY.atTime(10, 0), 1));
+        flashInventory.publish(VENUE, DAY, OPEN_HOURS, 0);
+        assertNull(flashInventory.claim(VENUE, DAY.plusDays(1).atTime(10, 0), 1));
+        assertNull(flashInventory.claim(VENUE + 1, DAY.atTime(10, 0), 1));
+    }
+
+    //Function: 抢占时段
+    //Scenario: 多个小时一起抢占，有一个小时已被占用时整单失败且不占用其余小时
+    @Test
+    void claim_multi_hour() {
+        flashInventory.publish(VENUE, DAY, OPEN_HOURS, 0);
+        assertNotNull(flashInventory.claim(VENUE, DAY.atTime(12, 0), 1));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> flashInventory.claim(VENUE, DAY.atTime(10, 0), 3));
+
+        assertEquals("该时段已被预约", e.getMessage());
+        assertTrue(flashInventory.remainingHours(VENUE, DAY).containsAll(Arrays.asList(10, 11)));
+        assertNotNull(flashInventory.claim(VENUE, DAY.atTime(10, 0), 2));
+        assertFalse(flashInventory.remainingHours(VENUE, DAY).contains(11));
+    }
+
+    //Function: 抢占时段
+    //Scenario: 不在营业时间内的小时不能抢订
+    @Test
+    void claim_not_open() {
+        flashInventory.publish(VENUE, DAY, OPEN_HOURS, 0);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> flashInventory.claim(VENUE, DAY.atTime(17, 0), 2));
+
+        assertEquals("该时段未开放预约", e.getMessage());
+        assertTrue(flashInventory.remainingHours(VENUE, DAY).contains(17));
+    }
+
+    //Function: 退回时段
+    //Scenario: 退回后可以再次抢占
+    @Test
+    void release() {
+        flashInventory.publish(VENUE, DAY, OPEN_HOURS, 0);
+        FlashInventory.Claim claim = flashInventory.claim(VENUE, DAY.atTime(9, 0), 2);
+
+        claim.release();
+
+        assertEquals(9, flashInventory.remainingHours(VENUE, DAY).size());
+        assertNotNull(flashInventory.claim(VENUE, DAY.atTime(9, 0), 2));
+    }
+
+    //Function: 抢占时段
+    //Scenario: 跨天的订单后一天抢占失败时退回前一天已占的小时
+    @Test
+    void claim_cross_day() {
+        flashInventory.publish(VENUE, DAY, -1, 0);
+        flashInventory.publish(VENUE, DAY.plusDays(1), -1, 1);
+
+        assertThrows(RuntimeException.class, () -> flashInventory.claim(VENUE, DAY.atTime(23, 0), 2));
+
+        assertTrue(flashInventory.remainingHours(VENUE, DAY).contains(23));
+    }
+
+    //Function: 撤回库存
+    //Scenario: 撤回后下单走普通流程
+    @Test
+    void withdraw() {
+        flashInventory.publish(VENUE, DAY, OPEN_HOURS, 0);
+
+        flashInventory.withdraw(VENUE);
+
+        assertFalse(flashInventory.isPublished(VENUE));
+        assertNull(flashInventory.claim(VENUE, DAY.atTime(10, 0), 1));
+        assertEquals(Collections.emptyList(), flashInventory.remainingHours(VENUE, DAY));
+    }
+
+    //Function: 抢占时段
+    //Scenario: 大量用户同时抢订，每个发布的小时恰好被一个人抢到
+    @Test
+    void claim_concurrent() throws Exception {
+        flashInventory.publish(VENUE, DAY, OPEN_HOURS, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger[] owners = new AtomicInteger[24];
+        for (int h = 0; h < owners.length; h++) {
+            owners[h] = new AtomicInteger();
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int hour = 9 + i % 9;
+            int hours = 1 + i % 2;
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    flashInventory.claim(VENUE, DAY.atTime(hour, 0), hours);
+                    for (int h = hour; h < hour + hours; h++) {
+                        owners[h].incrementAndGet();
+                    }
+                } catch (RuntimeException ignored) {
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        for (int h = 0; h < owners.length; h++) {
+            assertEquals((OPEN_HOURS & (1 << h)) != 0 ? 1 : 0, owners[h].get(), "hour " + h);
+        }
+        assertTrue(flashInventory.remainingHours(VENUE, DAY).isEmpty());
+    }
+
+    //Function: 退回时段
+    //Scenario: 只退回订单占用的已发布小时，没有发布的场馆不受影响
+    @Test
+    void release_order() {
+        flashInventory.publish(VENUE, DAY, OPEN_HOURS, 0);
+        flashInventory.claim(VENUE, DAY.atTime(10, 0), 3);
+
+        flashInventory.release(VENUE, DAY.atTime(11, 0), 1);
+        flashInventory.release(VENUE + 1, DAY.atTime(10, 0), 1);
+
+        assertEquals(Arrays.asList(9, 11, 13, 14, 15, 16, 17), flashInventory.remainingHours(VENUE, DAY));
+        assertTrue(flashInventory.isPublished());
+    }
+}
@@ -0,0 +1,118 @@
+package com.demo.service.impl;
+
+import com.demo.dao.NewsDao;
+import com.demo.dao.VenueDao;
+import com.demo.entity.News;
+import com.demo.entity.Venue;
+import com.demo.entity.vo.HomeSnapshot;
+import com.demo.entity.vo.MessageVo;
+import com.demo.service.MessageVoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static com.demo.service.MessageService.STATE_PASS;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HomeServiceImplTest {
+
+    @Mock
+    private VenueDao venueDao;
+
+    @Mock
+    private NewsDao newsDao;
+
+    @Mock
+    private MessageVoService messageVoService;
+
+    @Spy
+    private CompositePageExecutor pageExecutor = new CompositePageExecutor();
+
+    @Mock
+    private Thumbnailer thumbnailer;
+
+    @InjectMocks
+    private HomeServiceImpl homeService;
+
+    Venue venue;
+    News news;
+    MessageVo messageVo;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime time = LocalDateTime.of(2023, 4, 13, 10, 0);
+        venue = new Venue(1, "venue", "good", 100, "picture", "address", "9:00", "20:00");
+        news = new News(1, "title", "content", time);
+        messageVo = new MessageVo(1, "user", "content", time, "name", "picture", STATE_PASS);
+        when(venueDao.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(Collections.singletonList(venue)));
+        when(newsDao.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(Collections.singletonList(news)));
+        when(messageVoService.findPassStateVo(any(Pageable.class))).thenReturn(new PageImpl<>(Collections.singletonList(messageVo)));
+        lenient().when(thumbnailer.forCard(any(Venue.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        homeService.shutdown();
+        pageExecutor.shutdown();
+    }
+
+    //Function: 返回首页快照
+    //Scenario: 首次调用时生成，之后不再访问数据库
+    @Test
+    void getSnapshot() {
+        HomeSnapshot first = homeService.getSnapshot();
+        HomeSnapshot second = homeService.getSnapshot();
+
+        assertSame(first, second);
+        assertEquals(Collections.singletonList(venue), first.getVenues());
+        assertEquals(Collections.singletonList(news), first.getNews());
+        assertEquals(Collections.singletonList(messageVo), first.getMessages());
+        verify(venueDao, times(1)).findAll(any(Pageable.class));
+        verify(newsDao, times(1)).findAll(any(Pageable.class));
+        verify(messageVoService, times(1)).findPassStateVo(any(Pageable.class));
+    }
+
+    //Function: 数据修改后重建快照
+    //Scenario: 后台线程重建后首页读到新内容
+    @Test
+    void refresh() {
+        HomeSnapshot old = homeService.getSnapshot();
+        News latest = new News(2, "latest", "content", LocalDateTime.now());
+        when(newsDao.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(Collections.singletonList(latest)));
+
+        homeService.refresh();
+
+        verify(newsDao, timeout(5000).times(2)).findAll(any(Pageable.class));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (homeService.getSnapshot() == old && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertEquals(Collections.singletonList(latest), homeService.getSnapshot().getNews());
+    }
+
+    //Function: 数据修改后重建快照
+    //Scenario: 重建失败时保留原快照
+    @Test
+    void refresh_failed() {
+        HomeSnapshot old = homeService.getSnapshot();
+        when(newsDao.findAll(any(Pageable.class))).thenThrow(new RuntimeException("db down"));
+
+        homeService.refresh();
+
+        verify(newsDao, timeout(5000).times(2)).findAll(any(Pageable.class));
+        assertSame(old, homeService.getSnapshot());
+    }
+}
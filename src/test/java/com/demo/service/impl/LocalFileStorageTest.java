@@ -0,0 +1,266 @@
+package com.demo.service.impl;
+
+import com.demo.entity.vo.StoredFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFileStorageTest {
+
+    private TempFileStorage storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = new TempFileStorage();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storage.close();
+    }
+
+    private static MockMultipartFile picture(String name, String content) {
+        return new MockMultipartFile("picture", name, "image/jpeg", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Path> files() throws Exception {
+        try (Stream<Path> files = Files.walk(storage.getDir())) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    //Function: 保存图片
+    //Scenario: 按摘要分到两级子目录，url可以找回文件
+    @Test
+    void save_sharded() throws Exception {
+        String url = storage.saveVenueFile(picture("a.JPG", "abc"));
+
+        assertEquals("file/venue/ba/78/ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad.jpg", url);
+        Path file = storage.resolve(url);
+        assertEquals(storage.getDir().resolve(url), file);
+        assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file));
+        assertTrue(storage.saveUserFile(picture("b.png", "abc")).startsWith("file/user/ba/78/"));
+        assertEquals("", storage.saveUserFile(picture("", "")));
+    }
+
+    //Function: 保存图片
+    //Scenario: 多个线程同时上传，相同内容只留一个完整的文件，不留下临时文件
+    @Test
+    void save_concurrent() throws Exception {
+        int writers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            large.append(i);
+        }
+        for (int i = 0; i < writers; i++) {
+            String content = i % 2 == 0 ? large.toString() : "small" + (i % 4);
+            futures.add(pool.submit(() -> {
+                start.await();
+                return storage.saveVenueFile(picture("a.jpg", content));
+            }));
+        }
+        start.countDown();
+        Set<String> urls = new HashSet<>();
+        for (Future<String> future : futures) {
+            urls.add(future.get(10, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(3, urls.size());
+        assertEquals(3, files().size());
+        for (String url : urls) {
+            assertTrue(Files.isRegularFile(storage.resolve(url)));
+        }
+    }
+
+    //Function: 解析url
+    //Scenario: 不是上传文件或含有..时返回null
+    @Test
+    void resolve_invalid() {
+        assertNull(storage.resolve(null));
+        assertNull(storage.resolve("venue.jpg"));
+        assertNull(storage.resolve("file/../application.yml"));
+        assertNull(storage.resolve("file/venue\\..\\x"));
+    }
+
+    //Function: 解析url
+    //Scenario: 根目录下没有时到旧目录里找
+    @Test
+    void resolve_legacy(@TempDir Path legacy) throws Exception {
+        Files.createDirectories(legacy.resolve("file/venue"));
+        Files.write(legacy.resolve("file/venue/old.jpg"), new byte[]{1});
+        LocalFileStorage withLegacy = new LocalFileStorage(storage.getDir(), legacy);
+
+        assertEquals(legacy.resolve("file/venue/old.jpg"), withLegacy.resolve("file/venue/old.jpg"));
+        assertEquals(storage.getDir().resolve("file/venue/none.jpg"), withLegacy.resolve("file/venue/none.jpg"));
+    }
+
+    //Function: 列出文件
+    //Scenario: 按url顺序分批列出，跳过临时文件，从上一批的最后一个之后继续
+    @Test
+    void list() throws Exception {
+        Path root = storage.getDir();
+        for (String url : new String[]{"file/venue/ab/cd/2.jpg", "file/venue/ab/cd/1.jpg", "file/user/ff/00/3.png",
+                "file/venue/ab/ce/4.jpg", "file/venue/ab/cd/.upload-1.tmp"}) {
+            Files.createDirectories(root.resolve(url).getParent());
+            Files.write(root.resolve(url), new byte[1]);
+        }
+
+        List<String> first = storage.list(null, 2);
+        List<String> second = storage.list(first.get(1), 2);
+        List<String> third = storage.list(second.get(1), 2);
+
+        assertEquals(Arrays.asList("file/user/ff/00/3.png", "file/venue/ab/cd/1.jpg"), first);
+        assertEquals(Arrays.asList("file/venue/ab/cd/2.jpg", "file/venue/ab/ce/4.jpg"), second);
+        assertTrue(third.isEmpty());
+    }
+
+    //Function: 隔离和恢复
+    //Scenario: 隔离后不能访问也不再列出，恢复后回到原处；刚修改过的不隔离
+    @Test
+    void quarantine_restore() throws Exception {
+        String url = storage.saveVenueFile(picture("a.jpg", "abc"));
+
+        assertEquals(-1, storage.quarantine(url, 60000));
+        assertEquals(3, storage.quarantine(url, 0));
+        assertFalse(Files.exists(storage.resolve(url)));
+        assertTrue(storage.list(null, 10).isEmpty());
+        assertEquals(Collections.singletonList(url), storage.listQuarantined(0, 10));
+        assertTrue(storage.listQuarantined(60000, 10).isEmpty());
+
+        assertTrue(storage.restore(url));
+        assertTrue(Files.exists(storage.resolve(url)));
+        assertTrue(storage.listQuarantined(0, 10).isEmpty());
+        assertFalse(storage.restore(url));
+    }
+
+    //Function: 删除隔离的文件
+    //Scenario: 返回释放的字节数，不在隔离区的返回-1
+    @Test
+    void purge() throws Exception {
+        String url = storage.saveVenueFile(picture("a.jpg", "abcd"));
+        storage.quarantine(url, 0);
+
+        assertEquals(4, storage.purge(url));
+        assertEquals(-1, storage.purge(url));
+        assertTrue(storage.listQuarantined(0, 10).isEmpty());
+    }
+
+    //Function: 删除图片
+    //Scenario: 修改时间在保护期内的不删除
+    @Test
+    void delete() throws Exception {
+        String url = storage.saveVenueFile(picture("a.jpg", "abc"));
+
+        assertFalse(storage.delete(url, 60000));
+        Files.setLastModifiedTime(storage.resolve(url), FileTime.fromMillis(System.currentTimeMillis() - 120000));
+        assertTrue(storage.delete(url, 60000));
+        assertFalse(Files.exists(storage.resolve(url)));
+        assertFalse(storage.delete("file/venue/none.jpg", 0));
+    }
+
+    //Function: 删除图片
+    //Scenario: 删除的同时上传相同内容，上传返回的url总能找到文件
+    @Test
+    void delete_concurrent_upload() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 200; i++) {
+                String url = storage.saveVenueFile(picture("a.jpg", "abc"));
+                Files.setLastModifiedTime(storage.resolve(url), FileTime.fromMillis(System.currentTimeMillis() - 120000));
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Boolean> deleted = pool.submit(() -> {
+                    start.await();
+                    return storage.delete(url, 60000);
+                });
+                Future<String> uploaded = pool.submit(() -> {
+                    start.await();
+                    return storage.saveVenueFile(picture("a.jpg", "abc"));
+                });
+                start.countDown();
+                deleted.get(10, TimeUnit.SECONDS);
+
+                assertTrue(Files.isRegularFile(storage.resolve(uploaded.get(10, TimeUnit.SECONDS))), "round " + i);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, files().size());
+    }
+
+    //Function: 读取文件
+    //Scenario: 属性、整个读取和按区间写出都按url找文件，不存在、临时文件和非法url返回null
+    @Test
+    void read() throws Exception {
+        String url = storage.saveVenueFile(picture("a.jpg", "0123456789"));
+        Files.write(storage.resolve(url).resolveSibling(".upload-1.tmp"), new byte[1]);
+
+        StoredFile file = storage.stat(url);
+        assertEquals(url.substring(url.lastIndexOf('/') + 1), file.getName());
+        assertEquals(10, file.getSize());
+        assertEquals(storage.resolve(url).toAbsolutePath().toString(), file.getLocalPath());
+        try (InputStream in = storage.open(url)) {
+            assertEquals("0123456789", new String(StreamUtils.copyToByteArray(in), StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        storage.transferTo(url, 2, 6, Channels.newChannel(out));
+        assertEquals("2345", out.toString("UTF-8"));
+
+        String temp = url.substring(0, url.lastIndexOf('/') + 1) + ".upload-1.tmp";
+        assertNull(storage.stat(temp));
+        assertNull(storage.stat("file/venue/none.jpg"));
+        assertNull(storage.stat("file/../application.yml"));
+        assertNull(storage.open("file/venue/none.jpg"));
+        assertThrows(NoSuchFileException.class, () -> storage.transferTo("file/venue/none.jpg", 0, 1, Channels.newChannel(out)));
+    }
+
+    //Function: 保存派生文件
+    //Scenario: 写在原文件旁边，替换同名文件，不留下临时文件，文件名不能带目录或以点开头
+    @Test
+    void saveVariant() throws Exception {
+        String url = storage.saveVenueFile(picture("a.jpg", "abc"));
+        String dir = url.substring(0, url.lastIndexOf('/') + 1);
+
+        assertEquals(dir + "a_w64.jpg", storage.saveVariant(url, "a_w64.jpg", out -> out.write(1)));
+        assertEquals(dir + "a_w64.jpg", storage.saveVariant(url, "a_w64.jpg", out -> out.write(new byte[]{2, 3})));
+        assertArrayEquals(new byte[]{2, 3}, Files.readAllBytes(storage.resolve(dir + "a_w64.jpg")));
+        assertThrows(IOException.class, () -> storage.saveVariant(url, "a_w160.jpg", out -> {
+            throw new IOException("no writer");
+        }));
+        assertEquals(2, files().size());
+        assertThrows(IllegalArgumentException.class, () -> storage.saveVariant(url, "../x.jpg", out -> out.write(1)));
+        assertThrows(IllegalArgumentException.class, () -> storage.saveVariant(url, ".x.jpg", out -> out.write(1)));
+        assertThrows(IllegalArgumentException.class, () -> storage.saveVariant("venue.jpg", "x.jpg", out -> out.write(1)));
+    }
+}
@@ -0,0 +1,220 @@
+package com.demo.service.impl;
+
+import com.demo.entity.Message;
+import com.demo.entity.vo.IngestStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.demo.service.MessageService.STATE_NO_AUDIT;
+import static com.demo.service.impl.StatusCounters.Kind.MESSAGE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageIngestionTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private StatusCounters statusCounters;
+
+    @InjectMocks
+    private MessageIngestion messageIngestion;
+
+    @AfterEach
+    void tearDown() {
+        messageIngestion.shutdown();
+    }
+
+    private static Message message(String userID) {
+        return new Message(0, userID, "content", LocalDateTime.now(), STATE_NO_AUDIT);
+    }
+
+    private void inTransaction() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    //Function: 批量写入留言
+    //Scenario: 一批留言一次batchUpdate、一个事务，计数和统计按批更新
+    @Test
+    void flush_batch() {
+        inTransaction();
+        when(jdbcTemplate.batchUpdate(eq(MessageIngestion.INSERT_SQL), anyList())).thenReturn(new int[]{1, 1, 1});
+
+        messageIngestion.flush(Arrays.asList(message("a"), message("b"), message("c")));
+
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(jdbcTemplate, times(1)).batchUpdate(eq(MessageIngestion.INSERT_SQL),
+                argThat((List<Object[]> args) -> args.size() == 3 && "b".equals(args.get(1)[0])));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        assertEquals(3, statusCounters.get(MESSAGE, STATE_NO_AUDIT));
+        IngestStats stats = messageIngestion.stats();
+        assertEquals(1, stats.getBatches());
+        assertEquals(3, stats.getMessages());
+        assertEquals(3, stats.getLastBatchSize());
+        assertEquals(3, stats.getMaxBatchSize());
+        assertEquals(MessageIngestion.QUEUE_SIZE, stats.getCapacity());
+    }
+
+    //Function: 批量写入留言
+    //Scenario: 批量插入失败时逐条重试，只丢弃写不进去的那条
+    @Test
+    void flush_fallback() {
+        inTransaction();
+        when(jdbcTemplate.batchUpdate(eq(MessageIngestion.INSERT_SQL), anyList())).thenThrow(new RuntimeException("Data too long"));
+        when(jdbcTemplate.update(eq(MessageIngestion.INSERT_SQL), any(), any(), any(), any())).thenAnswer(invocation -> {
+            if ("bad".equals(invocation.getArgument(1))) {
+                throw new RuntimeException("Data too long");
+            }
+            return 1;
+        });
+
+        messageIngestion.flush(Arrays.asList(message("bad"), message("good")));
+
+        assertEquals(1, statusCounters.get(MESSAGE, STATE_NO_AUDIT));
+        IngestStats stats = messageIngestion.stats();
+        assertEquals(1, stats.getMessages());
+        assertEquals(1, stats.getFailures());
+    }
+
+    //Function: 提交留言
+    //Scenario: 提交后立即返回，关闭时队列里的留言全部写入
+    @Test
+    void submit_drained_on_shutdown() {
+        inTransaction();
+        List<Object[]> inserted = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(eq(MessageIngestion.INSERT_SQL), anyList())).thenAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            synchronized (inserted) {
+                inserted.addAll(args);
+            }
+            return new int[args.size()];
+        });
+
+        for (int i = 0; i < 100; i++) {
+            messageIngestion.submit(message("user" + i));
+        }
+        messageIngestion.shutdown();
+
+        assertEquals(100, inserted.size());
+        assertEquals(100, statusCounters.get(MESSAGE, STATE_NO_AUDIT));
+        IngestStats stats = messageIngestion.stats();
+        assertEquals(0, stats.getQueued());
+        assertEquals(100, stats.getMessages());
+        assertTrue(stats.getBatches() <= 100);
+    }
+
+    //Function: 提交留言
+    //Scenario: 关闭后提交的留言在调用线程直接写入
+    @Test
+    void submit_after_shutdown() {
+        messageIngestion.shutdown();
+        when(jdbcTemplate.update(eq(MessageIngestion.INSERT_SQL), any(), any(), any(), any())).thenReturn(1);
+
+        messageIngestion.submit(message("late"));
+
+        verify(jdbcTemplate, times(1)).update(eq(MessageIngestion.INSERT_SQL), eq("late"), any(), any(), eq(STATE_NO_AUDIT));
+        assertEquals(1, messageIngestion.stats().getSyncWrites());
+        assertEquals(1, statusCounters.get(MESSAGE, STATE_NO_AUDIT));
+    }
+
+    //Function: 等待留言写入
+    //Scenario: 用户发表后马上查看自己的留言，等队列里这个用户的留言写入后再返回，其他用户不用等
+    @Test
+    void awaitWritten() throws Exception {
+        inTransaction();
+        CountDownLatch commit = new CountDownLatch(1);
+        List<Object> inserted = Collections.synchronizedList(new ArrayList<>());
+        when(jdbcTemplate.batchUpdate(eq(MessageIngestion.INSERT_SQL), anyList())).thenAnswer(invocation -> {
+            commit.await();
+            for (Object[] args : invocation.<List<Object[]>>getArgument(1)) {
+                inserted.add(args[0]);
+            }
+            return new int[1];
+        });
+
+        messageIngestion.submit(message("me"));
+        messageIngestion.awaitWritten("other");
+        assertTrue(inserted.isEmpty());
+        new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            commit.countDown();
+        }).start();
+        messageIngestion.awaitWritten("me");
+
+        assertEquals(Collections.singletonList("me"), inserted);
+    }
+
+    //Function: 提交留言
+    //Scenario: 提交和关闭同时进行，每条留言都写入，不会在最后一次取出队列之后放进队列而丢失
+    @Test
+    void submit_racing_shutdown() throws Exception {
+        inTransaction();
+        AtomicInteger inserted = new AtomicInteger();
+        lenient().when(jdbcTemplate.batchUpdate(eq(MessageIngestion.INSERT_SQL), anyList())).thenAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            inserted.addAndGet(args.size());
+            return new int[args.size()];
+        });
+        lenient().when(jdbcTemplate.update(eq(MessageIngestion.INSERT_SQL), any(), any(), any(), any())).thenAnswer(invocation -> {
+            inserted.incrementAndGet();
+            return 1;
+        });
+        int writers = 8;
+        int perWriter = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perWriter; i++) {
+                    messageIngestion.submit(message("user" + i));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        while (inserted.get() == 0) {
+            Thread.yield();
+        }
+        messageIngestion.shutdown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(writers * perWriter, inserted.get());
+        assertEquals(0, messageIngestion.stats().getQueued());
+    }
+}
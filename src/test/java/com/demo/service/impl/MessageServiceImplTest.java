@@ -3,23 +3,36 @@ package com.demo.service.impl;
 import com.demo.dao.MessageDao;
 import com.demo.dao.UserDao;
 import com.demo.entity.Message;
+import com.demo.service.HomeService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static com.demo.service.MessageService.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static com.demo.service.impl.StatusCounters.Kind.MESSAGE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -32,6 +45,21 @@ class MessageServiceImplTest {
     @Mock
     private UserDao userDao;
 
+    @Mock
+    private HomeService homeService;
+
+    @Spy
+    private StatusCounters statusCounters = new StatusCounters();
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private MessageIngestion messageIngestion;
+
     @InjectMocks
     private MessageServiceImpl messageService;
 
@@ -108,6 +136,46 @@ class MessageServiceImplTest {
 
     }
 
+    //Function: 统计留言数
+    //Scenario: 按状态的总数读内存计数，按用户的总数先等该用户的留言写入，再只执行count查询
+    @Test
+    void count_ok() {
+        // given
+        statusCounters.increment(StatusCounters.Kind.MESSAGE, STATE_PASS);
+        statusCounters.increment(StatusCounters.Kind.MESSAGE, STATE_NO_AUDIT);
+        when(messageDao.countByUserID("user1")).thenReturn(3L);
+        //when&then
+        assertEquals(1L, messageService.countPassState());
+        assertEquals(1L, messageService.countWaitState());
+        assertEquals(3L, messageService.countByUser("user1"));
+        verify(messageDao, never()).countByState(anyInt());
+        verify(messageDao, never()).findAllByState(anyInt(), any());
+        verify(messageDao, never()).findAllByUserID(any(), any());
+        InOrder inOrder = inOrder(messageIngestion, messageDao);
+        inOrder.verify(messageIngestion).awaitWritten("user1");
+        inOrder.verify(messageDao).countByUserID("user1");
+    }
+
+    //Function: 留言计数随状态变化
+    //Scenario: 创建、修改后重新待审核、删除
+    @Test
+    void counter_follow_state() {
+        Message message = new Message(4, "user1", "content", LocalDateTime.now(), STATE_NO_AUDIT);
+        when(messageDao.save(message)).thenReturn(message);
+        messageService.create(message);
+        assertEquals(1L, statusCounters.get(StatusCounters.Kind.MESSAGE, STATE_NO_AUDIT));
+
+        when(messageDao.findStateByMessageID(4)).thenReturn(STATE_PASS);
+        statusCounters.move(StatusCounters.Kind.MESSAGE, STATE_NO_AUDIT, STATE_PASS);
+        messageService.update(message);
+        assertEquals(0L, statusCounters.get(StatusCounters.Kind.MESSAGE, STATE_PASS));
+        assertEquals(1L, statusCounters.get(StatusCounters.Kind.MESSAGE, STATE_NO_AUDIT));
+
+        when(messageDao.findStateByMessageID(4)).thenReturn(STATE_NO_AUDIT);
+        messageService.delById(4);
+        assertEquals(0L, statusCounters.get(StatusCounters.Kind.MESSAGE, STATE_NO_AUDIT));
+    }
+
     //Function: 创建message
     //Scenario: 创建成功
     //Assume: 传入参数不为null
@@ -210,14 +278,16 @@ class MessageServiceImplTest {
 
         // given
         when(messageDao.findByMessageID(correct_id)).thenReturn(confirm_msg);
-        doNothing().when(messageDao).updateState(STATE_PASS, correct_id);
+        when(messageDao.updateState(STATE_PASS, correct_id, STATE_NO_AUDIT)).thenReturn(1);
 
         // when
         messageService.confirmMessage(correct_id);
 
         // then
         verify(messageDao, times(1)).findByMessageID(correct_id);
-        verify(messageDao, times(1)).updateState(STATE_PASS, correct_id);
+        verify(messageDao, times(1)).updateState(STATE_PASS, correct_id, STATE_NO_AUDIT);
+        verify(homeService, times(1)).refresh();
+        verify(statusCounters, times(1)).move(StatusCounters.Kind.MESSAGE, STATE_NO_AUDIT, STATE_PASS);
     }
 
     //Function: 审核message通过
@@ -236,6 +306,7 @@ class MessageServiceImplTest {
             //then
             verify(messageDao, times(1)).findByMessageID(not_exist_id);
             verify(messageDao, never()).updateState(STATE_PASS, not_exist_id);
+            verify(homeService, never()).refresh();
             assertEquals("留言不存在", e.getMessage());
         }
     }
@@ -271,14 +342,14 @@ class MessageServiceImplTest {
 
         // given
         when(messageDao.findByMessageID(correct_id)).thenReturn(reject_msg);
-        doNothing().when(messageDao).updateState(STATE_REJECT, correct_id);
+        when(messageDao.updateState(STATE_REJECT, correct_id, STATE_NO_AUDIT)).thenReturn(1);
 
         // when
         messageService.rejectMessage(correct_id);
 
         // then
         verify(messageDao, times(1)).findByMessageID(correct_id);
-        verify(messageDao, times(1)).updateState(STATE_REJECT, correct_id);
+        verify(messageDao, times(1)).updateState(STATE_REJECT, correct_id, STATE_NO_AUDIT);
     }
 
     //Function: 审核message拒绝
@@ -375,4 +446,81 @@ class MessageServiceImplTest {
         verify(messageDao, times(2)).findAllByState(STATE_PASS, pageable);
 
     }
+
+    //Function: 异步添加留言
+    //Scenario: 交给写入队列，不直接保存也不修改计数
+    @Test
+    void submit() {
+        Message message = new Message(0, "user", "content", LocalDateTime.now(), STATE_NO_AUDIT);
+
+        messageService.submit(message);
+
+        verify(messageIngestion, times(1)).submit(message);
+        verify(messageDao, never()).save(any());
+        assertEquals(0, statusCounters.get(MESSAGE, STATE_NO_AUDIT));
+    }
+
+    private void batchReturns(String sql, int... counts) {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        when(jdbcTemplate.batchUpdate(eq(sql), anyList())).thenReturn(counts);
+    }
+
+    //Function: 批量通过留言
+    //Scenario: 按待审核状态比较后修改，返回每条留言的结果，重复的id只处理一次，有通过的留言时刷新首页
+    @Test
+    void confirmMessages() {
+        statusCounters.increment(MESSAGE, STATE_NO_AUDIT);
+        batchReturns(MessageServiceImpl.TRANSITION_SQL, 1, 0);
+
+        Map<Integer, Boolean> result = messageService.confirmMessages(Arrays.asList(1, 2, 1));
+
+        assertEquals(2, result.size());
+        assertTrue(result.get(1));
+        assertFalse(result.get(2));
+        verify(jdbcTemplate).batchUpdate(eq(MessageServiceImpl.TRANSITION_SQL), argThat((List<Object[]> args) ->
+                args.size() == 2 && Arrays.equals(new Object[]{STATE_PASS, 2, STATE_NO_AUDIT}, args.get(1))));
+        verify(messageDao, never()).findByMessageID(anyInt());
+        assertEquals(0, statusCounters.get(MESSAGE, STATE_NO_AUDIT));
+        assertEquals(1, statusCounters.get(MESSAGE, STATE_PASS));
+        verify(homeService, times(1)).refresh();
+    }
+
+    //Function: 批量驳回留言
+    //Scenario: 没有留言被驳回时不修改计数，驳回不刷新首页
+    @Test
+    void rejectMessages_none_moved() {
+        batchReturns(MessageServiceImpl.TRANSITION_SQL, 0, 0);
+
+        Map<Integer, Boolean> result = messageService.rejectMessages(Arrays.asList(3, 4));
+
+        assertFalse(result.containsValue(true));
+        assertEquals(0, statusCounters.get(MESSAGE, STATE_REJECT));
+        verifyNoInteractions(homeService);
+    }
+
+    //Function: 批量删除留言
+    //Scenario: 只删除待审核的留言
+    @Test
+    void delMessages() {
+        statusCounters.increment(MESSAGE, STATE_NO_AUDIT);
+        batchReturns(MessageServiceImpl.DELETE_SQL, 0, 1);
+
+        Map<Integer, Boolean> result = messageService.delMessages(Arrays.asList(5, 6));
+
+        assertFalse(result.get(5));
+        assertTrue(result.get(6));
+        verify(jdbcTemplate).batchUpdate(eq(MessageServiceImpl.DELETE_SQL), argThat((List<Object[]> args) ->
+                Arrays.equals(new Object[]{6, STATE_NO_AUDIT}, args.get(1))));
+        verify(messageDao, never()).deleteById(anyInt());
+        assertEquals(0, statusCounters.get(MESSAGE, STATE_NO_AUDIT));
+    }
+
+    //Function: 批量处理留言
+    //Scenario: 空列表不访问数据库
+    @Test
+    void confirmMessages_empty() {
+        assertTrue(messageService.confirmMessages(Collections.emptyList()).isEmpty());
+        verifyNoInteractions(jdbcTemplate, transactionTemplate, homeService);
+    }
 }
@@ -4,7 +4,9 @@ import com.demo.dao.MessageDao;
 import com.demo.dao.UserDao;
 import com.demo.entity.Message;
 import com.demo.entity.User;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.MessageVo;
+import com.demo.utils.Cursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,12 +14,25 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
+import static com.demo.service.MessageService.STATE_PASS;
 import static com.demo.service.OrderService.STATE_NO_AUDIT;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -31,6 +46,12 @@ class MessageVoServiceImplTest {
     @Mock
     private UserDao userDao;
 
+    @Mock
+    private Thumbnailer thumbnailer;
+
+    @Mock
+    private MessageIngestion messageIngestion;
+
     @InjectMocks
     private MessageVoServiceImpl messageVoService;
 
@@ -92,32 +113,43 @@ class MessageVoServiceImplTest {
     @Test
     void returnVo_ok() {
         //given
-        for(int i = 0; i < 3; i++){
-            when(messageDao.findByMessageID(i)).thenReturn(messagesList.get(i));
-            when(userDao.findByUserID(messagesList.get(i).getUserID())).thenReturn(users[i]);
-        }
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Arrays.asList(users));
 
         //when
         List<MessageVo> result = messageVoService.returnVo(messagesList);
 
         //then
-        for(int i = 0; i < 3; i++){
-            verify(messageDao, times(1)).findByMessageID(i);
-            verify(userDao, times(1)).findByUserID(messagesList.get(i).getUserID());
-        }
+        verify(messageDao, never()).findByMessageID(anyInt());
+        verify(userDao, never()).findByUserID(anyString());
+        verify(userDao, times(1)).findByUserIDIn(new HashSet<>(Arrays.asList("user0", "user1", "user2")));
         assertNotNull(result);
         assertEquals(result, messageVosList);
     }
 
+    //Function: 根据msg列表返回MessageVo的列表
+    //Scenario: 头像换成缩略图
+    @Test
+    void returnVo_avatar_thumbnail() {
+        //given
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Arrays.asList(users));
+        when(thumbnailer.pick("picture", Thumbnailer.AVATAR)).thenReturn("picture_w64");
+
+        //when
+        List<MessageVo> result = messageVoService.returnVo(messagesList);
+
+        //then
+        for (MessageVo vo : result) {
+            assertEquals("picture_w64", vo.getPicture());
+        }
+        assertEquals("picture", users[0].getPicture());
+    }
+
     //Function: 根据msg列表返回MessageVo的列表
     //Scenario: 列表中某项msg为null
     @Test
     void returnVo_some_msg_null() {
         //given
-        for(int i = 0; i < 3; i++){
-            when(messageDao.findByMessageID(i)).thenReturn(messagesList.get(i));
-            when(userDao.findByUserID(messagesList.get(i).getUserID())).thenReturn(users[i]);
-        }
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Arrays.asList(users[1], users[2]));
         messagesList.set(0, null);
 
         //when
@@ -130,4 +162,161 @@ class MessageVoServiceImplTest {
         assertEquals(result.get(2), messageVosList.get(2));
     }
 
-}
\ No newline at end of file
+    //Function: 根据msg列表返回MessageVo的列表
+    //Scenario: 留言用户已被删除
+    @Test
+    void returnVo_user_not_exist() {
+        //given
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Arrays.asList(users[1], users[2]));
+
+        //when
+        List<MessageVo> result = messageVoService.returnVo(messagesList);
+
+        //then
+        MessageVo orphan = result.get(0);
+        assertEquals(messagesList.get(0).getMessageID(), orphan.getMessageID());
+        assertEquals("user0", orphan.getUserID());
+        assertEquals(messagesList.get(0).getContent(), orphan.getContent());
+        assertNull(orphan.getUserName());
+        assertNull(orphan.getPicture());
+        assertEquals(result.get(1), messageVosList.get(1));
+    }
+
+    //Function: 根据msg列表返回MessageVo的列表
+    //Scenario: 同一用户的多条留言只查询一次用户
+    @Test
+    void returnVo_same_user_once() {
+        //given
+        LocalDateTime time = LocalDateTime.of(2023, 4, 11, 13, 14, 14);
+        List<Message> page = new ArrayList<>();
+        for(int i = 0; i < 50; i++){
+            page.add(new Message(i, "user"+(i % 2), "第"+i+"条", time, STATE_NO_AUDIT));
+        }
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Arrays.asList(users[0], users[1]));
+
+        //when
+        List<MessageVo> result = messageVoService.returnVo(page);
+
+        //then
+        assertEquals(50, result.size());
+        verify(userDao, times(1)).findByUserIDIn(new HashSet<>(Arrays.asList("user0", "user1")));
+        verifyNoMoreInteractions(userDao);
+        verifyNoInteractions(messageDao);
+    }
+
+    //Function: 分页返回审核通过的MessageVo
+    //Scenario: 直接使用投影查询，不逐条查询留言和用户
+    @Test
+    void findPassStateVo_ok() {
+        //given
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("time").descending());
+        Page<MessageVo> page = new PageImpl<>(messageVosList, pageable, messageVosList.size());
+        when(messageDao.findVoByState(STATE_PASS, pageable)).thenReturn(page);
+
+        //when
+        Page<MessageVo> result = messageVoService.findPassStateVo(pageable);
+
+        //then
+        assertEquals(page, result);
+        verify(messageDao, times(1)).findVoByState(STATE_PASS, pageable);
+        verifyNoMoreInteractions(messageDao);
+        verifyNoInteractions(userDao);
+    }
+
+    //Function: 键集分页返回审核通过的MessageVo
+    //Scenario: 第一页多查一行，返回以最后一条留言为起点的游标
+    @Test
+    void findPassStateAfter_first_page() {
+        //given
+        LocalDateTime time = LocalDateTime.of(2023, 4, 13, 10, 0);
+        List<MessageVo> rows = new ArrayList<>();
+        for (int i = 3; i > 0; i--) {
+            rows.add(new MessageVo(i, "user", "content", time, "name", "picture", STATE_PASS));
+        }
+        when(messageDao.findVoByStateOrderByTime(STATE_PASS, PageRequest.of(0, 3))).thenReturn(rows);
+
+        //when
+        KeysetPage<MessageVo> result = messageVoService.findPassStateAfter(null, 2);
+
+        //then
+        assertEquals(rows.subList(0, 2), result.getContent());
+        Cursor next = Cursor.decode(result.getNext());
+        assertEquals(time, next.getTime());
+        assertEquals(2, next.getId());
+        verifyNoInteractions(userDao);
+    }
+
+    //Function: 键集分页返回审核通过的MessageVo
+    //Scenario: 按游标从上一页最后一条之后查询，最后一页没有下一页游标
+    @Test
+    void findPassStateAfter_last_page() {
+        //given
+        LocalDateTime time = LocalDateTime.of(2023, 4, 13, 10, 0);
+        List<MessageVo> rows = new ArrayList<>();
+        rows.add(new MessageVo(1, "user", "content", time, "name", "picture", STATE_PASS));
+        when(messageDao.findVoByStateAfter(STATE_PASS, time, 2, PageRequest.of(0, 3))).thenReturn(rows);
+
+        //when
+        KeysetPage<MessageVo> result = messageVoService.findPassStateAfter(new Cursor(time, 2).encode(), 2);
+
+        //then
+        assertEquals(rows, result.getContent());
+        assertNull(result.getNext());
+        verify(messageDao, never()).findVoByStateOrderByTime(anyInt(), any());
+    }
+
+    //Function: 键集分页返回审核通过的MessageVo
+    //Scenario: 上一页最后一条的时间为null时，只按messageID查询剩下时间为null的留言
+    @Test
+    void findPassStateAfter_null_time() {
+        //given
+        List<MessageVo> rows = new ArrayList<>();
+        rows.add(new MessageVo(1, "user", "content", null, "name", "picture", STATE_PASS));
+        when(messageDao.findVoByStateAfterNullTime(STATE_PASS, 2, PageRequest.of(0, 3))).thenReturn(rows);
+
+        //when
+        KeysetPage<MessageVo> result = messageVoService.findPassStateAfter(new Cursor(null, 2).encode(), 2);
+
+        //then
+        assertEquals(rows, result.getContent());
+        assertNull(result.getNext());
+        verify(messageDao, never()).findVoByStateAfter(anyInt(), any(), anyInt(), any());
+    }
+
+    //Function: 分页返回用户的MessageVo
+    //Scenario: 按用户投影查询
+    @Test
+    void findByUserVo_ok() {
+        //given
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("time").descending());
+        Page<MessageVo> page = new PageImpl<>(messageVosList, pageable, messageVosList.size());
+        when(messageDao.findVoByUserID("user0", pageable)).thenReturn(page);
+
+        //when
+        Page<MessageVo> result = messageVoService.findByUserVo("user0", pageable);
+
+        //then
+        assertEquals(page, result);
+        verify(messageDao, times(1)).findVoByUserID("user0", pageable);
+        verifyNoInteractions(userDao);
+    }
+
+    //Function: 分页返回审核通过的MessageVo，不查询总数
+    //Scenario: 使用Slice投影查询
+    @Test
+    void findPassStateSlice_ok() {
+        //given
+        Pageable pageable = PageRequest.of(1, 5, Sort.by("time").descending());
+        Slice<MessageVo> slice = new SliceImpl<>(messageVosList, pageable, true);
+        when(messageDao.findVoSliceByState(STATE_PASS, pageable)).thenReturn(slice);
+
+        //when
+        Slice<MessageVo> result = messageVoService.findPassStateSlice(pageable);
+
+        //then
+        assertEquals(slice, result);
+        verify(messageDao, times(1)).findVoSliceByState(STATE_PASS, pageable);
+        verifyNoMoreInteractions(messageDao);
+        verifyNoInteractions(userDao);
+    }
+}
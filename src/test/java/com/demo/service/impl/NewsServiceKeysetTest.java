@@ -0,0 +1,62 @@
+package com.demo.service.impl;
+
+import com.demo.dao.NewsDao;
+import com.demo.entity.News;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.service.HomeService;
+import com.demo.utils.Cursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * 新闻的键集分页，不需要数据库
+ */
+@ExtendWith(MockitoExtension.class)
+class NewsServiceKeysetTest {
+
+    @Mock
+    private NewsDao newsDao;
+
+    @Mock
+    private HomeService homeService;
+
+    @InjectMocks
+    private NewsServiceImpl newsService;
+
+    //Function: 键集分页返回新闻
+    //Scenario: time为null的新闻排在最后，翻过有time的新闻后继续按newsID返回time为null的新闻
+    @Test
+    void findAfter_null_time() {
+        LocalDateTime time = LocalDateTime.of(2023, 4, 13, 10, 0);
+        News dated = new News(5, "dated", "content", time);
+        News undated1 = new News(4, "undated1", "content", null);
+        News undated2 = new News(2, "undated2", "content", null);
+        when(newsDao.findAllByOrderByTimeDescNewsIDDesc(PageRequest.of(0, 2))).thenReturn(Arrays.asList(dated, undated1));
+        when(newsDao.findAfter(time, 5, PageRequest.of(0, 2))).thenReturn(Arrays.asList(undated1, undated2));
+        when(newsDao.findAfterNullTime(4, PageRequest.of(0, 2))).thenReturn(Collections.singletonList(undated2));
+
+        KeysetPage<News> first = newsService.findAfter(null, 1);
+        KeysetPage<News> second = newsService.findAfter(first.getNext(), 1);
+        KeysetPage<News> third = newsService.findAfter(second.getNext(), 1);
+
+        assertEquals(Collections.singletonList(dated), first.getContent());
+        assertEquals(Collections.singletonList(undated1), second.getContent());
+        assertNull(Cursor.decode(second.getNext()).getTime());
+        assertEquals(Collections.singletonList(undated2), third.getContent());
+        assertNull(third.getNext());
+        verify(newsDao, times(1)).findAfter(any(), anyInt(), any());
+    }
+}
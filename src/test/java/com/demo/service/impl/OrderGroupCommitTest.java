@@ -0,0 +1,270 @@
+package com.demo.service.impl;
+
+import com.demo.entity.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.demo.service.OrderService.STATE_NO_AUDIT;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderGroupCommitTest {
+
+    static final long COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private OrderGroupCommit orderGroupCommit;
+
+    private final AtomicInteger ids = new AtomicInteger(100);
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final AtomicInteger statements = new AtomicInteger();
+    private final List<String> inserted = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 打开之前事务卡在提交前
+     */
+    private volatile CountDownLatch commitGate = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderGroupCommit, "enabled", true);
+        ReflectionTestUtils.setField(orderGroupCommit, "windowMillis", 5L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderGroupCommit.shutdown();
+    }
+
+    private static Order order(String userID) {
+        return new Order(0, userID, 2, STATE_NO_AUDIT, LocalDateTime.now(), LocalDateTime.of(2030, 1, 1, 10, 0), 1, 100);
+    }
+
+    /**
+     * 等到调用方超时后进入不限时的等待：限时等待是TIMED_WAITING，超时后取消失败才会变成WAITING
+     */
+    private static void awaitUntimedWait(Thread caller) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (caller.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "caller state: " + caller.getState());
+            Thread.yield();
+        }
+    }
+
+    private static List<OrderGroupCommit.Pending> pending(String... userIDs) {
+        List<OrderGroupCommit.Pending> batch = new ArrayList<>();
+        for (String userID : userIDs) {
+            batch.add(new OrderGroupCommit.Pending(order(userID)));
+        }
+        return batch;
+    }
+
+    /**
+     * 模拟数据库：每次事务提交固定耗时，批量插入按顺序分配自增id，userID为bad的行写不进去
+     */
+    private void fakeDatabase() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            Object result = ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null);
+            commitGate.await();
+            LockSupport.parkNanos(COMMIT_NANOS);
+            transactions.incrementAndGet();
+            return result;
+        });
+        when(jdbcTemplate.execute(ArgumentMatchers.<ConnectionCallback<Object>>any())).thenAnswer(invocation -> {
+            statements.incrementAndGet();
+            List<String> userIDs = new ArrayList<>();
+            PreparedStatement ps = mock(PreparedStatement.class);
+            doAnswer(set -> userIDs.add(set.getArgument(1))).when(ps).setString(eq(1), anyString());
+            when(ps.executeBatch()).thenAnswer(execute -> {
+                if (userIDs.contains("bad")) {
+                    throw new SQLException("Data too long");
+                }
+                inserted.addAll(userIDs);
+                return new int[userIDs.size()];
+            });
+            ResultSet keys = mock(ResultSet.class);
+            AtomicInteger left = new AtomicInteger();
+            lenient().when(ps.getGeneratedKeys()).thenAnswer(get -> {
+                left.set(userIDs.size());
+                return keys;
+            });
+            lenient().when(keys.next()).thenAnswer(next -> left.getAndDecrement() > 0);
+            lenient().when(keys.getInt(1)).thenAnswer(get -> ids.incrementAndGet());
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(OrderGroupCommit.INSERT_SQL, Statement.RETURN_GENERATED_KEYS)).thenReturn(ps);
+            try {
+                return ((ConnectionCallback<?>) invocation.getArgument(0)).doInConnection(connection);
+            } catch (SQLException e) {
+                throw new DataIntegrityViolationException(e.getMessage(), e);
+            }
+        });
+    }
+
+    //Function: 批量写入订单
+    //Scenario: 一批订单一个事务、一条批量insert，按顺序得到各自的id
+    @Test
+    void flush_batch() throws Exception {
+        fakeDatabase();
+        List<OrderGroupCommit.Pending> batch = pending("a", "b", "c");
+
+        orderGroupCommit.flush(batch);
+
+        assertEquals(101, batch.get(0).future.get(1, TimeUnit.SECONDS));
+        assertEquals(102, batch.get(1).future.get(1, TimeUnit.SECONDS));
+        assertEquals(103, batch.get(2).future.get(1, TimeUnit.SECONDS));
+        assertEquals(1, transactions.get());
+        assertEquals(1, statements.get());
+    }
+
+    //Function: 批量写入订单
+    //Scenario: 批量写入失败时逐条重试，只有写不进去的订单失败
+    @Test
+    void flush_fallback() throws Exception {
+        fakeDatabase();
+        List<OrderGroupCommit.Pending> batch = pending("a", "bad", "c");
+
+        orderGroupCommit.flush(batch);
+
+        assertEquals(101, batch.get(0).future.get(1, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> batch.get(1).future.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+        assertEquals(102, batch.get(2).future.get(1, TimeUnit.SECONDS));
+        assertEquals(1 + 3, statements.get());
+    }
+
+    //Function: 提交订单
+    //Scenario: 开放预约时大量订单同时提交，每个调用方得到不同的id，事务数比逐条提交少一个数量级
+    @Test
+    void commit_peak() throws Exception {
+        fakeDatabase();
+        int clients = 50;
+        int orders = 400;
+        AtomicInteger next = new AtomicInteger();
+        Set<Integer> created = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            futures.add(pool.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < orders) {
+                    created.add(orderGroupCommit.commit(order("user" + i)));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(orders, created.size());
+        assertTrue(transactions.get() * 10 <= orders, "transactions: " + transactions.get());
+    }
+
+    //Function: 提交订单
+    //Scenario: 写入失败时调用方得到原来的异常
+    @Test
+    void commit_failed() {
+        fakeDatabase();
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> orderGroupCommit.commit(order("bad")));
+
+        assertTrue(e instanceof DataIntegrityViolationException);
+        verify(jdbcTemplate, atLeastOnce()).execute(ArgumentMatchers.<ConnectionCallback<Object>>any());
+    }
+
+    //Function: 提交订单
+    //Scenario: 写入线程取走订单后调用方超时，继续等到写入完成并得到id，不报告失败
+    @Test
+    void commit_insert_after_timeout() throws Exception {
+        fakeDatabase();
+        ReflectionTestUtils.setField(orderGroupCommit, "timeoutMillis", 50L);
+        commitGate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        Future<Integer> id = pool.submit(() -> {
+            caller.set(Thread.currentThread());
+            return orderGroupCommit.commit(order("a"));
+        });
+        // 写入线程已经取走订单，卡在提交前
+        verify(jdbcTemplate, timeout(1000)).execute(ArgumentMatchers.<ConnectionCallback<Object>>any());
+        awaitUntimedWait(caller.get());
+        assertFalse(id.isDone());
+        commitGate.countDown();
+
+        assertEquals(101, id.get(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("a"), inserted);
+        pool.shutdown();
+    }
+
+    //Function: 提交订单
+    //Scenario: 还在排队的订单超时后被取消，调用方得到超时错误，之后写入线程跳过它，不再写入
+    @Test
+    void commit_cancelled() throws Exception {
+        fakeDatabase();
+        ReflectionTestUtils.setField(orderGroupCommit, "timeoutMillis", 100L);
+        ReflectionTestUtils.setField(orderGroupCommit, "windowMillis", 0L);
+        commitGate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Integer> first = pool.submit(() -> orderGroupCommit.commit(order("a")));
+        verify(jdbcTemplate, timeout(1000)).execute(ArgumentMatchers.<ConnectionCallback<Object>>any());
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> orderGroupCommit.commit(order("b")));
+        commitGate.countDown();
+
+        assertEquals("预约超时，请稍后再试", e.getMessage());
+        assertEquals(101, first.get(5, TimeUnit.SECONDS));
+        // 队列先进先出，排在b后面的订单写入时b一定已经处理过
+        ReflectionTestUtils.setField(orderGroupCommit, "timeoutMillis", 5000L);
+        assertEquals(102, orderGroupCommit.commit(order("c")));
+        assertEquals(Arrays.asList("a", "c"), inserted);
+        assertEquals(2, statements.get());
+        pool.shutdown();
+    }
+}
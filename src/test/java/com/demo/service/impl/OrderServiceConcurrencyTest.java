@@ -0,0 +1,145 @@
+package com.demo.service.impl;
+
+import com.demo.dao.OrderDao;
+import com.demo.dao.VenueDao;
+import com.demo.entity.Order;
+import com.demo.entity.Venue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 大量用户同时下单时同一场馆的同一小时只能被预约一次
+ */
+class OrderServiceConcurrencyTest {
+
+    static final int VENUES = 4;
+    static final int SUBMITTERS = 400;
+
+    OrderServiceImpl orderService;
+    Queue<Order> saved;
+
+    @BeforeEach
+    void setUp() {
+        OrderDao orderDao = mock(OrderDao.class);
+        VenueDao venueDao = mock(VenueDao.class);
+        AtomicInteger ids = new AtomicInteger();
+        saved = new ConcurrentLinkedQueue<>();
+
+        when(orderDao.findByStartTimeGreaterThanEqualAndStateNot(any(), anyInt())).thenReturn(Collections.emptyList());
+        when(orderDao.save(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            Thread.yield();
+            order.setOrderID(ids.incrementAndGet());
+            saved.add(order);
+            return order;
+        });
+        when(venueDao.findByVenueID(anyInt())).thenAnswer(invocation -> {
+            int venueID = invocation.getArgument(0);
+            return new Venue(venueID, "venue" + venueID, "good", 100, "picture", "address", "8:00", "22:00");
+        });
+        when(venueDao.findByVenueName(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            int venueID = Integer.parseInt(name.substring("venue".length()));
+            return new Venue(venueID, name, "good", 100, "picture", "address", "9:00", "20:00");
+        });
+
+        AvailabilityServiceImpl availabilityService = new AvailabilityServiceImpl();
+        ReflectionTestUtils.setField(availabilityService, "orderDao", orderDao);
+        availabilityService.rebuild();
+
+        orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "orderDao", orderDao);
+        ReflectionTestUtils.setField(orderService, "venueDao", venueDao);
+        ReflectionTestUtils.setField(orderService, "venueCache", new VenueCache());
+        ReflectionTestUtils.setField(orderService, "availabilityService", availabilityService);
+        ReflectionTestUtils.setField(orderService, "statusCounters", new StatusCounters());
+        ReflectionTestUtils.setField(orderService, "orderGroupCommit", new OrderGroupCommit());
+        ReflectionTestUtils.setField(orderService, "flashInventory", new FlashInventory());
+    }
+
+    @Test
+    void submit_concurrent_no_double_booking() throws Exception {
+        submitConcurrently(LocalDate.now().plusDays(3));
+    }
+
+    @Test
+    void submit_concurrent_flash_inventory() throws Exception {
+        LocalDate day = LocalDate.now().plusDays(3);
+        int slots = 0;
+        for (int v = 0; v < VENUES; v++) {
+            slots += orderService.publishFlashSlots(v, day, day);
+        }
+
+        submitConcurrently(day);
+
+        int booked = 0;
+        for (Order order : saved) {
+            booked += order.getHours();
+        }
+        assertEquals(VENUES * 14, slots);
+        assertTrue(booked <= slots);
+    }
+
+    private void submitConcurrently(LocalDate day) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < SUBMITTERS; i++) {
+            String venueName = "venue" + (i % VENUES);
+            LocalDateTime startTime = day.atTime(8 + (i * 7) % 12, 0);
+            int hours = 1 + i % 3;
+            String userID = "user" + i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    orderService.submit(venueName, startTime, hours, userID);
+                } catch (RuntimeException e) {
+                    assertEquals("该时段已被预约", e.getMessage());
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Map<String, String> slotOwner = new HashMap<>();
+        for (Order order : saved) {
+            for (int h = 0; h < order.getHours(); h++) {
+                String slot = order.getVenueID() + "@" + order.getStartTime().plusHours(h);
+                String previous = slotOwner.put(slot, order.getUserID());
+                assertNull(previous, "double booking on " + slot);
+            }
+        }
+        assertFalse(saved.isEmpty());
+        assertEquals(SUBMITTERS, saved.size() + rejected.get());
+    }
+}
@@ -4,6 +4,8 @@ import com.demo.dao.OrderDao;
 import com.demo.dao.VenueDao;
 import com.demo.entity.Order;
 import com.demo.entity.Venue;
+import com.demo.exception.OrderNotPlacedException;
+import com.demo.service.AvailabilityService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,12 +14,17 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,6 +33,9 @@ import java.util.List;
 
 import static com.demo.service.OrderService.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -38,6 +48,27 @@ class OrderServiceImplTest {
     @Mock
     private VenueDao venueDao;
 
+    @Spy
+    private VenueCache venueCache = new VenueCache();
+
+    @Mock
+    private AvailabilityService availabilityService;
+
+    @Spy
+    private StatusCounters statusCounters = new StatusCounters();
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private OrderGroupCommit orderGroupCommit;
+
+    @Spy
+    private FlashInventory flashInventory = new FlashInventory();
+
     @InjectMocks
     private OrderServiceImpl orderService;
 
@@ -178,12 +209,14 @@ class OrderServiceImplTest {
         //given
         when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
         when(orderDao.findByOrderID(orderID[VALID])).thenReturn(order1);
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], orderID[VALID])).thenReturn(true);
         //when
         orderService.updateOrder(orderID[VALID], venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]);
         //then
         verify(venueDao, times(1)).findByVenueName(venueName[VALID]);
         verify(orderDao, times(1)).findByOrderID(orderID[VALID]);
         verify(orderDao, times(1)).save(any());
+        verify(availabilityService, times(1)).occupy(order1);
     }
 
     //Function: 更新订单
@@ -219,11 +252,170 @@ class OrderServiceImplTest {
     void submit_success() {
         //given
         when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], 0)).thenReturn(true);
         //when
         orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]);
         //then
         verify(venueDao, times(1)).findByVenueName(venueName[VALID]);
         verify(orderDao, times(1)).save(any());
+        verify(availabilityService, times(1)).occupy(any(Order.class));
+        assertEquals(1, statusCounters.get(StatusCounters.Kind.ORDER, STATE_NO_AUDIT));
+    }
+
+    //Function: 创建订单
+    //Scenario: 开启组提交时先用临时id登记时段，写入后换成真实id，不直接保存
+    @Test
+    void submit_group_commit() {
+        when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], 0)).thenReturn(true);
+        when(orderGroupCommit.isEnabled()).thenReturn(true);
+        when(orderGroupCommit.commit(any(Order.class))).thenReturn(77);
+        List<Integer> occupied = new ArrayList<>();
+        doAnswer(invocation -> occupied.add(((Order) invocation.getArgument(0)).getOrderID()))
+                .when(availabilityService).occupy(any(Order.class));
+
+        orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]);
+
+        assertEquals(2, occupied.size());
+        assertTrue(occupied.get(0) < 0);
+        assertEquals(77, occupied.get(1));
+        verify(availabilityService, times(1)).release(occupied.get(0));
+        verify(orderDao, never()).save(any());
+        assertEquals(1, statusCounters.get(StatusCounters.Kind.ORDER, STATE_NO_AUDIT));
+    }
+
+    //Function: 创建订单
+    //Scenario: 组提交写入失败，释放临时登记的时段，异常抛给调用方
+    @Test
+    void submit_group_commit_failed() {
+        when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], 0)).thenReturn(true);
+        when(orderGroupCommit.isEnabled()).thenReturn(true);
+        when(orderGroupCommit.commit(any(Order.class))).thenThrow(new RuntimeException("预约超时，请稍后再试"));
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]));
+
+        assertEquals("预约超时，请稍后再试", e.getMessage());
+        verify(availabilityService, times(1)).occupy(any(Order.class));
+        verify(availabilityService, times(1)).release(intThat(id -> id < 0));
+        assertEquals(0, statusCounters.get(StatusCounters.Kind.ORDER, STATE_NO_AUDIT));
+    }
+
+    //Function: 创建订单
+    //Scenario: 场馆发布了抢订库存，时段已被抢占时直接失败，不检查占用也不保存
+    @Test
+    void submit_flash_lost() {
+        when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        flashInventory.publish(venue.getVenueID(), startTime[VALID].toLocalDate(), -1, 1 << startTime[VALID].getHour());
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]));
+
+        assertEquals("该时段已被预约", e.getMessage());
+        verifyNoInteractions(availabilityService, orderDao);
+    }
+
+    //Function: 创建订单
+    //Scenario: 抢到时段但时段已被占用，确定没有写入，时段退回库存
+    @Test
+    void submit_flash_release() {
+        when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], 0)).thenReturn(false);
+        LocalDate day = startTime[VALID].toLocalDate();
+        flashInventory.publish(venue.getVenueID(), day, -1, 0);
+
+        assertThrows(OrderNotPlacedException.class,
+                () -> orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]));
+
+        assertEquals(24, flashInventory.remainingHours(venue.getVenueID(), day).size());
+    }
+
+    //Function: 创建订单
+    //Scenario: 抢到时段后写入出错，订单可能已经写入，时段不退回
+    @Test
+    void submit_flash_keep() {
+        when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], 0)).thenReturn(true);
+        when(orderDao.save(any())).thenThrow(new RuntimeException("Communications link failure"));
+        LocalDate day = startTime[VALID].toLocalDate();
+        flashInventory.publish(venue.getVenueID(), day, -1, 0);
+
+        assertThrows(RuntimeException.class,
+                () -> orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]));
+
+        assertFalse(flashInventory.remainingHours(venue.getVenueID(), day).contains(startTime[VALID].getHour()));
+    }
+
+    //Function: 更新订单
+    //Scenario: 抢订到的订单改时间时占用新时段、退回不再占用的小时，改回原来的时段后库存恢复；新时段不可用时退回刚抢占的小时
+    @Test
+    void updateOrder_flash_move() {
+        LocalDate day = LocalDate.now().plusDays(3);
+        order1.setStartTime(day.atTime(10, 0));
+        order1.setHours(2);
+        flashInventory.publish(venue.getVenueID(), day, -1, (1 << 10) | (1 << 11));
+        when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        when(orderDao.findByOrderID(order1.getOrderID())).thenReturn(order1);
+        when(availabilityService.isFree(eq(venue.getVenueID()), any(), anyInt(), eq(order1.getOrderID()))).thenReturn(true);
+
+        orderService.updateOrder(order1.getOrderID(), venueName[VALID], day.atTime(11, 0), 2, userID[VALID]);
+        List<Integer> moved = flashInventory.remainingHours(venue.getVenueID(), day);
+        assertTrue(moved.contains(10));
+        assertFalse(moved.contains(11));
+        assertFalse(moved.contains(12));
+
+        orderService.updateOrder(order1.getOrderID(), venueName[VALID], day.atTime(10, 0), 2, userID[VALID]);
+        List<Integer> back = flashInventory.remainingHours(venue.getVenueID(), day);
+        assertEquals(22, back.size());
+        assertTrue(back.contains(12));
+
+        when(availabilityService.isFree(venue.getVenueID(), day.atTime(15, 0), 1, order1.getOrderID())).thenReturn(false);
+        assertThrows(RuntimeException.class,
+                () -> orderService.updateOrder(order1.getOrderID(), venueName[VALID], day.atTime(15, 0), 1, userID[VALID]));
+        assertEquals(back, flashInventory.remainingHours(venue.getVenueID(), day));
+        verify(orderDao, times(2)).save(order1);
+    }
+
+    //Function: 驳回和删除订单
+    //Scenario: 驳回或删除抢订到的订单后时段退回库存，已驳回的订单删除时不再退回
+    @Test
+    void rejectOrder_delOrder_flash_release() {
+        LocalDate day = startTime[VALID].toLocalDate();
+        int hour = startTime[VALID].getHour();
+        flashInventory.publish(venue.getVenueID(), day, -1, 1 << hour);
+        when(orderDao.findByOrderID(order1.getOrderID())).thenReturn(order1);
+        when(orderDao.updateState(STATE_REJECT, order1.getOrderID(), STATE_NO_AUDIT)).thenReturn(1);
+
+        orderService.rejectOrder(order1.getOrderID());
+        assertTrue(flashInventory.remainingHours(venue.getVenueID(), day).contains(hour));
+
+        flashInventory.publish(venue.getVenueID(), day, -1, 1 << hour);
+        when(orderDao.findStateByOrderID(order1.getOrderID())).thenReturn(STATE_REJECT);
+        orderService.delOrder(order1.getOrderID());
+        assertFalse(flashInventory.remainingHours(venue.getVenueID(), day).contains(hour));
+
+        when(orderDao.findStateByOrderID(order2.getOrderID())).thenReturn(STATE_FINISH);
+        when(orderDao.findByOrderID(order2.getOrderID())).thenReturn(order2);
+        orderService.delOrder(order2.getOrderID());
+        assertTrue(flashInventory.remainingHours(venue.getVenueID(), day).contains(hour));
+    }
+
+    //Function: 发布抢订库存
+    //Scenario: 按场馆营业时间发布每天的时段，已被预约的小时不计入
+    @Test
+    void publishFlashSlots() {
+        LocalDate day = LocalDate.of(2030, 1, 1);
+        when(venueDao.findByVenueID(venue.getVenueID())).thenReturn(venue);
+        when(availabilityService.findOccupiedHours(eq(venue.getVenueID()), any(LocalDate.class))).thenReturn(Collections.emptyList());
+        when(availabilityService.findOccupiedHours(venue.getVenueID(), day)).thenReturn(Arrays.asList(8, 10));
+
+        int count = orderService.publishFlashSlots(venue.getVenueID(), day, day.plusDays(1));
+
+        assertEquals(10 + 11, count);
+        assertEquals(Arrays.asList(9, 11, 12, 13, 14, 15, 16, 17, 18, 19), orderService.findFlashSlots(venue.getVenueID(), day));
+        orderService.withdrawFlashSlots(venue.getVenueID());
+        assertFalse(flashInventory.isPublished(venue.getVenueID()));
     }
 
     //Function: 创建订单
@@ -255,16 +447,31 @@ class OrderServiceImplTest {
     void submit_venueOccupied(){
         //given
         when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
-//        when(orderDao.findAllByVenueIDAndStartTimeGreaterThanEqualAndEndTimeLessThanEqual(venue.getVenueID(),
-//                startTime[VALID], startTime[VALID].plusHours(hours[VALID]))
-//                .thenReturn(Collections.singletonList(order1)));
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], 0)).thenReturn(false);
         //when
-        orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]);
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> orderService.submit(venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]));
         //then
+        assertEquals("该时段已被预约", e.getMessage());
         verify(venueDao, times(1)).findByVenueName(venueName[VALID]);
-//        verify(orderDao, times(1)).
-//                findAllByVenueIDAndStartTimeGreaterThanEqualAndEndTimeLessThanEqual(venue.getVenueID(),
-//                        startTime[VALID], startTime[VALID].plusHours(hours[VALID]));
+        verify(availabilityService, times(1)).isFree(venue.getVenueID(), startTime[VALID], hours[VALID], 0);
+        verify(orderDao, never()).save(any());
+        verify(availabilityService, never()).occupy(any());
+    }
+
+    //Function: 更新订单
+    //Scenario: 新时间段与其他订单冲突
+    @Test
+    void updateOrder_venueOccupied(){
+        //given
+        when(venueDao.findByVenueName(venueName[VALID])).thenReturn(venue);
+        when(orderDao.findByOrderID(orderID[VALID])).thenReturn(order1);
+        when(availabilityService.isFree(venue.getVenueID(), startTime[VALID], hours[VALID], orderID[VALID])).thenReturn(false);
+        //when
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> orderService.updateOrder(orderID[VALID], venueName[VALID], startTime[VALID], hours[VALID], userID[VALID]));
+        //then
+        assertEquals("该时段已被预约", e.getMessage());
         verify(orderDao, never()).save(any());
     }
 
@@ -276,6 +483,18 @@ class OrderServiceImplTest {
         doNothing().when(orderDao).deleteById(del_id);
         orderService.delOrder(del_id);
         verify(orderDao, times(1)).deleteById(del_id);
+        verify(availabilityService, times(1)).release(del_id);
+    }
+
+    //Function: 删除订单
+    //Scenario: 删除已有订单时按原状态减少计数
+    @Test
+    void delOrder_counter() {
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_FINISH);
+        when(orderDao.findStateByOrderID(order2.getOrderID())).thenReturn(STATE_FINISH);
+        orderService.delOrder(order2.getOrderID());
+        verify(orderDao, times(1)).deleteById(order2.getOrderID());
+        assertEquals(0, statusCounters.get(StatusCounters.Kind.ORDER, STATE_FINISH));
     }
 
     //Function: 订单审核通过
@@ -283,10 +502,11 @@ class OrderServiceImplTest {
     @Test
     void confirmOrder() {
         when(orderDao.findByOrderID(orderID[VALID])).thenReturn(order1);
-        doNothing().when(orderDao).updateState(STATE_WAIT, orderID[VALID]);
+        when(orderDao.updateState(STATE_WAIT, orderID[VALID], STATE_NO_AUDIT)).thenReturn(1);
         orderService.confirmOrder(orderID[VALID]);
         verify(orderDao, times(1)).findByOrderID(orderID[VALID]);
-        verify(orderDao, times(1)).updateState(STATE_WAIT, orderID[VALID]);
+        verify(orderDao, times(1)).updateState(STATE_WAIT, orderID[VALID], STATE_NO_AUDIT);
+        verify(statusCounters, times(1)).move(StatusCounters.Kind.ORDER, STATE_NO_AUDIT, STATE_WAIT);
     }
 
     //Function: 订单审核通过
@@ -316,6 +536,7 @@ class OrderServiceImplTest {
         } catch (RuntimeException e) {
             verify(orderDao, times(1)).findByOrderID(orderID);
             verify(orderDao, never()).updateState(STATE_WAIT, orderID);
+            verify(statusCounters, never()).move(any(), anyInt(), anyInt());
             assertEquals("订单状态不是待审核", e.getMessage());
         }
     }
@@ -325,10 +546,10 @@ class OrderServiceImplTest {
     @Test
     void finishOrder() {
         when(orderDao.findByOrderID(orderID[VALID])).thenReturn(order1);
-        doNothing().when(orderDao).updateState(STATE_FINISH, orderID[VALID]);
+        when(orderDao.updateState(STATE_FINISH, orderID[VALID], STATE_WAIT)).thenReturn(1);
         orderService.finishOrder(orderID[VALID]);
         verify(orderDao, times(1)).findByOrderID(orderID[VALID]);
-        verify(orderDao, times(1)).updateState(STATE_FINISH, orderID[VALID]);
+        verify(orderDao, times(1)).updateState(STATE_FINISH, orderID[VALID], STATE_WAIT);
     }
 
     //Function: 完成订单
@@ -367,10 +588,12 @@ class OrderServiceImplTest {
     @Test
     void rejectOrder() {
         when(orderDao.findByOrderID(orderID[VALID])).thenReturn(order1);
-        doNothing().when(orderDao).updateState(STATE_REJECT, orderID[VALID]);
+        when(orderDao.updateState(STATE_REJECT, orderID[VALID], STATE_NO_AUDIT)).thenReturn(1);
         orderService.rejectOrder(orderID[VALID]);
         verify(orderDao, times(1)).findByOrderID(orderID[VALID]);
-        verify(orderDao, times(1)).updateState(STATE_REJECT, orderID[VALID]);
+        verify(orderDao, times(1)).updateState(STATE_REJECT, orderID[VALID], STATE_NO_AUDIT);
+        verify(availabilityService, times(1)).release(orderID[VALID]);
+        verify(statusCounters, times(1)).move(StatusCounters.Kind.ORDER, STATE_NO_AUDIT, STATE_REJECT);
     }
 
     //Function: 拒绝订单
@@ -435,24 +658,81 @@ class OrderServiceImplTest {
         verify(orderDao, times(3)).findAllByState(STATE_NO_AUDIT, pageable);
     }
 
-    //Function: 返回所有审核通过的订单(以列表形式)
-    //Scenario: 成功查询
-    //Notice: 返回的List<Order>不会为null，但是可能为空
+    private void batchReturns(int... counts) {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        when(jdbcTemplate.batchUpdate(eq(OrderServiceImpl.TRANSITION_SQL), anyList())).thenReturn(counts);
+    }
+
+    //Function: 批量通过订单
+    //Scenario: 一次批量更新按未审核状态比较后修改，只返回实际修改的订单，重复的id只处理一次
+    @Test
+    void confirmOrders_cas() {
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_NO_AUDIT);
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_NO_AUDIT);
+        batchReturns(1, 0, 1);
+
+        List<Integer> moved = orderService.confirmOrders(Arrays.asList(1, 2, 3, 1));
+
+        assertEquals(Arrays.asList(1, 3), moved);
+        verify(jdbcTemplate, times(1)).batchUpdate(eq(OrderServiceImpl.TRANSITION_SQL), argThat((List<Object[]> args) ->
+                args.size() == 3 && Arrays.equals(new Object[]{STATE_WAIT, 2, STATE_NO_AUDIT}, args.get(1))));
+        verify(orderDao, never()).findByOrderID(anyInt());
+        assertEquals(0, statusCounters.get(StatusCounters.Kind.ORDER, STATE_NO_AUDIT));
+        assertEquals(2, statusCounters.get(StatusCounters.Kind.ORDER, STATE_WAIT));
+        verifyNoInteractions(availabilityService);
+    }
+
+    //Function: 批量驳回订单
+    //Scenario: 只有实际驳回的订单释放时段
     @Test
-    void findAuditOrder() {
-        order1.setState(STATE_WAIT);
-        order2.setState(STATE_FINISH);
-        List<Order> orders = Arrays.asList(order1, order2);
+    void rejectOrders_release_moved() {
+        batchReturns(0, 1);
+
+        List<Integer> moved = orderService.rejectOrders(Arrays.asList(5, 6));
+
+        assertEquals(Collections.singletonList(6), moved);
+        verify(availabilityService, times(1)).release(6);
+        verify(availabilityService, never()).release(5);
+        assertEquals(1, statusCounters.get(StatusCounters.Kind.ORDER, STATE_REJECT));
+        verify(orderDao, never()).findAllById(any());
+    }
 
-        when(orderDao.findAudit(STATE_WAIT, STATE_FINISH)).thenReturn(orders);
+    //Function: 批量驳回订单
+    //Scenario: 发布了抢订库存时实际驳回的订单退回时段
+    @Test
+    void rejectOrders_flash_release() {
+        batchReturns(0, 1);
+        LocalDate day = startTime[VALID].toLocalDate();
+        int hour = startTime[VALID].getHour();
+        flashInventory.publish(venue.getVenueID(), day, -1, 1 << hour);
+        order1.setOrderID(6);
+        when(orderDao.findAllById(Collections.singletonList(6))).thenReturn(Collections.singletonList(order1));
 
-        List<Order> result = orderService.findAuditOrder();
+        orderService.rejectOrders(Arrays.asList(5, 6));
 
-        assertEquals(2, result.size());
-        assertEquals(order1.getOrderID(), result.get(0).getOrderID());
-        assertEquals(STATE_WAIT, result.get(0).getState());
-        assertEquals(order2.getOrderID(), result.get(1).getOrderID());
-        assertEquals(STATE_FINISH, result.get(1).getState());
-        verify(orderDao, times(1)).findAudit(STATE_WAIT, STATE_FINISH);
+        assertTrue(flashInventory.remainingHours(venue.getVenueID(), day).contains(hour));
+    }
+
+    //Function: 批量通过订单
+    //Scenario: 空列表不访问数据库
+    @Test
+    void confirmOrders_empty() {
+        assertTrue(orderService.confirmOrders(Collections.emptyList()).isEmpty());
+        verifyNoInteractions(jdbcTemplate, transactionTemplate);
+    }
+
+    //Function: 返回审核通过的订单总数
+    //Scenario: 待使用和已完成的计数之和，不查询数据库
+    @Test
+    void countAuditOrder() {
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_NO_AUDIT);
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_WAIT);
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_WAIT);
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_FINISH);
+        statusCounters.increment(StatusCounters.Kind.ORDER, STATE_REJECT);
+
+        assertEquals(3, orderService.countAuditOrder());
+        verifyNoInteractions(orderDao);
     }
 }
\ No newline at end of file
@@ -4,18 +4,35 @@ import com.demo.dao.OrderDao;
 import com.demo.dao.VenueDao;
 import com.demo.entity.Order;
 import com.demo.entity.Venue;
+import com.demo.entity.vo.KeysetPage;
 import com.demo.entity.vo.OrderVo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
+import static com.demo.service.OrderService.STATE_FINISH;
+import static com.demo.service.OrderService.STATE_NO_AUDIT;
+import static com.demo.service.OrderService.STATE_WAIT;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
@@ -27,6 +44,9 @@ class OrderVoServiceImplTest {
     @Mock
     private VenueDao venueDao;
 
+    @Spy
+    private VenueCache venueCache = new VenueCache();
+
     @InjectMocks
     private OrderVoServiceImpl orderVoServiceImpl;
 
@@ -90,19 +110,15 @@ class OrderVoServiceImplTest {
     @Test
     void returnVo_ok() {
         //given
-        for(int i = 0; i < 3; i++){
-            when(orderDao.findByOrderID(i)).thenReturn(ordersList.get(i));
-            when(venueDao.findByVenueID(ordersList.get(i).getVenueID())).thenReturn(venues[i]);
-        }
+        when(venueDao.findByVenueIDIn(anyCollection())).thenReturn(Arrays.asList(venues));
 
         //when
         List<OrderVo> result = orderVoServiceImpl.returnVo(ordersList);
 
         //then
-        for(int i = 0; i < 3; i++){
-            verify(orderDao, times(1)).findByOrderID(i);
-            verify(venueDao, times(1)).findByVenueID(ordersList.get(i).getVenueID());
-        }
+        verify(orderDao, never()).findByOrderID(anyInt());
+        verify(venueDao, never()).findByVenueID(anyInt());
+        verify(venueDao, times(1)).findByVenueIDIn(argThat(ids -> new HashSet<>(ids).equals(new HashSet<>(Arrays.asList(0, 1, 2)))));
         assertNotNull(result);
         assertEquals(result, orderVosList);
     }
@@ -112,10 +128,7 @@ class OrderVoServiceImplTest {
     @Test
     void returnVo_some_order_null() {
         //given
-        for(int i = 0; i < 3; i++){
-            when(orderDao.findByOrderID(i)).thenReturn(ordersList.get(i));
-            when(venueDao.findByVenueID(ordersList.get(i).getVenueID())).thenReturn(venues[i]);
-        }
+        when(venueDao.findByVenueIDIn(anyCollection())).thenReturn(Arrays.asList(venues[1], venues[2]));
         ordersList.set(0, null);
 
         //when
@@ -128,4 +141,170 @@ class OrderVoServiceImplTest {
         assertEquals(result.get(2), orderVosList.get(2));
     }
 
-}
\ No newline at end of file
+    //Function: 根据order列表返回OrderVo的列表
+    //Scenario: order对应的场馆已被删除
+    @Test
+    void returnVo_venue_not_exist() {
+        //given
+        when(venueDao.findByVenueIDIn(anyCollection())).thenReturn(Arrays.asList(venues[1], venues[2]));
+
+        //when
+        List<OrderVo> result = orderVoServiceImpl.returnVo(ordersList);
+
+        //then
+        assertEquals(3, result.size());
+        assertNull(result.get(0).getVenueName());
+        assertEquals(ordersList.get(0).getOrderID(), result.get(0).getOrderID());
+        assertEquals(result.get(1), orderVosList.get(1));
+    }
+
+    //Function: 根据order列表返回OrderVo的列表
+    //Scenario: 无论分页大小，查询次数固定为一次场馆IN查询
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 1000})
+    void returnVo_query_count_fixed(int pageSize) {
+        //given
+        LocalDateTime time = LocalDateTime.of(2023, 4, 13, 10, 0);
+        List<Order> page = new ArrayList<>();
+        for(int i = 0; i < pageSize; i++){
+            page.add(new Order(i, "user"+i, i % 3, 1, time, time, 1, 100));
+        }
+        when(venueDao.findByVenueIDIn(anyCollection())).thenReturn(Arrays.asList(venues));
+
+        //when
+        List<OrderVo> result = orderVoServiceImpl.returnVo(page);
+
+        //then
+        assertEquals(pageSize, result.size());
+        verify(venueDao, times(1)).findByVenueIDIn(anyCollection());
+        verifyNoMoreInteractions(venueDao);
+        verifyNoInteractions(orderDao);
+    }
+
+    //Function: 根据order列表返回OrderVo的列表
+    //Scenario: 空列表不访问数据库
+    @Test
+    void returnVo_empty() {
+        List<OrderVo> result = orderVoServiceImpl.returnVo(new ArrayList<>());
+
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(orderDao, venueDao);
+    }
+
+    //Function: 分页返回用户的OrderVo
+    //Scenario: 直接使用投影查询，不逐条查询订单和场馆
+    @Test
+    void findUserOrderVo_ok() {
+        //given
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("orderTime").descending());
+        Page<OrderVo> page = new PageImpl<>(orderVosList, pageable, orderVosList.size());
+        when(orderDao.findVoByUserID("user0", pageable)).thenReturn(page);
+
+        //when
+        Page<OrderVo> result = orderVoServiceImpl.findUserOrderVo("user0", pageable);
+
+        //then
+        assertEquals(page, result);
+        verify(orderDao, times(1)).findVoByUserID("user0", pageable);
+        verifyNoMoreInteractions(orderDao);
+        verifyNoInteractions(venueDao);
+    }
+
+    //Function: 键集分页返回用户的OrderVo
+    //Scenario: 第一页返回游标，按游标取下一页直到没有更多订单
+    @Test
+    void findUserOrderAfter_ok() {
+        //given
+        LocalDateTime time = LocalDateTime.of(2023, 4, 13, 10, 0);
+        List<OrderVo> rows = new ArrayList<>();
+        for (int i = 3; i > 0; i--) {
+            rows.add(new OrderVo(i, "user0", 1, "venue", 1, time, time, 1, 100));
+        }
+        when(orderDao.findVoByUserIDOrderByOrderTime("user0", PageRequest.of(0, 3))).thenReturn(rows);
+        when(orderDao.findVoByUserIDAfter("user0", time, 2, PageRequest.of(0, 3))).thenReturn(rows.subList(2, 3));
+
+        //when
+        KeysetPage<OrderVo> first = orderVoServiceImpl.findUserOrderAfter("user0", null, 2);
+        KeysetPage<OrderVo> second = orderVoServiceImpl.findUserOrderAfter("user0", first.getNext(), 2);
+
+        //then
+        assertEquals(rows.subList(0, 2), first.getContent());
+        assertEquals(rows.subList(2, 3), second.getContent());
+        assertNull(second.getNext());
+        verifyNoInteractions(venueDao);
+    }
+
+    //Function: 键集分页返回用户的OrderVo
+    //Scenario: 下单时间为null的订单排在最后，上一页最后一条的时间为null时按orderID继续
+    @Test
+    void findUserOrderAfter_null_time() {
+        //given
+        List<OrderVo> rows = new ArrayList<>();
+        for (int i = 3; i > 0; i--) {
+            rows.add(new OrderVo(i, "user0", 1, "venue", 1, null, null, 1, 100));
+        }
+        when(orderDao.findVoByUserIDOrderByOrderTime("user0", PageRequest.of(0, 3))).thenReturn(rows);
+        when(orderDao.findVoByUserIDAfterNullTime("user0", 2, PageRequest.of(0, 3))).thenReturn(rows.subList(2, 3));
+
+        //when
+        KeysetPage<OrderVo> first = orderVoServiceImpl.findUserOrderAfter("user0", null, 2);
+        KeysetPage<OrderVo> second = orderVoServiceImpl.findUserOrderAfter("user0", first.getNext(), 2);
+
+        //then
+        assertEquals(rows.subList(2, 3), second.getContent());
+        assertNull(second.getNext());
+        verify(orderDao, never()).findVoByUserIDAfter(anyString(), any(), anyInt(), any());
+    }
+
+    //Function: 分页返回未审核的OrderVo
+    //Scenario: 按未审核状态投影查询
+    @Test
+    void findNoAuditOrderVo_ok() {
+        //given
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("orderTime").descending());
+        Page<OrderVo> page = new PageImpl<>(orderVosList, pageable, orderVosList.size());
+        when(orderDao.findVoByState(STATE_NO_AUDIT, pageable)).thenReturn(page);
+
+        //when
+        Page<OrderVo> result = orderVoServiceImpl.findNoAuditOrderVo(pageable);
+
+        //then
+        assertEquals(page, result);
+        verify(orderDao, times(1)).findVoByState(STATE_NO_AUDIT, pageable);
+        verifyNoInteractions(venueDao);
+    }
+
+    //Function: 分页返回已审核的OrderVo
+    //Scenario: 按待使用和已完成两种状态投影查询，不执行count
+    @Test
+    void findAuditOrderVo_ok() {
+        //given
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("orderTime").descending());
+        Slice<OrderVo> slice = new SliceImpl<>(orderVosList, pageable, false);
+        when(orderDao.findVoSliceByStateIn(Arrays.asList(STATE_WAIT, STATE_FINISH), pageable)).thenReturn(slice);
+
+        //when
+        Slice<OrderVo> result = orderVoServiceImpl.findAuditOrderVo(pageable);
+
+        //then
+        assertEquals(slice, result);
+        verify(orderDao, never()).count();
+        verifyNoInteractions(venueDao);
+    }
+
+    //Function: 根据order列表返回OrderVo的列表
+    //Scenario: 场馆已在缓存中时不再查询数据库
+    @Test
+    void returnVo_venue_cached() {
+        //given
+        when(venueDao.findByVenueIDIn(anyCollection())).thenReturn(Arrays.asList(venues));
+        orderVoServiceImpl.returnVo(ordersList);
+
+        //when
+        List<OrderVo> result = orderVoServiceImpl.returnVo(ordersList);
+
+        //then
+        assertEquals(orderVosList, result);
+        verify(venueDao, times(1)).findByVenueIDIn(anyCollection());
+    }
+}
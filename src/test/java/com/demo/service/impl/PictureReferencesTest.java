@@ -0,0 +1,58 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.service.FileStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PictureReferencesTest {
+
+    @Mock
+    private VenueDao venueDao;
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private FileStorage fileStorage;
+
+    @InjectMocks
+    private PictureReferences pictureReferences;
+
+    //Function: 释放图片引用
+    //Scenario: 没有其他引用的图片移到隔离区，不直接删除，由回收任务过了隔离期再删除
+    @Test
+    void release_quarantine() throws Exception {
+        when(venueDao.countByPicture("file/venue/a.jpg")).thenReturn(0);
+        when(userDao.countByPicture("file/venue/a.jpg")).thenReturn(0);
+
+        pictureReferences.release("file/venue/a.jpg");
+
+        verify(fileStorage).quarantine("file/venue/a.jpg", PictureReferences.GRACE_MILLIS);
+        verify(fileStorage, never()).delete(anyString(), anyLong());
+        verify(fileStorage, never()).purge(anyString());
+    }
+
+    //Function: 释放图片引用
+    //Scenario: 还有引用或没有图片时不动文件
+    @Test
+    void release_referenced() throws Exception {
+        when(venueDao.countByPicture("file/venue/a.jpg")).thenReturn(0);
+        when(userDao.countByPicture("file/venue/a.jpg")).thenReturn(1);
+
+        pictureReferences.release("file/venue/a.jpg");
+        pictureReferences.release(null);
+        pictureReferences.release("");
+
+        verifyNoInteractions(fileStorage);
+    }
+}
@@ -0,0 +1,262 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 注册高峰下逐条注册和注册流水线的延迟与内存分配对比。
+ * DAO用mock模拟：连接池有CONNECTIONS个连接，每次查询固定耗时，每次事务提交要独占一次日志刷盘，
+ * 用户表里已有EXISTING个用户，原来的create每次注册都要把整张表读出来。
+ * 内存分配按所有线程统计，结果打印到标准输出。
+ * 结果取决于机器负载，只断言每种方式都完成了全部注册，不比较耗时；
+ * 默认的测试不运行，用mvn test -Pbenchmark运行。
+ */
+@Tag("benchmark")
+class RegistrationPipelineBenchmarkTest {
+
+    static final int EXISTING = 10000;
+    static final int CLIENTS = 32;
+    static final int REGISTRATIONS = 2000;
+    static final long QUERY_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    static final long COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    static final int CONNECTIONS = 10;
+
+    UserDao userDao;
+    AtomicInteger ids;
+    AtomicInteger commits;
+    Semaphore connections;
+    Object logFlush;
+    RegistrationPipeline registrationPipeline;
+
+    @BeforeEach
+    void setUp() {
+        userDao = mock(UserDao.class);
+        ids = new AtomicInteger(EXISTING);
+        commits = new AtomicInteger();
+        connections = new Semaphore(CONNECTIONS);
+        logFlush = new Object();
+
+        when(userDao.findAll()).thenAnswer(invocation -> {
+            query();
+            List<User> all = new ArrayList<>(EXISTING);
+            for (int i = 0; i < EXISTING; i++) {
+                all.add(new User(i, "user" + i, "name", "password", "", "", 0, ""));
+            }
+            return all;
+        });
+        when(userDao.countByUserID(anyString())).thenAnswer(invocation -> {
+            query();
+            return 0;
+        });
+        when(userDao.findByUserIDIn(anyCollection())).thenAnswer(invocation -> {
+            query();
+            return new ArrayList<User>();
+        });
+        when(userDao.save(any(User.class))).thenAnswer(invocation -> {
+            commit();
+            User user = invocation.getArgument(0);
+            user.setId(ids.incrementAndGet());
+            return user;
+        });
+        when(userDao.saveAll(anyList())).thenAnswer(invocation -> {
+            commit();
+            List<User> users = invocation.getArgument(0);
+            for (User user : users) {
+                user.setId(ids.incrementAndGet());
+            }
+            return users;
+        });
+
+        registrationPipeline = new RegistrationPipeline();
+        ReflectionTestUtils.setField(registrationPipeline, "userDao", userDao);
+        ReflectionTestUtils.setField(registrationPipeline, "statusCounters", new StatusCounters());
+        ReflectionTestUtils.setField(registrationPipeline, "existenceFilter", new ExistenceFilter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        registrationPipeline.shutdown();
+    }
+
+    private void query() throws InterruptedException {
+        connections.acquire();
+        try {
+            LockSupport.parkNanos(QUERY_NANOS);
+        } finally {
+            connections.release();
+        }
+    }
+
+    private void commit() throws InterruptedException {
+        connections.acquire();
+        try {
+            synchronized (logFlush) {
+                LockSupport.parkNanos(COMMIT_NANOS);
+            }
+            commits.incrementAndGet();
+        } finally {
+            connections.release();
+        }
+    }
+
+    /**
+     * 改动前的注册：先检查userID，再逐条插入，最后读全表得到返回值
+     */
+    private int loadAllCreate(User user) {
+        if (userDao.countByUserID(user.getUserID()) > 0) {
+            throw new RuntimeException("用户名已存在");
+        }
+        userDao.save(user);
+        return userDao.findAll().size();
+    }
+
+    /**
+     * 只去掉读全表，仍然逐条检查、逐条提交
+     */
+    private int singleCreate(User user) {
+        if (userDao.countByUserID(user.getUserID()) > 0) {
+            throw new RuntimeException("用户名已存在");
+        }
+        return userDao.save(user).getId();
+    }
+
+    @Test
+    void benchmark() throws Exception {
+        Result loadAll = run("load all", this::loadAllCreate, false);
+        Result single = run("single", this::singleCreate, true);
+        Result pipeline = run("pipeline", registrationPipeline::register, true);
+
+        for (Result result : Arrays.asList(loadAll, single, pipeline)) {
+            System.out.println(result);
+        }
+
+        assertEquals(REGISTRATIONS, single.commits);
+    }
+
+    private Result run(String name, ToIntFunction<User> register, boolean returnsId) throws Exception {
+        commits.set(0);
+        long[] latencies = new long[REGISTRATIONS];
+        Set<Integer> created = ConcurrentHashMap.newKeySet();
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        Map<Long, Long> before = allocatedBytes();
+        for (int c = 0; c < CLIENTS; c++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                int i;
+                while ((i = next.getAndIncrement()) < REGISTRATIONS) {
+                    User user = new User();
+                    user.setUserID(name + i);
+                    long begin = System.nanoTime();
+                    created.add(register.applyAsInt(user));
+                    latencies[i] = System.nanoTime() - begin;
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - begin;
+        Map<Long, Long> after = allocatedBytes();
+        pool.shutdown();
+
+        if (returnsId) {
+            assertEquals(REGISTRATIONS, created.size());
+        }
+        long bytes = -1;
+        if (!after.isEmpty()) {
+            bytes = 0;
+            for (Map.Entry<Long, Long> entry : after.entrySet()) {
+                bytes += entry.getValue() - before.getOrDefault(entry.getKey(), 0L);
+            }
+        }
+        Arrays.sort(latencies);
+        return new Result(name, elapsed, latencies, bytes < 0 ? -1 : bytes / REGISTRATIONS, commits.get());
+    }
+
+    /**
+     * 每个存活线程累计分配的字节数，JVM不支持时返回空
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        Map<Long, Long> bytes = new HashMap<>();
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return bytes;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return bytes;
+        }
+        long[] threadIds = bean.getAllThreadIds();
+        long[] sizes = sunBean.getThreadAllocatedBytes(threadIds);
+        for (int i = 0; i < threadIds.length; i++) {
+            if (sizes[i] >= 0) {
+                bytes.put(threadIds[i], sizes[i]);
+            }
+        }
+        return bytes;
+    }
+
+    static class Result {
+        final String name;
+        final long elapsedNanos;
+        final long[] latencies;
+        final long bytesPerOp;
+        final int commits;
+
+        Result(String name, long elapsedNanos, long[] latencies, long bytesPerOp, int commits) {
+            this.name = name;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.bytesPerOp = bytesPerOp;
+            this.commits = commits;
+        }
+
+        long percentileMicros(double p) {
+            return TimeUnit.NANOSECONDS.toMicros(latencies[(int) Math.min(latencies.length - 1, latencies.length * p)]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-9s %6d ops/s  p50 %6dus  p90 %6dus  p99 %6dus  max %6dus  %9d B/op  %5d commits",
+                    name, REGISTRATIONS * 1000000000L / elapsedNanos, percentileMicros(0.5), percentileMicros(0.9),
+                    percentileMicros(0.99), percentileMicros(1), bytesPerOp, commits);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.demo.service.impl.StatusCounters.Kind.USER;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RegistrationPipelineTest {
+
+    @Mock
+    private UserDao userDao;
+
+    @Spy
+    private StatusCounters statusCounters;
+
+    @Spy
+    private ExistenceFilter existenceFilter;
+
+    @InjectMocks
+    private RegistrationPipeline registrationPipeline;
+
+    @AfterEach
+    void tearDown() {
+        registrationPipeline.shutdown();
+    }
+
+    private static User user(String userID) {
+        User user = new User();
+        user.setUserID(userID);
+        return user;
+    }
+
+    private static RegistrationPipeline.Pending pending(String userID) {
+        return new RegistrationPipeline.Pending(user(userID));
+    }
+
+    private static List<User> assignIds(List<User> users, int first) {
+        List<User> saved = new ArrayList<>();
+        for (User user : users) {
+            user.setId(first++);
+            saved.add(user);
+        }
+        return saved;
+    }
+
+    //Function: 注册
+    //Scenario: 一次查询检查唯一性，一次saveAll插入，返回新id并计数
+    @Test
+    void register_ok() {
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(userDao.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0), 30));
+
+        int id = registrationPipeline.register(user("newUser"));
+
+        assertEquals(30, id);
+        assertEquals(1, statusCounters.get(USER, 0));
+        verify(userDao, never()).findAll();
+        verify(userDao, never()).save(any(User.class));
+    }
+
+    //Function: 注册
+    //Scenario: userID已存在，抛出异常且不插入
+    @Test
+    void register_exist() {
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Collections.singletonList(user("test")));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> registrationPipeline.register(user("test")));
+
+        assertEquals("用户名已存在", e.getMessage());
+        verify(userDao, never()).saveAll(anyList());
+        assertEquals(0, statusCounters.get(USER, 0));
+    }
+
+    //Function: 批量写入
+    //Scenario: 同一批里一个已存在、两个重复，只查询一次、插入一次，先到的成功
+    @Test
+    void flush_batch() throws Exception {
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Collections.singletonList(user("old")));
+        when(userDao.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0), 40));
+        List<RegistrationPipeline.Pending> batch = Arrays.asList(pending("a"), pending("old"), pending("b"), pending("a"));
+
+        registrationPipeline.flush(batch);
+
+        assertEquals(40, batch.get(0).future.get(1, TimeUnit.SECONDS));
+        assertEquals(41, batch.get(2).future.get(1, TimeUnit.SECONDS));
+        assertTrue(batch.get(1).future.isCompletedExceptionally());
+        assertTrue(batch.get(3).future.isCompletedExceptionally());
+        verify(userDao, times(1)).findByUserIDIn(anyCollection());
+        verify(userDao, times(1)).saveAll(argThat(users -> ((List<User>) users).size() == 2));
+        assertEquals(2, statusCounters.get(USER, 0));
+    }
+
+    //Function: 批量写入
+    //Scenario: 批量插入失败时逐条重试，只有冲突的那个失败
+    @Test
+    void flush_fallback() throws Exception {
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(userDao.saveAll(anyList())).thenThrow(new RuntimeException("Duplicate entry"));
+        when(userDao.save(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            if (user.getUserID().equals("racer")) {
+                throw new DataIntegrityViolationException("Duplicate entry");
+            }
+            user.setId(50);
+            return user;
+        });
+        List<RegistrationPipeline.Pending> batch = Arrays.asList(pending("racer"), pending("c"));
+
+        registrationPipeline.flush(batch);
+
+        CompletableFuture<Integer> failed = batch.get(0).future;
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+        assertEquals("用户名已存在", e.getCause().getMessage());
+        assertEquals(50, batch.get(1).future.get(1, TimeUnit.SECONDS));
+        assertEquals(1, statusCounters.get(USER, 0));
+    }
+
+    //Function: 批量写入
+    //Scenario: userID列不区分大小写，只差大小写的已存在用户和同一批里的重复都算用户名已存在，不让saveAll撞上唯一键
+    @Test
+    void flush_case_insensitive() throws Exception {
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Collections.singletonList(user("Alice")));
+        when(userDao.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0), 70));
+        List<RegistrationPipeline.Pending> batch = Arrays.asList(pending("alice"), pending("Bob"), pending("bob "));
+
+        registrationPipeline.flush(batch);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> batch.get(0).future.get(1, TimeUnit.SECONDS));
+        assertEquals("用户名已存在", e.getCause().getMessage());
+        assertEquals(70, batch.get(1).future.get(1, TimeUnit.SECONDS));
+        assertTrue(batch.get(2).future.isCompletedExceptionally());
+        verify(userDao, times(1)).saveAll(anyList());
+        verify(userDao, never()).save(any(User.class));
+    }
+
+    //Function: 批量写入
+    //Scenario: 过滤器判定一定不存在的userID不参与唯一性查询，全部不存在时不查询
+    @Test
+    void flush_filtered() {
+        ReflectionTestUtils.setField(existenceFilter, "userDao", userDao);
+        when(userDao.findAllUserID()).thenReturn(Collections.singletonList("old"));
+        existenceFilter.rebuild(ExistenceFilter.Kind.USER_ID);
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Collections.singletonList(user("old")));
+        when(userDao.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0), 60));
+
+        registrationPipeline.flush(Arrays.asList(pending("old"), pending("d")));
+        registrationPipeline.flush(Collections.singletonList(pending("e")));
+
+        verify(userDao, times(1)).findByUserIDIn(Collections.singleton("old"));
+        assertTrue(existenceFilter.mightContain(ExistenceFilter.Kind.USER_ID, "d"));
+        assertTrue(existenceFilter.mightContain(ExistenceFilter.Kind.USER_ID, "e"));
+    }
+
+    /**
+     * saveAll在gate打开前阻塞，按调用顺序分配id
+     */
+    private AtomicInteger blockingSaveAll(CountDownLatch gate) {
+        AtomicInteger ids = new AtomicInteger(100);
+        AtomicInteger commits = new AtomicInteger();
+        when(userDao.findByUserIDIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(userDao.saveAll(anyList())).thenAnswer(invocation -> {
+            gate.await();
+            commits.incrementAndGet();
+            List<User> users = invocation.getArgument(0);
+            return assignIds(users, ids.getAndAdd(users.size()) + 1);
+        });
+        return commits;
+    }
+
+    //Function: 注册
+    //Scenario: 注册高峰时前一批提交期间到达的请求组成下一批，提交次数远少于注册数
+    @Test
+    void submit_batched() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger commits = blockingSaveAll(gate);
+        int registrations = 200;
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        futures.add(registrationPipeline.submit(user("user0")));
+        verify(userDao, timeout(1000)).saveAll(anyList());
+        for (int i = 1; i < registrations; i++) {
+            futures.add(registrationPipeline.submit(user("user" + i)));
+        }
+        gate.countDown();
+        Set<Integer> ids = new HashSet<>();
+        for (CompletableFuture<Integer> future : futures) {
+            ids.add(future.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(registrations, ids.size());
+        assertTrue(commits.get() < registrations / 4, "commits: " + commits.get());
+        assertEquals(registrations, statusCounters.get(USER, 0));
+    }
+
+    //Function: 注册
+    //Scenario: 写入线程取走注册后调用方超时，继续等到写入完成并得到id，不报告超时
+    @Test
+    void register_insert_after_timeout() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        blockingSaveAll(gate);
+        ReflectionTestUtils.setField(registrationPipeline, "timeoutMillis", 50L);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        AtomicReference<Thread> caller = new AtomicReference<>();
+        Future<Integer> id = pool.submit(() -> {
+            caller.set(Thread.currentThread());
+            return registrationPipeline.register(user("late"));
+        });
+        verify(userDao, timeout(1000)).saveAll(anyList());
+        // 限时等待时是TIMED_WAITING，超时后取消失败转入不限时的等待才是WAITING
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (caller.get().getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "caller state: " + caller.get().getState());
+            Thread.yield();
+        }
+        assertFalse(id.isDone());
+        gate.countDown();
+
+        assertEquals(101, id.get(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    //Function: 注册
+    //Scenario: 还在排队的注册超时后被取消，调用方得到超时错误，之后不再写入，重试不会提示用户名已存在
+    @Test
+    void register_cancelled() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        blockingSaveAll(gate);
+        ReflectionTestUtils.setField(registrationPipeline, "timeoutMillis", 100L);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Integer> first = pool.submit(() -> registrationPipeline.register(user("first")));
+        verify(userDao, timeout(1000)).saveAll(anyList());
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> registrationPipeline.register(user("second")));
+        gate.countDown();
+
+        assertEquals("注册超时，请稍后再试", e.getMessage());
+        assertEquals(101, first.get(5, TimeUnit.SECONDS));
+        assertEquals(102, registrationPipeline.register(user("second")));
+        verify(userDao, times(2)).saveAll(anyList());
+        assertEquals(2, statusCounters.get(USER, 0));
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,127 @@
+package com.demo.service.impl;
+
+import com.demo.dao.MessageDao;
+import com.demo.dao.OrderDao;
+import com.demo.dao.UserDao;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.demo.service.impl.StatusCounters.Kind.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StatusCountersTest {
+
+    @Mock
+    private MessageDao messageDao;
+
+    @Mock
+    private OrderDao orderDao;
+
+    @Mock
+    private UserDao userDao;
+
+    @InjectMocks
+    private StatusCounters statusCounters;
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+
+    //Function: 从数据库初始化计数
+    //Scenario: 每类只执行一次分组统计，没有记录的状态为0
+    @Test
+    void reconcile_seed() {
+        when(messageDao.countGroupByState()).thenReturn(rows(new Object[]{1, 3L}, new Object[]{2, 5L}));
+        when(orderDao.countGroupByState()).thenReturn(rows(new Object[]{1, 4L}, new Object[]{null, 9L}));
+        when(userDao.countGroupByIsadmin()).thenReturn(rows(new Object[]{0, 10L}, new Object[]{1, 1L}));
+
+        statusCounters.reconcile();
+
+        assertEquals(3, statusCounters.get(MESSAGE, 1));
+        assertEquals(5, statusCounters.get(MESSAGE, 2));
+        assertEquals(0, statusCounters.get(MESSAGE, 3));
+        assertEquals(4, statusCounters.get(ORDER, 1));
+        assertEquals(10, statusCounters.get(USER, 0));
+        assertEquals(1, statusCounters.get(USER, 1));
+        verify(messageDao, times(1)).countGroupByState();
+        verify(orderDao, times(1)).countGroupByState();
+        verify(userDao, times(1)).countGroupByIsadmin();
+    }
+
+    //Function: 状态变化时更新计数
+    //Scenario: 新增、删除、状态转移，状态不变时不改变计数
+    @Test
+    void increment_decrement_move() {
+        statusCounters.increment(ORDER, 1);
+        statusCounters.increment(ORDER, 1);
+        statusCounters.move(ORDER, 1, 2);
+        statusCounters.move(ORDER, 2, 2);
+        statusCounters.decrement(ORDER, 1);
+
+        assertEquals(0, statusCounters.get(ORDER, 1));
+        assertEquals(1, statusCounters.get(ORDER, 2));
+        verifyNoInteractions(orderDao);
+    }
+
+    //Function: 定时对账
+    //Scenario: 计数与数据库不一致时修正，数据库中已没有的状态归零
+    @Test
+    void reconcile_drift() {
+        statusCounters.increment(MESSAGE, 1);
+        statusCounters.increment(MESSAGE, 3);
+        when(messageDao.countGroupByState()).thenReturn(rows(new Object[]{1, 2L}));
+
+        statusCounters.reconcile(MESSAGE);
+
+        assertEquals(2, statusCounters.get(MESSAGE, 1));
+        assertEquals(0, statusCounters.get(MESSAGE, 3));
+        verifyNoInteractions(orderDao, userDao);
+    }
+
+    //Function: 定时对账
+    //Scenario: 数据库不可用时保留原计数
+    @Test
+    void scheduledReconcile_failed() {
+        statusCounters.increment(USER, 0);
+        when(messageDao.countGroupByState()).thenThrow(new RuntimeException("db down"));
+
+        statusCounters.scheduledReconcile();
+
+        assertEquals(1, statusCounters.get(USER, 0));
+    }
+
+    //Function: 状态变化时更新计数
+    //Scenario: 多线程并发转移，总数守恒
+    @Test
+    void move_concurrent() throws InterruptedException {
+        when(orderDao.countGroupByState()).thenReturn(rows(new Object[]{1, 10000L}));
+        when(messageDao.countGroupByState()).thenReturn(Collections.emptyList());
+        when(userDao.countGroupByIsadmin()).thenReturn(Collections.emptyList());
+        statusCounters.reconcile();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 10000; i++) {
+            int to = i % 2 == 0 ? 2 : 4;
+            pool.execute(() -> statusCounters.move(ORDER, 1, to));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, statusCounters.get(ORDER, 1));
+        assertEquals(5000, statusCounters.get(ORDER, 2));
+        assertEquals(5000, statusCounters.get(ORDER, 4));
+    }
+}
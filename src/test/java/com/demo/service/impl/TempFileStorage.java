@@ -0,0 +1,37 @@
+package com.demo.service.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 测试用的FileStorage，文件保存在新建的临时目录里，close时整个删除
+ */
+public class TempFileStorage extends LocalFileStorage implements Closeable {
+    private final Path dir;
+
+    public TempFileStorage() throws IOException {
+        this(Files.createTempDirectory("upload-"));
+    }
+
+    private TempFileStorage(Path dir) {
+        super(dir, null);
+        this.dir = dir;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.demo.service.impl;
+
+import com.demo.dao.PictureVariantDao;
+import com.demo.entity.PictureVariant;
+import com.demo.entity.Venue;
+import com.demo.service.FileStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ThumbnailerTest {
+
+    @Mock
+    private PictureVariantDao pictureVariantDao;
+
+    @Mock
+    private FileStorage fileStorage;
+
+    @InjectMocks
+    private Thumbnailer thumbnailer;
+
+    /**
+     * 生成缩略图的测试换成真实的存储
+     */
+    private TempFileStorage storage;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        thumbnailer.shutdown();
+        if (storage != null) {
+            storage.close();
+        }
+    }
+
+    private Path dir(String category) throws Exception {
+        if (storage == null) {
+            storage = new TempFileStorage();
+            ReflectionTestUtils.setField(thumbnailer, "fileStorage", storage);
+        }
+        return Files.createDirectories(storage.getDir().resolve("file/" + category));
+    }
+
+    private void image(String url, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        ImageIO.write(image, "png", storage.resolve(url).toFile());
+    }
+
+    //Function: 生成缩略图
+    //Scenario: 比原图窄的每个宽度各生成一个，按比例缩放，放在原图旁边
+    @Test
+    void generate() throws Exception {
+        Path dir = dir("venue");
+        image("file/venue/abc.png", 1000, 500);
+
+        List<PictureVariant> variants = thumbnailer.generate("file/venue/abc.png");
+
+        assertEquals(3, variants.size());
+        int[] widths = {64, 160, 480};
+        for (int i = 0; i < widths.length; i++) {
+            PictureVariant variant = variants.get(i);
+            assertEquals("file/venue/abc.png", variant.getPicture());
+            assertEquals(widths[i], variant.getWidth());
+            assertEquals("file/venue/abc_png_w" + widths[i] + ".png", variant.getPath());
+            BufferedImage scaled = ImageIO.read(dir.resolve("abc_png_w" + widths[i] + ".png").toFile());
+            assertEquals(widths[i], scaled.getWidth());
+            assertEquals(widths[i] / 2, scaled.getHeight());
+        }
+    }
+
+    //Function: 生成缩略图
+    //Scenario: 原图比最小的宽度还窄、不是图片或不存在，不生成
+    @Test
+    void generate_none() throws Exception {
+        Path dir = dir("user");
+        image("file/user/small.png", 48, 48);
+        Files.write(dir.resolve("text.jpg"), "not an image".getBytes());
+
+        assertTrue(thumbnailer.generate("file/user/small.png").isEmpty());
+        assertTrue(thumbnailer.generate("file/user/text.jpg").isEmpty());
+        assertTrue(thumbnailer.generate("file/user/none.png").isEmpty());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    //Function: 选择缩略图
+    //Scenario: 取不小于显示宽度的最小版本，都太小时用原图，记录只查询一次
+    @Test
+    void pick() {
+        when(pictureVariantDao.findByPictureIn(Collections.singleton("file/venue/a.jpg"))).thenReturn(Arrays.asList(
+                new PictureVariant(1, "file/venue/a.jpg", 64, "file/venue/a_w64.jpg"),
+                new PictureVariant(2, "file/venue/a.jpg", 160, "file/venue/a_w160.jpg")));
+
+        assertEquals("file/venue/a_w64.jpg", thumbnailer.pick("file/venue/a.jpg", 32));
+        assertEquals("file/venue/a_w160.jpg", thumbnailer.pick("file/venue/a.jpg", 100));
+        assertEquals("file/venue/a.jpg", thumbnailer.pick("file/venue/a.jpg", 800));
+        assertEquals("", thumbnailer.pick("", 64));
+        verify(pictureVariantDao, times(1)).findByPictureIn(anyCollection());
+    }
+
+    //Function: 场馆卡片
+    //Scenario: 有缩略图时返回换了图片的副本，原对象不变
+    @Test
+    void forCard() {
+        when(pictureVariantDao.findByPictureIn(Collections.singleton("file/venue/a.jpg"))).thenReturn(Collections.singletonList(
+                new PictureVariant(1, "file/venue/a.jpg", 160, "file/venue/a_w160.jpg")));
+        Venue venue = new Venue(1, "场馆1", "羽毛球馆", 200, "file/venue/a.jpg", "address", "9:00", "20:00");
+
+        Venue card = thumbnailer.forCard(venue);
+
+        assertNotSame(venue, card);
+        assertEquals("file/venue/a_w160.jpg", card.getPicture());
+        assertEquals("file/venue/a.jpg", venue.getPicture());
+        assertEquals(venue.getVenueName(), card.getVenueName());
+    }
+
+    //Function: 生成缩略图
+    //Scenario: 内容相同、扩展名不同的原图生成的版本文件名不同
+    @Test
+    void generate_by_extension() throws Exception {
+        Path dir = dir("venue");
+        image("file/venue/same.png", 200, 100);
+        Files.copy(dir.resolve("same.png"), dir.resolve("same.gif"));
+
+        String fromPng = thumbnailer.generate("file/venue/same.png").get(0).getPath();
+        String fromGif = thumbnailer.generate("file/venue/same.gif").get(0).getPath();
+
+        assertEquals("file/venue/same_png_w64.png", fromPng);
+        assertEquals("file/venue/same_gif_w64.png", fromGif);
+    }
+
+    //Function: 预加载缩略图
+    //Scenario: 一页的图片一次查询，之后pick不再查询，已缓存的不再查
+    @Test
+    void preload() {
+        when(pictureVariantDao.findByPictureIn(anyCollection())).thenReturn(Arrays.asList(
+                new PictureVariant(1, "file/venue/a.jpg", 64, "file/venue/a_jpg_w64.jpg"),
+                new PictureVariant(2, "file/venue/b.jpg", 64, "file/venue/b_jpg_w64.jpg")));
+
+        thumbnailer.preload(Arrays.asList("file/venue/a.jpg", "file/venue/b.jpg", null, ""));
+        thumbnailer.preload(Collections.singletonList("file/venue/a.jpg"));
+
+        assertEquals("file/venue/a_jpg_w64.jpg", thumbnailer.pick("file/venue/a.jpg", 64));
+        assertEquals("file/venue/b_jpg_w64.jpg", thumbnailer.pick("file/venue/b.jpg", 64));
+        verify(pictureVariantDao, times(1)).findByPictureIn(anyCollection());
+    }
+
+    //Function: 选择缩略图
+    //Scenario: 没有版本且队列满了提交不了时不缓存空结果，下次pick重新查询和提交
+    @Test
+    void pick_rejected() {
+        when(pictureVariantDao.findByPictureIn(anyCollection())).thenReturn(Collections.emptyList());
+        thumbnailer.shutdown();
+
+        assertEquals("file/venue/a.jpg", thumbnailer.pick("file/venue/a.jpg", 64));
+        assertEquals("file/venue/a.jpg", thumbnailer.pick("file/venue/a.jpg", 64));
+        verify(pictureVariantDao, times(2)).findByPictureIn(anyCollection());
+    }
+
+    //Function: 删除缩略图
+    //Scenario: 只删除原图自己的版本文件，和其他原图共用的文件保留
+    @Test
+    void forget_shared() throws Exception {
+        PictureVariant shared = new PictureVariant(1, "file/venue/a.png", 64, "file/venue/a_w64.png");
+        PictureVariant own = new PictureVariant(2, "file/venue/a.png", 160, "file/venue/a_w160.png");
+        when(pictureVariantDao.findByPictureIn(Collections.singleton("file/venue/a.png"))).thenReturn(Arrays.asList(shared, own));
+        when(pictureVariantDao.findByPathIn(anyCollection())).thenReturn(Arrays.asList(shared, own,
+                new PictureVariant(3, "file/venue/a.gif", 64, "file/venue/a_w64.png")));
+        when(fileStorage.delete("file/venue/a_w160.png", 0)).thenReturn(true);
+
+        thumbnailer.forget("file/venue/a.png");
+
+        verify(fileStorage).delete("file/venue/a_w160.png", 0);
+        verify(fileStorage, never()).delete(eq("file/venue/a_w64.png"), anyLong());
+        verify(pictureVariantDao).deleteByPicture("file/venue/a.png");
+    }
+}
@@ -0,0 +1,165 @@
+package com.demo.service.impl;
+
+import com.demo.dao.PictureVariantDao;
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.entity.PictureVariant;
+import com.demo.entity.vo.UploadGcStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UploadGcServiceImplTest {
+
+    @Mock
+    private VenueDao venueDao;
+
+    @Mock
+    private UserDao userDao;
+
+    @Mock
+    private PictureVariantDao pictureVariantDao;
+
+    @Mock
+    private Thumbnailer thumbnailer;
+
+    @InjectMocks
+    private UploadGcServiceImpl uploadGcService;
+
+    private TempFileStorage storage;
+
+    /**
+     * 被场馆引用的图片
+     */
+    private final List<String> venuePictures = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = new TempFileStorage();
+        ReflectionTestUtils.setField(uploadGcService, "fileStorage", storage);
+        ReflectionTestUtils.setField(uploadGcService, "batchSize", 100);
+        ReflectionTestUtils.setField(uploadGcService, "filesPerSecond", 0);
+        ReflectionTestUtils.setField(uploadGcService, "quarantineHours", 24L);
+        lenient().when(venueDao.findPictureIn(anyCollection())).thenAnswer(invocation -> {
+            List<String> found = new ArrayList<>(venuePictures);
+            found.retainAll(invocation.<Collection<String>>getArgument(0));
+            return found;
+        });
+        lenient().when(userDao.findPictureIn(anyCollection())).thenReturn(Collections.emptyList());
+        lenient().when(pictureVariantDao.findByPathIn(anyCollection())).thenReturn(Collections.emptyList());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storage.close();
+    }
+
+    private String file(String url, int size, boolean old) throws Exception {
+        Path file = storage.getDir().resolve(url);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        if (old) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 3600000));
+        }
+        return url;
+    }
+
+    private void expireQuarantine() {
+        ReflectionTestUtils.setField(uploadGcService, "quarantineHours", 0L);
+    }
+
+    //Function: 回收上传文件
+    //Scenario: 没有引用的旧文件移到隔离区，被引用的、缩略图和刚上传的不动
+    @Test
+    void collect_quarantine() throws Exception {
+        String used = file("file/venue/aa/aa/used.jpg", 10, true);
+        String orphan = file("file/venue/bb/bb/orphan.jpg", 20, true);
+        String fresh = file("file/user/cc/cc/fresh.jpg", 30, false);
+        String variant = file("file/venue/aa/aa/used_w64.jpg", 5, true);
+        venuePictures.add(used);
+        when(pictureVariantDao.findByPathIn(anyCollection()))
+                .thenReturn(Collections.singletonList(new PictureVariant(1, used, 64, variant)));
+
+        UploadGcStats stats = uploadGcService.collect();
+
+        assertEquals(4, stats.getScanned());
+        assertEquals(1, stats.getQuarantined());
+        assertEquals(0, stats.getPurged());
+        assertEquals(1, stats.getPasses());
+        assertTrue(Files.exists(storage.resolve(used)));
+        assertTrue(Files.exists(storage.resolve(variant)));
+        assertTrue(Files.exists(storage.resolve(fresh)));
+        assertFalse(Files.exists(storage.resolve(orphan)));
+        assertEquals(Collections.singletonList(orphan), storage.listQuarantined(0, 10));
+    }
+
+    //Function: 回收上传文件
+    //Scenario: 隔离期过后删除，统计释放的字节数并删除缩略图
+    @Test
+    void collect_purge() throws Exception {
+        String orphan = file("file/venue/bb/bb/orphan.jpg", 20, true);
+        uploadGcService.collect();
+        expireQuarantine();
+
+        UploadGcStats stats = uploadGcService.collect();
+
+        assertEquals(1, stats.getPurged());
+        assertEquals(20, stats.getReclaimedBytes());
+        assertTrue(storage.listQuarantined(0, 10).isEmpty());
+        verify(thumbnailer).forget(orphan);
+    }
+
+    //Function: 回收上传文件
+    //Scenario: 隔离期间又被引用的文件移回原处，不删除
+    @Test
+    void collect_restore() throws Exception {
+        String orphan = file("file/venue/bb/bb/orphan.jpg", 20, true);
+        uploadGcService.collect();
+        venuePictures.add(orphan);
+        expireQuarantine();
+
+        UploadGcStats stats = uploadGcService.collect();
+
+        assertEquals(1, stats.getRestored());
+        assertEquals(0, stats.getPurged());
+        assertTrue(Files.exists(storage.resolve(orphan)));
+        verify(thumbnailer, never()).forget(orphan);
+    }
+
+    //Function: 回收上传文件
+    //Scenario: 每次只处理一批，从上次的位置继续，扫完一轮后从头开始
+    @Test
+    void collect_incremental() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            venuePictures.add(file("file/venue/0" + i + "/00/" + i + ".jpg", 1, true));
+        }
+        ReflectionTestUtils.setField(uploadGcService, "batchSize", 2);
+
+        assertEquals("file/venue/01/00/1.jpg", uploadGcService.collect().getCursor());
+        assertEquals("file/venue/03/00/3.jpg", uploadGcService.collect().getCursor());
+        UploadGcStats stats = uploadGcService.collect();
+
+        assertNull(stats.getCursor());
+        assertEquals(5, stats.getScanned());
+        assertEquals(1, stats.getPasses());
+        verify(venueDao, times(3)).findPictureIn(anyCollection());
+    }
+}
@@ -0,0 +1,199 @@
+package com.demo.service.impl;
+
+import com.demo.dao.UserDao;
+import com.demo.entity.vo.ImportReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.demo.service.impl.StatusCounters.Kind.USER;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserBulkServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private UserDao userDao;
+
+    @Spy
+    private StatusCounters statusCounters;
+
+    @Spy
+    private ExistenceFilter existenceFilter;
+
+    @InjectMocks
+    private UserBulkServiceImpl userBulkService;
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        lenient().when(jdbcTemplate.batchUpdate(eq(UserBulkServiceImpl.INSERT_SQL), anyList())).thenAnswer(invocation -> {
+            List<Object[]> args = invocation.getArgument(1);
+            batchSizes.add(args.size());
+            return new int[args.size()];
+        });
+    }
+
+    //Function: 批量导入
+    //Scenario: 跳过表头，按块检查和批量插入，每块一次查询一次批量插入
+    @Test
+    void import_chunks() throws Exception {
+        StringBuilder csv = new StringBuilder("userID,userName,password,email,phone\n");
+        for (int i = 0; i < 1200; i++) {
+            csv.append("user").append(i).append(",name,pw,,\n");
+        }
+        when(userDao.findUserIDIn(anyCollection())).thenReturn(Collections.emptyList());
+
+        ImportReport report = userBulkService.importUsers(new StringReader(csv.toString()), "import1");
+
+        assertEquals(1200, report.getTotal());
+        assertEquals(1200, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertTrue(report.isFinished());
+        assertEquals(java.util.Arrays.asList(500, 500, 200), batchSizes);
+        verify(userDao, times(3)).findUserIDIn(anyCollection());
+        assertEquals(1200, statusCounters.get(USER, 0));
+        assertEquals(report, userBulkService.importProgress("import1"));
+    }
+
+    //Function: 批量导入
+    //Scenario: 已存在、文件内重复、缺字段和格式错误的行记入报告，其他行照常导入
+    @Test
+    void import_row_errors() throws Exception {
+        String csv = "﻿userID,userName,password\n"
+                + "old,name,pw\n"
+                + "new1,name,pw\n"
+                + "new1,again,pw\n"
+                + ",name,pw\n"
+                + "new2,name\n"
+                + "\n"
+                + "\"broken,name,pw\n"
+                + "new3,\"Zhang, San\",pw,a@b.c,123\n";
+        when(userDao.findUserIDIn(anyCollection())).thenReturn(Collections.singletonList("old"));
+
+        ImportReport report = userBulkService.importUsers(new StringReader(csv), "import2");
+
+        assertEquals(7, report.getTotal());
+        assertEquals(2, report.getImported());
+        assertEquals(5, report.getFailed());
+        assertEquals(java.util.Arrays.asList(4, 5, 6, 8, 2), lines(report));
+        assertEquals("用户名已存在", report.getErrors().get(4).getReason());
+        assertEquals("文件中userID重复", report.getErrors().get(0).getReason());
+        verify(jdbcTemplate).batchUpdate(eq(UserBulkServiceImpl.INSERT_SQL), argThat((List<Object[]> args) ->
+                args.size() == 2 && "Zhang, San".equals(args.get(1)[1]) && "a@b.c".equals(args.get(1)[3])));
+    }
+
+    //Function: 批量导入
+    //Scenario: userID按数据库排序规则比较，只差大小写或尾部空格的行算作重复或已存在
+    @Test
+    void import_case_insensitive() throws Exception {
+        when(userDao.findUserIDIn(anyCollection())).thenReturn(Collections.singletonList("Old"));
+
+        ImportReport report = userBulkService.importUsers(
+                new StringReader("Bob,n,pw\nbob,n,pw\nold,n,pw\ncarol,n,pw\n\"CAROL \",n,pw\n"), "import4");
+
+        assertEquals(2, report.getImported());
+        assertEquals(3, report.getFailed());
+        assertEquals(java.util.Arrays.asList(2, 5, 3), lines(report));
+        assertEquals("用户名已存在", report.getErrors().get(2).getReason());
+        assertEquals(Collections.singletonList(2), batchSizes);
+        verify(jdbcTemplate, never()).update(eq(UserBulkServiceImpl.INSERT_SQL), any(), any(), any(), any(), any());
+    }
+
+    //Function: 批量导入
+    //Scenario: 批量插入失败后逐行插入，只有冲突的行失败
+    @Test
+    void import_batch_fallback() throws Exception {
+        when(userDao.findUserIDIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(jdbcTemplate.batchUpdate(eq(UserBulkServiceImpl.INSERT_SQL), anyList()))
+                .thenThrow(new DataIntegrityViolationException("batch"));
+        when(jdbcTemplate.update(eq(UserBulkServiceImpl.INSERT_SQL), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            if ("racer".equals(invocation.getArgument(1))) {
+                throw new DuplicateKeyException("Duplicate entry");
+            }
+            return 1;
+        });
+
+        ImportReport report = userBulkService.importUsers(new StringReader("a,n,pw\nracer,n,pw\nb,n,pw\n"), "import3");
+
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, report.getErrors().get(0).getLine());
+        assertEquals(2, statusCounters.get(USER, 0));
+    }
+
+    //Function: 导入进度
+    //Scenario: 不存在的导入返回null
+    @Test
+    void importProgress_not_exist() {
+        assertNull(userBulkService.importProgress("nothing"));
+    }
+
+    //Function: 导出
+    //Scenario: 按id分块查询直到某一块不满，不导出密码
+    @Test
+    void export_keyset() throws Exception {
+        List<Integer> afters = new ArrayList<>();
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            int after = invocation.getArgument(2);
+            afters.add(after);
+            int rows = after == 0 ? UserBulkServiceImpl.CHUNK_SIZE : 1;
+            for (int i = 1; i <= rows; i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt("id")).thenReturn(after + i);
+                when(rs.getString(anyString())).thenReturn(null);
+                when(rs.getString("userID")).thenReturn("user" + (after + i));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq(UserBulkServiceImpl.EXPORT_SQL), any(RowCallbackHandler.class), anyInt(), anyInt());
+        StringWriter writer = new StringWriter();
+
+        userBulkService.exportUsers(writer);
+
+        String[] lines = writer.toString().split("\r\n");
+        assertEquals("﻿userID,userName,email,phone", lines[0]);
+        assertEquals(UserBulkServiceImpl.CHUNK_SIZE + 2, lines.length);
+        assertEquals("user501,,,", lines[lines.length - 1]);
+        assertEquals(java.util.Arrays.asList(0, UserBulkServiceImpl.CHUNK_SIZE), afters);
+    }
+
+    private static List<Integer> lines(ImportReport report) {
+        List<Integer> lines = new ArrayList<>();
+        report.getErrors().forEach(error -> lines.add(error.getLine()));
+        return lines;
+    }
+}
@@ -0,0 +1,126 @@
+package com.demo.service.impl;
+
+import com.demo.entity.Venue;
+import com.demo.entity.vo.CacheStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VenueCacheTest {
+
+    VenueCache venueCache;
+    Venue venue1, venue2;
+    AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        venueCache = new VenueCache();
+        venue1 = new Venue(1, "场馆1", "羽毛球馆", 200, "picture", "address1", "9:00", "20:00");
+        venue2 = new Venue(2, "场馆2", "游泳馆", 200, "picture", "address1", "9:00", "20:00");
+        loads = new AtomicInteger();
+    }
+
+    Venue loadByID(int venueID) {
+        loads.incrementAndGet();
+        return venueID == 1 ? venue1 : null;
+    }
+
+    Venue loadByName(String venueName) {
+        loads.incrementAndGet();
+        return venue1.getVenueName().equals(venueName) ? venue1 : null;
+    }
+
+    //Scenario: 按ID加载后，按ID和名称都能命中
+    @Test
+    void getByID_then_byName_hit() {
+        assertEquals(venue1, venueCache.getByID(1, this::loadByID));
+        assertEquals(venue1, venueCache.getByID(1, this::loadByID));
+        assertEquals(venue1, venueCache.getByName("场馆1", this::loadByName));
+
+        assertEquals(1, loads.get());
+        CacheStats stats = venueCache.stats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+
+    //Scenario: 不存在的场馆不缓存
+    @Test
+    void miss_not_cached() {
+        assertNull(venueCache.getByName("场馆3", this::loadByName));
+        assertNull(venueCache.getByName("场馆3", this::loadByName));
+        assertEquals(2, loads.get());
+        assertEquals(0, venueCache.stats().getSize());
+    }
+
+    //Scenario: 调用方修改返回的对象不影响缓存
+    @Test
+    void returns_copy() {
+        venueCache.getByID(1, this::loadByID);
+        venueCache.getByID(1, this::loadByID).setVenueName("changed");
+        assertEquals("场馆1", venueCache.getByID(1, this::loadByID).getVenueName());
+    }
+
+    //Scenario: 修改场馆后按旧名称、ID都不再命中
+    @Test
+    void evict() {
+        venueCache.getByID(1, this::loadByID);
+        venueCache.evict(1);
+        assertEquals(0, venueCache.stats().getSize());
+
+        venueCache.getByName("场馆1", this::loadByName);
+        venueCache.evictName("场馆1");
+        venueCache.getByID(1, this::loadByID);
+        assertEquals(3, loads.get());
+    }
+
+    //Scenario: 加载期间场馆被修改，加载到的旧数据不放入缓存
+    @Test
+    void evict_during_load() {
+        Venue loaded = venueCache.getByID(1, id -> {
+            venueCache.evict(id);
+            return venue1;
+        });
+        assertEquals(venue1, loaded);
+        assertEquals(0, venueCache.stats().getSize());
+    }
+
+    //Scenario: 批量查询只加载未命中的部分
+    @Test
+    void getAllByID() {
+        venueCache.getByID(1, this::loadByID);
+        Map<Integer, Venue> venues = venueCache.getAllByID(Arrays.asList(1, 2), ids -> {
+            assertEquals(Collections.singletonList(2), ids);
+            return Collections.singletonList(venue2);
+        });
+        assertEquals(venue1, venues.get(1));
+        assertEquals(venue2, venues.get(2));
+
+        venueCache.getAllByID(Arrays.asList(1, 2), ids -> {
+            fail("all venues should be cached");
+            return Collections.emptyList();
+        });
+    }
+
+    //Scenario: 超过容量时淘汰最久未使用的场馆
+    @Test
+    void bounded() {
+        for (int i = 0; i < 2000; i++) {
+            int id = i;
+            venueCache.getByID(id, venueID -> new Venue(venueID, "venue" + venueID, "", 0, "", "", "", ""));
+        }
+        assertTrue(venueCache.stats().getSize() <= 1024);
+        AtomicInteger reloaded = new AtomicInteger();
+        venueCache.getByName("venue0", name -> {
+            reloaded.incrementAndGet();
+            return null;
+        });
+        assertEquals(1, reloaded.get());
+    }
+}
@@ -2,13 +2,17 @@ package com.demo.service.impl;
 
 import com.demo.dao.VenueDao;
 import com.demo.entity.Venue;
+import com.demo.entity.vo.KeysetPage;
+import com.demo.service.HomeService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.*;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -16,6 +20,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
@@ -24,6 +29,21 @@ class VenueServiceImplTest {
     @Mock
     private VenueDao venueDao;
 
+    @Spy
+    private VenueCache venueCache = new VenueCache();
+
+    @Mock
+    private HomeService homeService;
+
+    @Spy
+    private ExistenceFilter existenceFilter;
+
+    @Mock
+    private PictureReferences pictureReferences;
+
+    @Mock
+    private Thumbnailer thumbnailer;
+
     private Venue venue1,venue2;
 
     @InjectMocks
@@ -38,14 +58,18 @@ class VenueServiceImplTest {
     @Test
     void findByVenueID() {
         // Scenario 1: ID exists
-        given(venueDao.getOne(1)).willReturn(venue1);
+        given(venueDao.findByVenueID(1)).willReturn(venue1);
         Venue actualVenue1 = venueService.findByVenueID(1);
         assertEquals(venue1, actualVenue1);
 
         // Scenario 2: ID not exists
-        given(venueDao.getOne(3)).willReturn(null);
+        given(venueDao.findByVenueID(3)).willReturn(null);
         Venue actualVenue3 = venueService.findByVenueID(3);
         assertNull(actualVenue3);
+
+        // Scenario 3: second lookup is served from the cache
+        assertEquals(venue1, venueService.findByVenueID(1));
+        verify(venueDao, times(1)).findByVenueID(1);
     }
 
     @Test
@@ -94,6 +118,39 @@ class VenueServiceImplTest {
         verify(venueDao, times(3)).findAll(pageable);
     }
 
+    //Function: 分页返回场馆列表
+    //Scenario: 整页的缩略图一次加载，图片换成卡片大小的缩略图
+    @Test
+    void findSlice_thumbnail() {
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("venueID").ascending());
+        Venue small = new Venue(1, "场馆1", "羽毛球馆", 200, "picture_w160", "address1", "9:00", "20:00");
+        when(venueDao.findAllBy(pageable)).thenReturn(new SliceImpl<>(Arrays.asList(venue1, venue2), pageable, false));
+        when(thumbnailer.forCard(venue1)).thenReturn(small);
+        when(thumbnailer.forCard(venue2)).thenReturn(venue2);
+
+        Slice<Venue> result = venueService.findSlice(pageable);
+
+        assertEquals(Arrays.asList(small, venue2), result.getContent());
+        assertEquals("picture", venue1.getPicture());
+        verify(thumbnailer, times(1)).preload(Arrays.asList(venue1.getPicture(), venue2.getPicture()));
+    }
+
+    @Test
+    void findAfter() {
+        // 第一页从venueID 0之后开始，多查一行判断是否有下一页
+        when(venueDao.findByVenueIDGreaterThanOrderByVenueIDAsc(0, PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(venue1, venue2));
+        KeysetPage<Venue> first = venueService.findAfter(null, 1);
+        assertEquals(Collections.singletonList(venue1), first.getContent());
+
+        // 下一页从上一页最后一个场馆之后开始
+        when(venueDao.findByVenueIDGreaterThanOrderByVenueIDAsc(venue1.getVenueID(), PageRequest.of(0, 2)))
+                .thenReturn(Collections.singletonList(venue2));
+        KeysetPage<Venue> second = venueService.findAfter(first.getNext(), 1);
+        assertEquals(Collections.singletonList(venue2), second.getContent());
+        assertNull(second.getNext());
+    }
+
     @Test
     void findAllList() {
         // Scenario 1: List contains data
@@ -145,6 +202,20 @@ class VenueServiceImplTest {
 
         // Verify the interaction with the mocked VenueDao
         verify(venueDao, times(1)).save(venueToUpdate);
+        verify(venueCache, times(1)).evict(venueToUpdate.getVenueID());
+        verify(venueCache, times(1)).evictName(venueToUpdate.getVenueName());
+        verify(homeService, times(1)).refresh();
+        verify(pictureReferences, never()).release(anyString());
+    }
+
+    @Test
+    void update_picture_replaced() {
+        given(venueDao.findPictureByVenueID(venue1.getVenueID())).willReturn("file/venue/old.jpg");
+
+        venueService.update(venue1);
+
+        verify(venueDao, times(1)).save(venue1);
+        verify(pictureReferences, times(1)).release("file/venue/old.jpg");
     }
 
     @Test
@@ -157,6 +228,8 @@ class VenueServiceImplTest {
 
         // Verify the interaction with the mocked VenueDao
         verify(venueDao, times(1)).deleteById(venueIdToDelete);
+        verify(venueCache, times(1)).evict(venueIdToDelete);
+        verify(pictureReferences, times(1)).release(null);
     }
 
     @Test
@@ -176,5 +249,26 @@ class VenueServiceImplTest {
         assertEquals(1, result1);
         assertEquals(0, result2);
     }
+
+    //Function: 检查场馆名是否存在
+    //Scenario: 过滤器加载后一定不存在的名字不查数据库，新建的场馆名会加入过滤器
+    @Test
+    void countVenueName_filtered() {
+        ReflectionTestUtils.setField(existenceFilter, "venueDao", venueDao);
+        when(venueDao.count()).thenReturn(2L);
+        when(venueDao.findAllVenueName()).thenReturn(Arrays.asList("场馆1", "场馆2"));
+        existenceFilter.rebuild(ExistenceFilter.Kind.VENUE_NAME);
+        when(venueDao.countByVenueName("场馆1")).thenReturn(1);
+
+        assertEquals(1, venueService.countVenueName("场馆1"));
+        assertEquals(0, venueService.countVenueName("场馆3"));
+        verify(venueDao, never()).countByVenueName("场馆3");
+
+        Venue venue3 = new Venue(0, "场馆3", "篮球馆", 100, "picture", "address", "9:00", "20:00");
+        when(venueDao.save(venue3)).thenReturn(venue3);
+        venueService.create(venue3);
+        venueService.countVenueName("场馆3");
+        verify(venueDao, times(1)).countByVenueName("场馆3");
+    }
 }
 
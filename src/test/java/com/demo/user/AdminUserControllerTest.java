@@ -1,6 +1,9 @@
 package com.demo.user;
 
 import com.demo.entity.User;
+import com.demo.entity.vo.ImportError;
+import com.demo.entity.vo.ImportReport;
+import com.demo.service.UserBulkService;
 import com.demo.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,13 +14,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -31,6 +40,9 @@ class AdminUserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserBulkService userBulkService;
+
     @Test
     void testUserManage() throws Exception {
         Page<User> usersPage = new PageImpl<>(new ArrayList<>());
@@ -131,4 +143,32 @@ class AdminUserControllerTest {
 
         verify(userService, times(1)).delByID(anyInt());
     }
+
+    @Test
+    void testImportUser() throws Exception {
+        ImportReport report = new ImportReport("import1", 2, 1, 1, true,
+                Collections.singletonList(new ImportError(3, "test", "用户名已存在")));
+        when(userBulkService.importUsers(any(Reader.class), eq("import1"))).thenReturn(report);
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv",
+                "new,name,pw\ntest,name,pw\n".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(multipart("/importUser.do").file(file).param("importID", "import1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3));
+    }
+
+    @Test
+    void testExportUser() throws Exception {
+        doAnswer(invocation -> {
+            Writer writer = invocation.getArgument(0);
+            writer.write("userID,userName,email,phone\r\n");
+            return null;
+        }).when(userBulkService).exportUsers(any(Writer.class));
+
+        mockMvc.perform(get("/exportUser.do"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=users.csv"))
+                .andExpect(content().string("userID,userName,email,phone\r\n"));
+    }
 }
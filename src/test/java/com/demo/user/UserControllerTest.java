@@ -72,7 +72,7 @@ class UserControllerTest {
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("login"));
 
-        verify(userService, times(1)).create(any(User.class));
+        verify(userService, times(1)).register(any(User.class));
     }
 
     @Test
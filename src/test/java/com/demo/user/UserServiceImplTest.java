@@ -60,7 +60,7 @@ class UserServicelTest {
         user.setUserID("testUserID");
         user.setPassword("testPassword");
         int result = userService.create(user);
-        assertEquals(1, result);
+        assertEquals(userService.findByUserID("testUserID").getId(), result);
     }
 
     @Test
@@ -0,0 +1,47 @@
+package com.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    //Function: 布隆过滤器
+    //Scenario: 加入过的一定返回true
+    @Test
+    void no_false_negative() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("user" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("user" + i));
+        }
+    }
+
+    //Function: 布隆过滤器
+    //Scenario: 按预计数量加入后误判率接近期望值
+    @Test
+    void false_positive_rate() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("user" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2000, "false positives: " + falsePositives);
+        assertEquals(7, filter.hashes());
+    }
+
+    //Function: 布隆过滤器
+    //Scenario: 参数不合法
+    @Test
+    void create_illegal() {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(100, 1));
+    }
+}
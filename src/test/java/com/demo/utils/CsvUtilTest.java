@@ -0,0 +1,38 @@
+package com.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvUtilTest {
+
+    //Function: 解析一行CSV
+    //Scenario: 普通字段、空字段和引号中的逗号、双引号
+    @Test
+    void parseLine() {
+        assertEquals(Arrays.asList("a", "", "b"), CsvUtil.parseLine("a,,b"));
+        assertEquals(Arrays.asList("a,b", "say \"hi\"", ""), CsvUtil.parseLine("\"a,b\",\"say \"\"hi\"\"\","));
+    }
+
+    //Function: 解析一行CSV
+    //Scenario: 引号不匹配
+    @Test
+    void parseLine_unclosed() {
+        assertThrows(IllegalArgumentException.class, () -> CsvUtil.parseLine("\"a,b"));
+    }
+
+    //Function: 写一行CSV
+    //Scenario: 需要转义的字段加引号，公式开头的字段加单引号，写出的内容可以解析回来
+    @Test
+    void writeRow() throws Exception {
+        StringWriter writer = new StringWriter();
+
+        CsvUtil.writeRow(writer, "a,b", "say \"hi\"", null, "=SUM(A1)");
+
+        assertEquals("\"a,b\",\"say \"\"hi\"\"\",,'=SUM(A1)\r\n", writer.toString());
+        assertEquals(Arrays.asList("a,b", "say \"hi\"", "", "'=SUM(A1)"), CsvUtil.parseLine(writer.toString().trim()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorTest {
+
+    //Function: 游标编码和解析
+    //Scenario: 带时间的游标保留纳秒精度
+    @Test
+    void encode_decode_time() {
+        LocalDateTime time = LocalDateTime.of(2023, 4, 13, 10, 0, 0, 123456000);
+
+        Cursor cursor = Cursor.decode(new Cursor(time, 42).encode());
+
+        assertEquals(time, cursor.getTime());
+        assertEquals(42, cursor.getId());
+    }
+
+    //Function: 游标编码和解析
+    //Scenario: 只按主键排序的游标没有时间
+    @Test
+    void encode_decode_id_only() {
+        Cursor cursor = Cursor.decode(new Cursor(null, 7).encode());
+
+        assertNull(cursor.getTime());
+        assertEquals(7, cursor.getId());
+    }
+
+    //Function: 游标编码和解析
+    //Scenario: 空游标表示第一页
+    @Test
+    void decode_empty() {
+        assertNull(Cursor.decode(null));
+        assertNull(Cursor.decode(""));
+    }
+
+    //Function: 游标编码和解析
+    //Scenario: 被篡改的游标抛出IllegalArgumentException
+    @Test
+    void decode_illegal() {
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("YWJj"));
+    }
+}
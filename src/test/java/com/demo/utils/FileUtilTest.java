@@ -0,0 +1,68 @@
+package com.demo.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUtilTest {
+
+    @TempDir
+    Path dir;
+
+    private long fileCount() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    //Function: 保存图片
+    //Scenario: 文件名是内容的SHA-256加小写扩展名，放在摘要前两个字节的子目录里
+    @Test
+    void savePicture_digest_name() throws Exception {
+        MockMultipartFile picture = new MockMultipartFile("picture", "a.JPG", "image/jpeg", "abc".getBytes(StandardCharsets.UTF_8));
+
+        String filename = FileUtil.savePicture(dir.toString(), picture);
+
+        assertEquals("ba/78/ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad.jpg", filename);
+        assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(dir.resolve(filename)));
+        assertEquals(1, fileCount());
+    }
+
+    //Function: 保存图片
+    //Scenario: 重复上传相同内容只保留一个文件，不留下临时文件；内容不同的保存为不同文件
+    @Test
+    void savePicture_dedupe() throws Exception {
+        byte[] content = new byte[300 * 1024];
+        new Random(1).nextBytes(content);
+
+        String first = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "venue.png", "image/png", content));
+        String second = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "copy.png", "image/png", content));
+        content[0]++;
+        String third = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "venue.png", "image/png", content));
+
+        assertEquals(first, second);
+        assertNotEquals(first, third);
+        assertEquals(2, fileCount());
+        assertEquals(content.length, Files.size(dir.resolve(third)));
+    }
+
+    //Function: 取扩展名
+    //Scenario: 没有扩展名、扩展名过长或含有非字母数字时不保留
+    @Test
+    void suffixOf() {
+        assertEquals(".png", FileUtil.suffixOf("a.b.PNG"));
+        assertEquals("", FileUtil.suffixOf("noSuffix"));
+        assertEquals("", FileUtil.suffixOf("a."));
+        assertEquals("", FileUtil.suffixOf("a.j/pg"));
+        assertEquals("", FileUtil.suffixOf("a.verylongsuffix"));
+        assertEquals("", FileUtil.suffixOf(null));
+    }
+}